@@ -0,0 +1,254 @@
+package io.quiche4j;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Coalesces small writes to the streams of a {@link Connection}, so many
+ * tiny {@link Connection#streamSend} calls end up as a few full STREAM frames
+ * instead of one frame (and often one packet) per call.
+ *
+ * <p>Data written to a stream is buffered until the stream holds
+ * {@code threshold} bytes, until {@link #flush} or {@link #finish} is called
+ * for it, or until {@link #flushAll}. The latter is meant to be called once
+ * at the end of each event loop iteration, right before packets are
+ * generated with {@link Connection#send}, so buffered data never waits for
+ * more than a single iteration.
+ *
+ * <p>The writer never takes more than the connection is able to send:
+ * a write is accepted only up to {@link Connection#streamCapacity} minus
+ * everything already buffered on all streams (the connection-level window
+ * is shared between them). So a flush always goes through entirely and the
+ * application sees back-pressure at the time of write, the same way it
+ * would with {@link Connection#streamSend}.
+ *
+ * <p>Example:
+ * <pre>
+ *     final BufferedStreamWriter writer = new BufferedStreamWriter(conn);
+ *
+ *     // while handling events
+ *     writer.write(streamId, request, 0, request.length);
+ *
+ *     // at the end of the iteration
+ *     writer.flushAll();
+ *     while (0 &lt; (len = conn.send(packet))) { ... }
+ * </pre>
+ *
+ * <p>The writer is not thread-safe, it should be confined to the thread
+ * driving the connection.
+ */
+public final class BufferedStreamWriter {
+
+    /**
+     * The default number of bytes buffered per stream before it's flushed.
+     */
+    public static final int DEFAULT_THRESHOLD = 16384;
+
+    private final static class Pending {
+        private final ByteBuffer buf;
+        private boolean fin;
+
+        Pending(ByteBuffer buf) {
+            this.buf = buf;
+            this.fin = false;
+        }
+    }
+
+    private final Connection conn;
+    private final int threshold;
+    private final HashMap<Long, Pending> streams;
+    private final ArrayDeque<ByteBuffer> free;
+    private long buffered;
+
+    public BufferedStreamWriter(Connection conn) {
+        this(conn, DEFAULT_THRESHOLD);
+    }
+
+    public BufferedStreamWriter(Connection conn, int threshold) {
+        if (null == conn)
+            throw new IllegalArgumentException("Connection should not be null");
+        if (threshold <= 0)
+            throw new IllegalArgumentException("Threshold should be positive");
+        this.conn = conn;
+        this.threshold = threshold;
+        this.streams = new HashMap<>();
+        this.free = new ArrayDeque<>();
+        this.buffered = 0;
+    }
+
+    /**
+     * Buffers up to {@code len} bytes of {@code b} starting at {@code off}
+     * for the stream.
+     *
+     * <p>Returns the number of bytes accepted, which is less than
+     * {@code len} when the stream is short of flow control credit.
+     * {@link Quiche.ErrorCode#DONE} is returned if nothing could be accepted,
+     * other negative error codes are the ones of
+     * {@link Connection#streamCapacity} or of the flush triggered by the
+     * write.
+     */
+    public final int write(long streamId, byte[] b, int off, int len) {
+        return write(streamId, ByteBuffer.wrap(b, off, len));
+    }
+
+    /**
+     * Buffers bytes between position and limit of {@code src} for the
+     * stream, the position is advanced by the number of bytes accepted.
+     *
+     * @see BufferedStreamWriter#write(long, byte[], int, int)
+     */
+    public final int write(long streamId, ByteBuffer src) {
+        final Pending pending = streams.get(streamId);
+        if (null != pending && pending.fin)
+            return Quiche.ErrorCode.INVALID_STREAM_STATE;
+        final int capacity = conn.streamCapacity(streamId);
+        if (capacity < 0)
+            return capacity;
+        final int len = (int) Math.min(src.remaining(), Math.max(0, capacity - buffered));
+        if (0 == len)
+            return src.hasRemaining() ? Quiche.ErrorCode.DONE : 0;
+
+        final int limit = src.limit();
+        int accepted = 0;
+        while (accepted < len) {
+            final ByteBuffer buf = stream(streamId).buf;
+            final int n = Math.min(len - accepted, buf.remaining());
+            if (0 == n)
+                break;
+            src.limit(src.position() + n);
+            buf.put(src);
+            src.limit(limit);
+            accepted += n;
+            buffered += n;
+            if (threshold <= buf.position()) {
+                final int written = flush(streamId);
+                if (written < 0)
+                    return 0 == accepted ? written : accepted;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Sends everything buffered for the stream, together with {@code fin}
+     * when the stream was finished.
+     *
+     * <p>Returns the number of bytes written, {@code 0} if there was nothing
+     * to flush, or a negative error code of {@link Connection#streamSend}.
+     * On error the data stays buffered.
+     */
+    public final int flush(long streamId) {
+        final Pending pending = streams.get(streamId);
+        if (null == pending)
+            return 0;
+        final ByteBuffer buf = pending.buf;
+        buf.flip();
+        final int len = buf.remaining();
+        final int written = conn.streamSend(streamId, buf, pending.fin);
+        buf.compact();
+        if (written < 0)
+            return written;
+        buffered -= written;
+        if (written == len)
+            release(streamId, pending);
+        return written;
+    }
+
+    /**
+     * Flushes all streams, to be called at the end of each event loop
+     * iteration.
+     *
+     * <p>Returns the total number of bytes written. Streams that fail to
+     * flush with an error other than {@link Quiche.ErrorCode#DONE} (e.g.
+     * those reset by the peer) are dropped along with the data buffered for
+     * them.
+     */
+    public final long flushAll() {
+        long total = 0;
+        final Iterator<Map.Entry<Long, Pending>> it = streams.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Long, Pending> entry = it.next();
+            final Pending pending = entry.getValue();
+            final ByteBuffer buf = pending.buf;
+            buf.flip();
+            final int len = buf.remaining();
+            final int written = conn.streamSend(entry.getKey(), buf, pending.fin);
+            buf.compact();
+            if (Quiche.ErrorCode.DONE == written)
+                continue;
+            if (written < 0) {
+                buffered -= len;
+            } else {
+                buffered -= written;
+                total += written;
+                if (written < len)
+                    continue;
+            }
+            it.remove();
+            recycle(buf);
+        }
+        return total;
+    }
+
+    /**
+     * Marks the stream as finished and flushes it, no more writes are
+     * accepted for the stream afterwards.
+     *
+     * @see BufferedStreamWriter#flush(long)
+     */
+    public final int finish(long streamId) {
+        stream(streamId).fin = true;
+        return flush(streamId);
+    }
+
+    /**
+     * Returns the number of bytes buffered for the stream.
+     */
+    public final int pending(long streamId) {
+        final Pending pending = streams.get(streamId);
+        return null == pending ? 0 : pending.buf.position();
+    }
+
+    /**
+     * Returns the number of bytes buffered for all streams.
+     */
+    public final long pending() {
+        return buffered;
+    }
+
+    /**
+     * Drops the data buffered for the stream, e.g. when it's reset by the
+     * peer.
+     */
+    public final void discard(long streamId) {
+        final Pending pending = streams.get(streamId);
+        if (null != pending) {
+            buffered -= pending.buf.position();
+            release(streamId, pending);
+        }
+    }
+
+    private Pending stream(long streamId) {
+        Pending pending = streams.get(streamId);
+        if (null == pending) {
+            final ByteBuffer buf = free.pollFirst();
+            pending = new Pending(null == buf ? ByteBuffer.allocateDirect(threshold) : buf);
+            streams.put(streamId, pending);
+        }
+        return pending;
+    }
+
+    private void release(long streamId, Pending pending) {
+        streams.remove(streamId);
+        recycle(pending.buf);
+    }
+
+    private void recycle(ByteBuffer buf) {
+        buf.clear();
+        free.offerFirst(buf);
+    }
+
+}
@@ -1,21 +1,65 @@
 package io.quiche4j;
 
+import java.lang.ref.Cleaner.Cleanable;
+
 /**
  * Stores configuration shared between multiple connections.
  * 
  * <p>Maintains pointer to a native object {@code quiche::Config}.
+ *
+ * <p>Connections don't depend on the configuration once created, so it can be
+ * freed with {@link #free} (or {@link #close}) as soon as it's not needed for
+ * new connections. Otherwise it's freed when garbage collected.
+ *
+ * <p>The config is immutable once built and thread-safe: connections can be
+ * created with the same instance from any number of threads, reusing a single
+ * TLS context (certificates are parsed only once).
  */
-public class Config {
+public class Config implements AutoCloseable {
+
+    /**
+     * Default value of {@code max_udp_payload_size} transport parameter
+     * used by quiche.
+     */
+    public static final int DEFAULT_MAX_UDP_PAYLOAD_SIZE = 65527;
 
-    private final long ptr;
+    private volatile long ptr;
+    private final Cleanable cleanable;
+    private final int maxUdpPayloadSize;
+    private final SessionCache sessionCache;
 
     /**
      * Instantiates Java object with a given native pointer.
      * 
+     * <p>Sets up cleanup procedure to make sure that native object is deallocated when Java object is GC-ed. 
+     *
      * <p>Intended to be used only by the library code.
      */
     protected Config(long ptr) {
+        this(ptr, DEFAULT_MAX_UDP_PAYLOAD_SIZE, null);
+    }
+
+    Config(long ptr, int maxUdpPayloadSize, SessionCache sessionCache) {
         this.ptr = ptr;
+        this.cleanable = Native.registerCleaner(this, freeAction(ptr));
+        this.maxUdpPayloadSize = maxUdpPayloadSize;
+        this.sessionCache = sessionCache;
+    }
+
+    /**
+     * Returns the maximum UDP payload size the peer is allowed to send, as set by
+     * {@link ConfigBuilder#withMaxUdpPayloadSize}. Useful for sizing receive buffers.
+     */
+    public final int maxUdpPayloadSize() {
+        return this.maxUdpPayloadSize;
+    }
+
+    /**
+     * Returns the cache of TLS sessions used by client connections, as set by
+     * {@link ConfigBuilder#withSessionCache}, or {@code null}.
+     */
+    public final SessionCache sessionCache() {
+        return this.sessionCache;
     }
 
     /**
@@ -24,7 +68,32 @@ public class Config {
      * <p>Intended to be used only by the library code.
      */
     protected final long getPointer() {
-        return this.ptr;
+        final long ptr = this.ptr;
+        if (0L == ptr)
+            throw new IllegalStateException("Config is freed");
+        return ptr;
+    }
+
+    private final static Runnable freeAction(long ptr) {
+        return () -> Native.quiche_config_free(ptr);
+    }
+
+    /**
+     * Deallocates a native struct. The method is idempotent.
+     */
+    public final void free() {
+        if (0L != this.ptr) {
+            this.ptr = 0L;
+            this.cleanable.clean();
+        }
+    }
+
+    /**
+     * Same as {@link #free}.
+     */
+    @Override
+    public final void close() {
+        free();
     }
 
 }
\ No newline at end of file
@@ -1,12 +1,25 @@
 package io.quiche4j;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Base64;
+import java.util.function.ToIntFunction;
+
 // xxx(okachaiev): support `log_keys` directive
+// xxx: select certificates by SNI, requires access to the TLS
+// context (servername callback), which quiche doesn't expose
 
 public final class ConfigBuilder {
 
     private int version;
     private String certChainPath;
     private String privKeyPath;
+    private byte[] certChainPem;
+    private byte[] privKeyPem;
     private Boolean verifyPeer;
     private Boolean grease;
     private boolean enableEarlyData = false;
@@ -22,8 +35,12 @@ public final class ConfigBuilder {
     private Long ackDelayExponent;
     private Long maxAckDelay;
     private Boolean disableActiveMigration;
+    private boolean enableDgram = false;
+    private int dgramRecvQueueLen;
+    private int dgramSendQueueLen;
     private byte[] protos;
     private String ccAlgorithmName;
+    private SessionCache sessionCache;
 
     /**
      * Creates a builder for a {@link Config} with the given protocol version.
@@ -52,9 +69,37 @@ public final class ConfigBuilder {
      */
     public final ConfigBuilder loadCertChainFromPemFile(String path) {
         this.certChainPath = path;
+        this.certChainPem = null;
+        return this;
+    }
+
+    /**
+     * Configures the given certificate chain, PEM-encoded leaf certificate
+     * followed by optional intermediate certificates.
+     *
+     * <p>Useful when certificates are bundled as resources. Note that quiche
+     * only loads certificates from files: {@link #build} writes the chain to a
+     * temporary file (readable by the owner only on POSIX file systems) and
+     * removes it once loaded.
+     */
+    public final ConfigBuilder loadCertChainFromPem(byte[] pem) {
+        this.certChainPem = pem;
+        this.certChainPath = null;
         return this;
     }
 
+    /**
+     * Configures the given certificate chain, DER-encoded leaf certificate
+     * followed by optional intermediate certificates.
+     */
+    public final ConfigBuilder loadCertChainFromDer(byte[]... certs) {
+        final StringBuilder pem = new StringBuilder();
+        for (byte[] cert : certs) {
+            appendPem(pem, "CERTIFICATE", cert);
+        }
+        return loadCertChainFromPem(pem.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
     /**
      * Configures the given private key.
      *
@@ -69,9 +114,39 @@ public final class ConfigBuilder {
      */
     public final ConfigBuilder loadPrivKeyFromPemFile(String path) {
         this.privKeyPath = path;
+        this.privKeyPem = null;
         return this;
     }
 
+    /**
+     * Configures the given PEM-encoded private key.
+     *
+     * <p>Note that quiche only loads keys from files: {@link #build} writes
+     * the key to a temporary file (readable by the owner only on POSIX file
+     * systems) and removes it once loaded, so the key briefly ends up on disk
+     * in the default temporary directory. Prefer
+     * {@link #loadPrivKeyFromPemFile} with a file on a memory-backed file
+     * system when that's not acceptable.
+     */
+    public final ConfigBuilder loadPrivKeyFromPem(byte[] pem) {
+        this.privKeyPem = pem;
+        this.privKeyPath = null;
+        return this;
+    }
+
+    /**
+     * Configures the given DER-encoded private key in PKCS #8 format
+     * (e.g. {@link java.security.PrivateKey#getEncoded}).
+     *
+     * <p>The key is written to a temporary file on {@link #build}, same as
+     * with {@link #loadPrivKeyFromPem}.
+     */
+    public final ConfigBuilder loadPrivKeyFromDer(byte[] pkcs8) {
+        final StringBuilder pem = new StringBuilder();
+        appendPem(pem, "PRIVATE KEY", pkcs8);
+        return loadPrivKeyFromPem(pem.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
     /**
      * Configures whether to verify the peer's certificate.
      *
@@ -95,12 +170,33 @@ public final class ConfigBuilder {
 
     /**
      * Enables sending or receiving early data.
+     *
+     * <p>On the client early data is only sent on resumed connections, see
+     * {@link #withSessionCache}.
      */
     public final ConfigBuilder enableEarlyData() {
         this.enableEarlyData = true;
         return this;
     }
 
+    /**
+     * Configures a cache of TLS sessions used by client connections, allowing
+     * them to resume previous sessions (and to send 0-RTT data when early data
+     * is enabled). The same cache can be shared by multiple configs.
+     *
+     * <p>Example:
+     * <pre>
+     *     final Config config = new ConfigBuilder(Quiche.PROTOCOL_VERSION)
+     *         .enableEarlyData()
+     *         .withSessionCache(new SessionCache())
+     *         .build();
+     * </pre>
+     */
+    public final ConfigBuilder withSessionCache(SessionCache cache) {
+        this.sessionCache = cache;
+        return this;
+    }
+
     /**
      * Sets the {@code max_idle_timeout} transport parameter.
      *
@@ -252,6 +348,32 @@ public final class ConfigBuilder {
         return this;
     }
 
+    /**
+     * Enables receiving and sending unreliable DATAGRAM frames (RFC 9221),
+     * see {@link Connection#dgramSend} and {@link Connection#dgramRecv}.
+     *
+     * <p>Received datagrams not yet read by the application are kept in a
+     * queue of at most {@code recvQueueLen} datagrams, datagrams not yet sent
+     * in a queue of at most {@code sendQueueLen}. Once a queue is full, the
+     * oldest received datagram is dropped and new outgoing ones are rejected,
+     * respectively.
+     *
+     * <p>Example:
+     * <pre>
+     *     final Config config = new ConfigBuilder(Quiche.PROTOCOL_VERSION)
+     *         .enableDgram(1000, 1000)
+     *         .build();
+     * </pre>
+     */
+    public final ConfigBuilder enableDgram(int recvQueueLen, int sendQueueLen) {
+        if (recvQueueLen <= 0 || sendQueueLen <= 0)
+            throw new IllegalArgumentException("Datagram queue length should be positive");
+        this.enableDgram = true;
+        this.dgramRecvQueueLen = recvQueueLen;
+        this.dgramSendQueueLen = sendQueueLen;
+        return this;
+    }
+
     /**
      * Configures the list of supported application protocols.
      *
@@ -310,22 +432,45 @@ public final class ConfigBuilder {
      * Builds {@link Config} object, as effectively immutable.
      * 
      * <p>The configuration itself is a native struct. Java object only maintaince
-     * a pointer to it. Cleaner runnable is registered to deallocate native struct
-     * when {@link Config} is GC-ed.
+     * a pointer to it, see {@link Config#free}.
+     *
+     * <p>Certificates and the private key are parsed once, into a TLS context
+     * shared by all connections created with the config. The config is
+     * thread-safe, a single instance should be shared by all workers rather
+     * than built per thread.
+     *
+     * @throws IllegalArgumentException if the certificate chain or the private
+     *                                  key can't be loaded
      */
     public final Config build() {
         final long pointer = Native.quiche_config_new(version);
-        final Config config = new Config(pointer);
-        Native.registerCleaner(config, () -> {
-            Native.quiche_config_free(pointer);
-        });
+        final Config config = new Config(pointer, null == this.maxUdpPayloadSize
+            ? Config.DEFAULT_MAX_UDP_PAYLOAD_SIZE
+            : (int) Math.min(this.maxUdpPayloadSize, Config.DEFAULT_MAX_UDP_PAYLOAD_SIZE),
+            this.sessionCache);
 
+        int certCode = Quiche.ErrorCode.SUCCESS;
         if (null != certChainPath) {
-            Native.quiche_config_load_cert_chain_from_pem_file(pointer, certChainPath);
+            certCode = Native.quiche_config_load_cert_chain_from_pem_file(pointer, certChainPath);
+        } else if (null != certChainPem) {
+            certCode = loadFromMemory(certChainPem,
+                path -> Native.quiche_config_load_cert_chain_from_pem_file(pointer, path));
+        }
+        if (Quiche.ErrorCode.SUCCESS != certCode) {
+            config.free();
+            throw new IllegalArgumentException("Invalid certificate chain");
         }
 
+        int keyCode = Quiche.ErrorCode.SUCCESS;
         if (null != privKeyPath) {
-            Native.quiche_config_load_priv_key_from_pem_file(pointer, privKeyPath);
+            keyCode = Native.quiche_config_load_priv_key_from_pem_file(pointer, privKeyPath);
+        } else if (null != privKeyPem) {
+            keyCode = loadFromMemory(privKeyPem,
+                path -> Native.quiche_config_load_priv_key_from_pem_file(pointer, path));
+        }
+        if (Quiche.ErrorCode.SUCCESS != keyCode) {
+            config.free();
+            throw new IllegalArgumentException("Invalid private key");
         }
 
         if (null != verifyPeer) {
@@ -388,6 +533,10 @@ public final class ConfigBuilder {
             Native.quiche_config_set_disable_active_migration(pointer, this.disableActiveMigration);
         }
 
+        if (this.enableDgram) {
+            Native.quiche_config_enable_dgram(pointer, true, this.dgramRecvQueueLen, this.dgramSendQueueLen);
+        }
+
         if (null!= this.protos) {
             final int protosCode = Native.quiche_config_set_application_protos(pointer, this.protos);
             if(Quiche.ErrorCode.SUCCESS != protosCode)
@@ -403,4 +552,39 @@ public final class ConfigBuilder {
         return config;
     }
 
+    /**
+     * quiche only loads certificates and keys from files, so the content is
+     * written to a temporary file readable by the owner only, which is removed
+     * as soon as it's loaded.
+     */
+    private static int loadFromMemory(byte[] pem, ToIntFunction<String> loader) {
+        Path path = null;
+        try {
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                path = Files.createTempFile("quiche4j", ".pem",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            } else {
+                path = Files.createTempFile("quiche4j", ".pem");
+            }
+            Files.write(path, pem);
+            return loader.applyAsInt(path.toString());
+        } catch (IOException e) {
+            return Quiche.ErrorCode.TLS_FAIL;
+        } finally {
+            if (null != path) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    path.toFile().deleteOnExit();
+                }
+            }
+        }
+    }
+
+    private static void appendPem(StringBuilder pem, String label, byte[] der) {
+        pem.append("-----BEGIN ").append(label).append("-----\n");
+        pem.append(Base64.getMimeEncoder(64, new byte[] { '\n' }).encodeToString(der));
+        pem.append("\n-----END ").append(label).append("-----\n");
+    }
+
 }
\ No newline at end of file
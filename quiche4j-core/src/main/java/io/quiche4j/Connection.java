@@ -1,18 +1,69 @@
 package io.quiche4j;
 
+import java.io.IOException;
+import java.lang.ref.Cleaner.Cleanable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.quiche4j.Quiche.Shutdown;
+import io.quiche4j.buffer.MappedFileCache;
 
 /**
  * A QUIC connection.
+ *
+ * <p>Native state of the connection is deallocated by {@link #free} (or
+ * {@link #close}, which is the same). It's safe to call it more than once.
+ * A connection that is not freed explicitly is freed once it's garbage
+ * collected, though native state (TLS, stream buffers) might outlive the
+ * Java object for quite a while in this case.
+ *
+ * <p>Note that {@link #close()} doesn't notify the peer, use
+ * {@link #close(boolean, long, String)} to close the connection gracefully
+ * before freeing it.
  */
-public class Connection {
+public class Connection implements AutoCloseable {
+
+    private static final NativeBackend BACKEND = NativeBackend.current();
+
+    /**
+     * The default error code a stream is reset with when the file sent on it
+     * can't be read any further, see {@link #sendFile}.
+     */
+    public static final long SEND_FILE_ABORT_ERROR = 1;
+
+    /**
+     *  A pointer to a native {@code quiche::Connection} struct,
+     *  {@code 0} once freed.
+     */
+    private volatile long ptr;
+
+    private final Cleanable cleanable;
+
+    /**
+     * Server name and cache the TLS session of a client connection is stored
+     * to, {@code null} if there's no cache.
+     */
+    private final String serverName;
+    private final SessionCache sessionCache;
 
     /**
-     *  A pointer to a native {@code quiche::Connection} struct.
+     * Set once the session is stored, shared with the cleanup action.
      */
-    private final long ptr;
+    private final AtomicBoolean sessionStored;
+
+    /**
+     * Files being sent on streams, created on first use.
+     */
+    private FileTransfers files;
+
+    /**
+     * Channel views of streams, created on first use.
+     */
+    private HashMap<Long, QuicStreamChannel> channels;
 
     /**
      * Processes QUIC packets received from the peer.
@@ -44,7 +95,34 @@ public class Connection {
      * </pre>
      */
     public final int recv(byte[] buf) {
-        return Native.quiche_conn_recv(getPointer(), buf);
+        final int read = BACKEND.connRecv(getPointer(), buf);
+        if (0 < read && null != files)
+            files.resume();
+        storeSessionIfClosed();
+        return read;
+    }
+
+    /**
+     * Processes QUIC packets received from the peer, reading them directly
+     * from the given direct buffer.
+     *
+     * <p>Bytes between the buffer's position and limit are processed. On success the
+     * number of bytes processed is returned and the position is advanced accordingly.
+     * Avoids copying the packet between Java heap and native memory.
+     *
+     * @see Connection#recv(byte[])
+     */
+    public final int recv(ByteBuffer buf) {
+        checkDirect(buf);
+        final int pos = buf.position();
+        final int read = BACKEND.connRecvBuffer(getPointer(), buf, pos, buf.limit() - pos);
+        if (0 < read) {
+            buf.position(pos + read);
+            if (null != files)
+                files.resume();
+        }
+        storeSessionIfClosed();
+        return read;
     }
 
     /**
@@ -88,7 +166,26 @@ public class Connection {
      * </pre>
      */
     public final int send(byte[] buf) {
-        return Native.quiche_conn_send(getPointer(), buf);
+        return BACKEND.connSend(getPointer(), buf);
+    }
+
+    /**
+     * Writes a single QUIC packet to be sent to the peer directly into the
+     * given direct buffer.
+     *
+     * <p>The packet is written starting at the buffer's position, at most up to its
+     * limit. On success the number of bytes written is returned and the position is
+     * advanced accordingly.
+     *
+     * @see Connection#send(byte[])
+     */
+    public final int send(ByteBuffer buf) {
+        checkDirect(buf);
+        final int pos = buf.position();
+        final int written = BACKEND.connSendBuffer(getPointer(), buf, pos, buf.limit() - pos);
+        if (0 < written)
+            buf.position(pos + written);
+        return written;
     }
 
     /**
@@ -98,7 +195,7 @@ public class Connection {
      * be called. A timeout of {@code 0L} means that the timer should be disarmed.
      */
     public final long timeoutAsNanos() {
-        return Native.quiche_conn_timeout_as_nanos(getPointer());
+        return BACKEND.timeoutAsNanos(getPointer());
     }
 
     /**
@@ -117,7 +214,8 @@ public class Connection {
      * <p>If no timeout has occurred it does nothing.
      */
     public final void onTimeout() {
-        Native.quiche_conn_on_timeout(getPointer());
+        BACKEND.onTimeout(getPointer());
+        storeSessionIfClosed();
     }
 
     /**
@@ -128,7 +226,63 @@ public class Connection {
         return Native.quiche_conn_is_in_early_data(getPointer());
     }
 
-    // xxx(okachaiev): support is_resumed
+    /**
+     * Returns {@code true} if the connection resumed a previous TLS session.
+     */
+    public final boolean isResumed() {
+        return Native.quiche_conn_is_resumed(getPointer());
+    }
+
+    /**
+     * Returns the serialized TLS session of the connection, or {@code null}
+     * if there's none (e.g. no session ticket has been received yet).
+     *
+     * <p>The session can be used to resume a later connection to the same
+     * server with {@link #setSession}. Usually there's no need to call it
+     * directly, see {@link SessionCache}.
+     */
+    public final byte[] session() {
+        return Native.quiche_conn_session(getPointer());
+    }
+
+    /**
+     * Stores the TLS session of a client connection to the session cache of
+     * its config, unless it's stored already or there's no cache.
+     *
+     * <p>Called by {@link #recv} and {@link #onTimeout} once the connection
+     * is closed, so the session is available to the next connection right
+     * away. The application might call it earlier, e.g. when it stops using
+     * the connection. A session not stored by then is stored when the
+     * connection is freed, which for a connection left to the garbage
+     * collector might be much later.
+     *
+     * <p>Returns {@code true} if the session was stored.
+     */
+    public final boolean storeSession() {
+        if (null == sessionCache || sessionStored.get() || 0L == this.ptr)
+            return false;
+        final byte[] session = session();
+        // a ticket might still arrive, try again later
+        if (null == session)
+            return false;
+        if (!sessionStored.compareAndSet(false, true))
+            return false;
+        sessionCache.put(serverName, session);
+        return true;
+    }
+
+    private void storeSessionIfClosed() {
+        if (null != sessionCache && !sessionStored.get() && isClosed())
+            storeSession();
+    }
+
+    /**
+     * Configures the TLS session to resume. Must be called before the first
+     * packet is sent, i.e. right after {@link Quiche#connect}.
+     */
+    public final int setSession(byte[] session) {
+        return Native.quiche_conn_set_session(getPointer(), session);
+    }
 
     /**
      * Returns {@code true} if the connection handshake is complete.
@@ -168,6 +322,20 @@ public class Connection {
         return Native.quiche_conn_close(getPointer(), app, error, reason);
     }
 
+    /**
+     * Returns the number of bytes of native memory held by the connection:
+     * stream send and receive buffers, packet number spaces, recovery state
+     * and alike, including the state of an {@link io.quiche4j.http3.Http3Connection}
+     * created on top of it.
+     *
+     * <p>The value is an estimate: memory is attributed to the connection when
+     * allocated (or freed) by a call made on it. TLS state allocated by
+     * BoringSSL is not included.
+     */
+    public final long nativeMemoryUsage() {
+        return Native.quiche_conn_memory_usage(getPointer());
+    }
+
     /**
      * Collects and returns statistics about the connection.
      */
@@ -205,7 +373,25 @@ public class Connection {
      */
     public int streamRecv(long streamId, byte[] buf) {
         // xxx(okachaiev): support `fin` flag somehow :thinking:
-        return Native.quiche_conn_stream_recv(getPointer(), streamId, buf);
+        return BACKEND.streamRecv(getPointer(), streamId, buf);
+    }
+
+    /**
+     * Reads contiguous data from a stream directly into the given direct buffer.
+     *
+     * <p>Data is written starting at the buffer's position, at most up to its limit.
+     * On success the amount of bytes read is returned and the position is advanced
+     * accordingly.
+     *
+     * @see Connection#streamRecv(long, byte[])
+     */
+    public int streamRecv(long streamId, ByteBuffer buf) {
+        checkDirect(buf);
+        final int pos = buf.position();
+        final int read = BACKEND.streamRecvBuffer(getPointer(), streamId, buf, pos, buf.limit() - pos);
+        if (0 < read)
+            buf.position(pos + read);
+        return read;
     }
 
     /**
@@ -243,7 +429,46 @@ public class Connection {
      * </pre>
      */
     public int streamSend(long streamId, byte[] buf, boolean fin) {
-        return Native.quiche_conn_stream_send(getPointer(), streamId, buf, fin);
+        return BACKEND.streamSend(getPointer(), streamId, buf, fin);
+    }
+
+    /**
+     * Writes data to a stream directly from the given direct buffer.
+     *
+     * <p>Bytes between the buffer's position and limit are written. On success the
+     * number of bytes written is returned and the position is advanced accordingly.
+     *
+     * @see Connection#streamSend(long, byte[], boolean)
+     */
+    public int streamSend(long streamId, ByteBuffer buf, boolean fin) {
+        checkDirect(buf);
+        final int pos = buf.position();
+        final int written = BACKEND.streamSendBuffer(
+            getPointer(), streamId, buf, pos, buf.limit() - pos, fin);
+        if (0 < written)
+            buf.position(pos + written);
+        return written;
+    }
+
+    /**
+     * Writes data to a stream from a gather list of direct buffers in a single
+     * native call, e.g. a small header chunk followed by a large body.
+     *
+     * <p>Bytes between position and limit of each buffer are written in order, as
+     * if the buffers were concatenated, {@code fin} applies to the end of the last
+     * one. On success the total number of bytes written is returned and positions
+     * are advanced accordingly. When the stream runs out of capacity the rest of
+     * the list is not written, the application should retry with the same buffers
+     * once the stream is reported as writable again.
+     *
+     * @see Connection#streamSend(long, byte[], boolean)
+     */
+    public int streamSend(long streamId, ByteBuffer[] srcs, boolean fin) {
+        final int[] ranges = Utils.gatherRanges(srcs);
+        final int written = BACKEND.streamSendBuffers(getPointer(), streamId, srcs, ranges, fin);
+        if (0 < written)
+            Utils.consumeGathered(srcs, written);
+        return written;
     }
 
     // xxx(okachaiev): support stream_priority
@@ -264,6 +489,154 @@ public class Connection {
      */
     public void streamShutdown(long streamId, Shutdown direction, long err) {
         Native.quiche_conn_stream_shutdown(getPointer(), streamId, direction.value(), err);
+        if (Shutdown.WRITE == direction && null != files)
+            files.cancel(streamId);
+    }
+
+    /**
+     * Sends {@code len} bytes of the file starting at {@code pos} on the stream
+     * and finishes the stream.
+     *
+     * @see Connection#sendFile(long, FileChannel, long, long, boolean)
+     */
+    public final long sendFile(long streamId, FileChannel ch, long pos, long len) throws IOException {
+        return sendFile(streamId, ch, pos, len, true);
+    }
+
+    /**
+     * Sends {@code len} bytes of the file starting at {@code pos} on the stream,
+     * without copying them through the Java heap.
+     *
+     * <p>The file is read from read-only memory mappings held by
+     * {@link MappedFileCache#shared}. As much as the stream's capacity allows is
+     * written right away, the rest is written as the peer extends flow control
+     * credit, each time packets are processed by {@link #recv} (or explicitly with
+     * {@link #resumeFiles}). {@code fin} is set once the whole region is written.
+     *
+     * <p>On success the number of bytes written right away is returned (which might
+     * be {@code 0}), use {@link #sendFileRemaining} to track the progress. On error
+     * a negative error code of {@link #streamSend} is returned. A single file
+     * can be sent on a stream at a time, no other data should be written to the
+     * stream until the file is done. If the file can't be read any further (e.g.
+     * the channel is closed before the transfer is done) the stream is reset with
+     * {@link #SEND_FILE_ABORT_ERROR}.
+     *
+     * <p>The file must not be truncated while sent: reading a mapping past the
+     * end of file crashes the JVM with {@code SIGBUS}.
+     *
+     * @throws IOException if the file can't be mapped
+     */
+    public final long sendFile(long streamId, FileChannel ch, long pos, long len, boolean fin) throws IOException {
+        return sendFile(streamId, ch, pos, len, fin, SEND_FILE_ABORT_ERROR);
+    }
+
+    /**
+     * Same as {@link #sendFile(long, FileChannel, long, long, boolean)}, but the
+     * stream is reset with the application's {@code abortError} if the file
+     * can't be read any further.
+     */
+    public final long sendFile(long streamId, FileChannel ch, long pos, long len, boolean fin, long abortError)
+            throws IOException {
+        if (null == files) {
+            files = new FileTransfers(MappedFileCache.shared(),
+                (id, buf, last) -> streamSend(id, buf, last),
+                (id, err) -> streamShutdown(id, Shutdown.WRITE, err));
+        }
+        return files.start(streamId, ch, pos, len, fin, abortError);
+    }
+
+    /**
+     * Returns the number of bytes of the file sent on the stream not yet written,
+     * or {@link Quiche.ErrorCode#DONE} if there's no file being sent on it.
+     */
+    public final long sendFileRemaining(long streamId) {
+        return null == files ? Quiche.ErrorCode.DONE : files.remaining(streamId);
+    }
+
+    /**
+     * Continues sending files blocked on streams' capacity, returns the number
+     * of bytes written.
+     *
+     * <p>Called by {@link #recv}, only needed when packets are given to the
+     * connection by other means.
+     */
+    public final long resumeFiles() {
+        return null == files ? 0 : files.resume();
+    }
+
+    /**
+     * Reads the first received DATAGRAM into {@code buf}.
+     *
+     * <p>On success the length of the datagram is returned, or
+     * {@link Quiche.ErrorCode#DONE} if there is nothing to read. If the datagram
+     * doesn't fit into the buffer {@link Quiche.ErrorCode#BUFFER_TOO_SHORT} is
+     * returned and the datagram is discarded, thus the buffer should be sized
+     * for the largest datagram expected (e.g. {@link Config#maxUdpPayloadSize}).
+     *
+     * <p>Datagrams are only received when enabled with {@link ConfigBuilder#enableDgram}.
+     */
+    public final int dgramRecv(byte[] buf) {
+        return Native.quiche_conn_dgram_recv(getPointer(), buf);
+    }
+
+    /**
+     * Reads the first received DATAGRAM directly into the given direct buffer.
+     *
+     * <p>The datagram is written starting at the buffer's position, at most up to
+     * its limit. On success the length of the datagram is returned and the
+     * position is advanced accordingly.
+     *
+     * @see Connection#dgramRecv(byte[])
+     */
+    public final int dgramRecv(ByteBuffer buf) {
+        checkDirect(buf);
+        final int pos = buf.position();
+        final int read = Native.quiche_conn_dgram_recv_buffer(getPointer(), buf, pos, buf.limit() - pos);
+        if (0 < read)
+            buf.position(pos + read);
+        return read;
+    }
+
+    /**
+     * Queues {@code buf} to be sent to the peer as a single DATAGRAM frame.
+     *
+     * <p>Unlike stream data, datagrams are not retransmitted when lost, so a
+     * lost datagram doesn't hold back the ones sent after it.
+     *
+     * <p>On success the length of the datagram is returned.
+     * {@link Quiche.ErrorCode#DONE} is returned when the send queue is full,
+     * {@link Quiche.ErrorCode#BUFFER_TOO_SHORT} when the datagram is larger
+     * than {@link Connection#dgramMaxWritableLen}, and
+     * {@link Quiche.ErrorCode#INVALID_STATE} when the peer doesn't support
+     * datagrams.
+     */
+    public final int dgramSend(byte[] buf) {
+        return Native.quiche_conn_dgram_send(getPointer(), buf);
+    }
+
+    /**
+     * Queues bytes between the direct buffer's position and limit to be sent
+     * as a single DATAGRAM frame. On success the position is advanced to the
+     * limit.
+     *
+     * @see Connection#dgramSend(byte[])
+     */
+    public final int dgramSend(ByteBuffer buf) {
+        checkDirect(buf);
+        final int pos = buf.position();
+        final int written = Native.quiche_conn_dgram_send_buffer(getPointer(), buf, pos, buf.limit() - pos);
+        if (0 <= written)
+            buf.position(pos + written);
+        return written;
+    }
+
+    /**
+     * Returns the maximum size of a datagram that can be sent, or
+     * {@link Quiche.ErrorCode#DONE} if the peer doesn't support datagrams
+     * (or the handshake is not yet completed).
+     */
+    public final int dgramMaxWritableLen() {
+        return Native.quiche_conn_dgram_max_writable_len(getPointer());
     }
 
     /**
@@ -349,8 +722,79 @@ public class Connection {
         return StreamIter.fromPointer(Native.quiche_conn_writable(getPointer()));
     }
 
-    private Connection(long ptr) {
+    /**
+     * Returns a non-blocking channel reading from and writing to the stream.
+     *
+     * <p>The same channel is returned for the stream until it's closed.
+     *
+     * @see QuicStreamChannel
+     */
+    public final QuicStreamChannel streamChannel(long streamId) {
+        if (null == channels)
+            channels = new HashMap<>();
+        QuicStreamChannel channel = channels.get(streamId);
+        if (null == channel) {
+            channel = new QuicStreamChannel(this, streamId);
+            channels.put(streamId, channel);
+        }
+        return channel;
+    }
+
+    /**
+     * Invokes readiness handlers of open stream channels: the readable handler of
+     * channels of {@link #readable} streams and the writable handler of channels of
+     * {@link #writable} streams which were blocked on a write.
+     *
+     * <p>Should be called once per event loop iteration, after the received packets
+     * are processed and before {@link #send} is called.
+     */
+    public final void dispatchStreamChannels() {
+        if (null == channels || channels.isEmpty())
+            return;
+        // handlers may open or close channels while iterating
+        final ArrayList<QuicStreamChannel> ready = new ArrayList<>();
+        try (StreamIter it = readable()) {
+            for (long streamId : it) {
+                final QuicStreamChannel channel = channels.get(streamId);
+                if (null != channel)
+                    ready.add(channel);
+            }
+        }
+        for (int i = 0; i < ready.size(); i++) {
+            if (ready.get(i).isOpen())
+                ready.get(i).fireReadable();
+        }
+        ready.clear();
+        try (StreamIter it = writable()) {
+            for (long streamId : it) {
+                final QuicStreamChannel channel = channels.get(streamId);
+                if (null != channel)
+                    ready.add(channel);
+            }
+        }
+        for (int i = 0; i < ready.size(); i++) {
+            if (ready.get(i).isOpen())
+                ready.get(i).fireWritable();
+        }
+    }
+
+    final void removeStreamChannel(QuicStreamChannel channel) {
+        if (null != channels)
+            channels.remove(channel.streamId());
+    }
+
+    private static final void checkDirect(ByteBuffer buf) {
+        if (!buf.isDirect())
+            throw new IllegalArgumentException("Direct buffer is required");
+    }
+
+    private Connection(long ptr, String serverName, SessionCache sessionCache, AtomicBoolean sessionStored,
+            Runnable freeAction) {
         this.ptr = ptr;
+        this.serverName = serverName;
+        this.sessionCache = sessionCache;
+        this.sessionStored = sessionStored;
+        this.cleanable = Native.registerCleaner(this, freeAction);
     }
 
     /**
@@ -359,7 +803,10 @@ public class Connection {
      * <p>Intended to be used only by the library code.
      */
     public final long getPointer() {
-        return this.ptr;
+        final long ptr = this.ptr;
+        if (0L == ptr)
+            throw new IllegalStateException("Connection is freed");
+        return ptr;
     }
 
     /**
@@ -370,16 +817,69 @@ public class Connection {
      * <p>Intended to be used only by the library code.
      */
     protected final static Connection newInstance(long ptr) {
-        final Connection conn = new Connection(ptr);
-        Native.registerCleaner(conn, conn::free);
-        return conn;
+        return new Connection(ptr, null, null, null, freeAction(ptr));
+    }
+
+    /**
+     * Instantiates a client connection that stores its TLS session to
+     * {@code sessionCache} once closed, see {@link #storeSession}.
+     */
+    final static Connection newInstance(long ptr, String serverName, SessionCache sessionCache) {
+        if (null == serverName || null == sessionCache)
+            return newInstance(ptr);
+        final AtomicBoolean sessionStored = new AtomicBoolean();
+        return new Connection(ptr, serverName, sessionCache, sessionStored,
+            freeAction(ptr, serverName, sessionCache, sessionStored));
+    }
+
+    /**
+     * Cleanup action for the cleaner. It must not capture the connection
+     * object itself, otherwise the object never becomes phantom reachable.
+     */
+    private final static Runnable freeAction(long ptr) {
+        return () -> Native.quiche_conn_free(ptr);
+    }
+
+    /**
+     * Cleanup action storing the session, unless it was stored when the
+     * connection was closed.
+     */
+    private final static Runnable freeAction(long ptr, String serverName, SessionCache sessionCache,
+            AtomicBoolean sessionStored) {
+        return () -> {
+            if (sessionStored.compareAndSet(false, true))
+                sessionCache.put(serverName, Native.quiche_conn_session(ptr));
+            Native.quiche_conn_free(ptr);
+        };
     }
 
     /**
      * Deallocates a native struct.
+     *
+     * <p>The method is idempotent. Any other method called after this one
+     * throws {@link IllegalStateException}.
+     */
+    public final void free() {
+        if (0L != this.ptr) {
+            this.ptr = 0L;
+            // runs the action at most once, even if racing with the cleaner
+            this.cleanable.clean();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the native struct was deallocated.
+     */
+    public final boolean isFreed() {
+        return 0L == this.ptr;
+    }
+
+    /**
+     * Same as {@link #free}.
      */
-    private final void free() {
-        Native.quiche_conn_free(getPointer());
+    @Override
+    public final void close() {
+        free();
     }
 
     /**
@@ -387,25 +887,27 @@ public class Connection {
      * 
      * <p>Maintains a pointer to a JNI object {@code quiche::stream::StreamIter}.
      */
-    public final static class StreamIter implements Iterator<Long>, Iterable<Long> {
+    public final static class StreamIter implements Iterator<Long>, Iterable<Long>, AutoCloseable {
 
-        private final long ptr;
+        private long ptr;
+        private final Cleanable cleanable;
         private long nextId;
         private boolean hasNext;
 
         /**
          * Instantiates Java object with a given native pointer.
          * 
-         * <p>Sets up cleanup procedure to make sure that native object is deallocated when Java object is GC-ed. 
+         * <p>The native iterator is deallocated as soon as it's exhausted, or
+         * by {@link #close}. The cleaner is only a safety net for iterators
+         * abandoned half way through.
          */
         private final static StreamIter fromPointer(long ptr) {
-            final StreamIter iter = new StreamIter(ptr);
-            Native.registerCleaner(iter, iter::free);
-            return iter;
+            return new StreamIter(ptr);
         }
 
         private StreamIter(long ptr) {
             this.ptr = ptr;
+            this.cleanable = Native.registerCleaner(this, freeAction(ptr));
             this.nextId = Quiche.ErrorCode.DONE;
             // xxx(okachaiev): is there a way not to call iter when creating
             // the object? :thinking:
@@ -413,9 +915,14 @@ public class Connection {
         }
 
         private void reload() {
+            if (0L == ptr) {
+                this.hasNext = false;
+                return;
+            }
             final long nextStreamId = Native.quiche_stream_iter_next(ptr);
             if (Quiche.ErrorCode.DONE == nextStreamId) {
                 this.hasNext = false;
+                this.close();
             } else {
                 this.nextId = nextStreamId;
                 this.hasNext = true;
@@ -436,20 +943,20 @@ public class Connection {
             return this;
         }
 
-        /**
-         * Returns the pointer to a counterpart native object.
-         *
-         * <p>Intended to be used only by the library code.
-         */
-        private final long getPointer() {
-            return this.ptr;
+        private final static Runnable freeAction(long ptr) {
+            return () -> Native.quiche_stream_iter_free(ptr);
         }
 
         /**
-         * Deallocates native object.
+         * Deallocates native object. The method is idempotent.
          */
-        private final void free() {
-            Native.quiche_stream_iter_free(getPointer());
+        @Override
+        public final void close() {
+            if (0L != this.ptr) {
+                this.ptr = 0L;
+                this.hasNext = false;
+                this.cleanable.clean();
+            }
         }
     }
 
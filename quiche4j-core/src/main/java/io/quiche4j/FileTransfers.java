@@ -0,0 +1,184 @@
+package io.quiche4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.quiche4j.buffer.MappedFileCache;
+
+/**
+ * File regions being sent on the streams of a connection, fed to quiche
+ * straight from memory mappings as the streams' capacity allows.
+ *
+ * <p>Intended to be used only by the library code, see
+ * {@link Connection#sendFile} and
+ * {@link io.quiche4j.http3.Http3Connection#sendFile}.
+ */
+public final class FileTransfers {
+
+    /**
+     * Writes stream data, returns the number of bytes written or an error code.
+     */
+    public interface Sink {
+        long send(long streamId, ByteBuffer buf, boolean fin);
+    }
+
+    /**
+     * Resets a stream whose file can't be read any further.
+     */
+    public interface Abort {
+        void abort(long streamId, long error);
+    }
+
+    private final static class Transfer {
+        private final FileChannel ch;
+        private final long end;
+        private final boolean fin;
+        private final long abortError;
+        private long pos;
+        private boolean finSent;
+
+        Transfer(FileChannel ch, long pos, long end, boolean fin, long abortError) {
+            this.ch = ch;
+            this.pos = pos;
+            this.end = end;
+            this.fin = fin;
+            this.abortError = abortError;
+            this.finSent = false;
+        }
+    }
+
+    private final MappedFileCache cache;
+    private final Sink sink;
+    private final Abort abort;
+    private final LinkedHashMap<Long, Transfer> transfers;
+
+    /**
+     * @param abort called with the stream ID and the error code of the
+     *              transfer when the file can't be read any further, should
+     *              reset the stream
+     */
+    public FileTransfers(MappedFileCache cache, Sink sink, Abort abort) {
+        this.cache = cache;
+        this.sink = sink;
+        this.abort = abort;
+        this.transfers = new LinkedHashMap<>();
+    }
+
+    /**
+     * Sends as much of the region as the stream takes now, the rest is
+     * queued until {@link #resume}.
+     *
+     * <p>Returns the number of bytes written (possibly {@code 0}), or an
+     * error code of the sink in which case nothing is queued. The stream is
+     * reset with {@code abortError} if the file can't be read later on.
+     *
+     * @throws IOException if the file can't be mapped
+     * @throws IllegalStateException if a file is already being sent on the stream
+     */
+    public final long start(long streamId, FileChannel ch, long pos, long len, boolean fin, long abortError)
+            throws IOException {
+        if (pos < 0 || len < 0)
+            throw new IllegalArgumentException("Position and length should not be negative");
+        if (transfers.containsKey(streamId))
+            throw new IllegalStateException("Stream " + streamId + " is already sending a file");
+        final Transfer transfer = new Transfer(ch, pos, pos + len, fin, abortError);
+        final long written = push(streamId, transfer);
+        if (Quiche.ErrorCode.DONE == written) {
+            transfers.put(streamId, transfer);
+            return 0;
+        }
+        if (written < 0)
+            return written;
+        if (!isComplete(transfer))
+            transfers.put(streamId, transfer);
+        return written;
+    }
+
+    /**
+     * Continues all queued transfers, to be called once the streams may
+     * have got more capacity (i.e. after receiving packets).
+     *
+     * <p>Returns the total number of bytes written. Transfers failing with
+     * an error are dropped, those failing to read the file also abort the
+     * stream.
+     */
+    public final long resume() {
+        long total = 0;
+        final Iterator<Map.Entry<Long, Transfer>> it = transfers.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Long, Transfer> entry = it.next();
+            final Transfer transfer = entry.getValue();
+            long written;
+            try {
+                written = push(entry.getKey(), transfer);
+            } catch (IOException e) {
+                it.remove();
+                abort.abort(entry.getKey(), transfer.abortError);
+                continue;
+            }
+            if (Quiche.ErrorCode.DONE == written)
+                continue;
+            if (written < 0 || isComplete(transfer))
+                it.remove();
+            if (0 < written)
+                total += written;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of file bytes not yet written to the stream, or
+     * {@link Quiche.ErrorCode#DONE} if there's no transfer on the stream.
+     */
+    public final long remaining(long streamId) {
+        final Transfer transfer = transfers.get(streamId);
+        return null == transfer ? Quiche.ErrorCode.DONE : transfer.end - transfer.pos;
+    }
+
+    /**
+     * Drops the transfer on the stream, if any.
+     */
+    public final void cancel(long streamId) {
+        transfers.remove(streamId);
+    }
+
+    public final boolean isEmpty() {
+        return transfers.isEmpty();
+    }
+
+    private static boolean isComplete(Transfer transfer) {
+        return transfer.pos == transfer.end && (!transfer.fin || transfer.finSent);
+    }
+
+    /**
+     * Writes regions until the stream is blocked or the transfer is
+     * complete, returns the number of bytes written or an error code if
+     * nothing was written.
+     */
+    private long push(long streamId, Transfer transfer) throws IOException {
+        long total = 0;
+        if (isComplete(transfer))
+            return total;
+        // an empty region is still sent once to carry fin
+        do {
+            final ByteBuffer region = cache.region(transfer.ch, transfer.pos, transfer.end - transfer.pos);
+            final int len = region.remaining();
+            final boolean last = transfer.fin && transfer.pos + len == transfer.end;
+            final long written = sink.send(streamId, region, last);
+            if (written < 0)
+                return 0 == total ? written : total;
+            transfer.pos += written;
+            total += written;
+            if (written < len)
+                break;
+            // fin is only set when the whole region was taken
+            transfer.finSent = last;
+        } while (transfer.pos < transfer.end);
+        return total;
+    }
+
+}
@@ -0,0 +1,123 @@
+package io.quiche4j;
+
+import java.nio.ByteBuffer;
+
+import io.quiche4j.http3.Http3Native;
+
+/**
+ * The default {@link NativeBackend}, straight JNI calls.
+ */
+final class JniBackend extends NativeBackend {
+
+    @Override
+    public final String name() {
+        return JNI;
+    }
+
+    @Override
+    public final int connRecv(long connPtr, byte[] buf) {
+        return Native.quiche_conn_recv(connPtr, buf);
+    }
+
+    @Override
+    public final int connRecvBuffer(long connPtr, ByteBuffer buf, int offset, int len) {
+        return Native.quiche_conn_recv_buffer(connPtr, buf, offset, len);
+    }
+
+    @Override
+    public final int connRecvAddress(long connPtr, long bufAddr, int len) {
+        return Native.quiche_conn_recv_address(connPtr, bufAddr, len);
+    }
+
+    @Override
+    public final int connSend(long connPtr, byte[] buf) {
+        return Native.quiche_conn_send(connPtr, buf);
+    }
+
+    @Override
+    public final int connSendBuffer(long connPtr, ByteBuffer buf, int offset, int len) {
+        return Native.quiche_conn_send_buffer(connPtr, buf, offset, len);
+    }
+
+    @Override
+    public final int connSendAddress(long connPtr, long bufAddr, int len) {
+        return Native.quiche_conn_send_address(connPtr, bufAddr, len);
+    }
+
+    @Override
+    public final int streamRecv(long connPtr, long streamId, byte[] buf) {
+        return Native.quiche_conn_stream_recv(connPtr, streamId, buf);
+    }
+
+    @Override
+    public final int streamRecvBuffer(long connPtr, long streamId, ByteBuffer buf, int offset, int len) {
+        return Native.quiche_conn_stream_recv_buffer(connPtr, streamId, buf, offset, len);
+    }
+
+    @Override
+    public final int streamSend(long connPtr, long streamId, byte[] buf, boolean fin) {
+        return Native.quiche_conn_stream_send(connPtr, streamId, buf, fin);
+    }
+
+    @Override
+    public final int streamSendBuffer(long connPtr, long streamId, ByteBuffer buf, int offset, int len,
+            boolean fin) {
+        return Native.quiche_conn_stream_send_buffer(connPtr, streamId, buf, offset, len, fin);
+    }
+
+    @Override
+    public final int streamSendBuffers(long connPtr, long streamId, ByteBuffer[] bufs, int[] ranges,
+            boolean fin) {
+        return Native.quiche_conn_stream_send_buffers(connPtr, streamId, bufs, ranges, fin);
+    }
+
+    @Override
+    public final long timeoutAsNanos(long connPtr) {
+        return Native.quiche_conn_timeout_as_nanos(connPtr);
+    }
+
+    @Override
+    public final void onTimeout(long connPtr) {
+        Native.quiche_conn_on_timeout(connPtr);
+    }
+
+    @Override
+    public final int h3RecvBody(long h3Ptr, long connPtr, long streamId, byte[] buf) {
+        return Http3Native.quiche_h3_recv_body(h3Ptr, connPtr, streamId, buf);
+    }
+
+    @Override
+    public final int h3RecvBodyBuffer(long h3Ptr, long connPtr, long streamId, ByteBuffer buf, int offset,
+            int len) {
+        return Http3Native.quiche_h3_recv_body_buffer(h3Ptr, connPtr, streamId, buf, offset, len);
+    }
+
+    @Override
+    public final int h3RecvBodyAddress(long h3Ptr, long connPtr, long streamId, long bufAddr, int len) {
+        return Http3Native.quiche_h3_recv_body_address(h3Ptr, connPtr, streamId, bufAddr, len);
+    }
+
+    @Override
+    public final long h3SendBody(long h3Ptr, long connPtr, long streamId, byte[] body, boolean fin) {
+        return Http3Native.quiche_h3_send_body(h3Ptr, connPtr, streamId, body, fin);
+    }
+
+    @Override
+    public final long h3SendBodyBuffer(long h3Ptr, long connPtr, long streamId, ByteBuffer body, int offset,
+            int len, boolean fin) {
+        return Http3Native.quiche_h3_send_body_buffer(h3Ptr, connPtr, streamId, body, offset, len, fin);
+    }
+
+    @Override
+    public final long h3SendBodyBuffers(long h3Ptr, long connPtr, long streamId, ByteBuffer[] bodies,
+            int[] ranges, boolean fin) {
+        return Http3Native.quiche_h3_send_body_buffers(h3Ptr, connPtr, streamId, bodies, ranges, fin);
+    }
+
+    @Override
+    public final long h3SendBodyAddress(long h3Ptr, long connPtr, long streamId, long bodyAddr, int len,
+            boolean fin) {
+        return Http3Native.quiche_h3_send_body_address(h3Ptr, connPtr, streamId, bodyAddr, len, fin);
+    }
+
+}
@@ -2,6 +2,7 @@ package io.quiche4j;
 
 import java.lang.ref.Cleaner;
 import java.lang.ref.Cleaner.Cleanable;
+import java.nio.ByteBuffer;
 
 /**
  * Declaration of native JNI calls for QUIC transport.
@@ -11,14 +12,8 @@ public final class Native {
 	public final static String LIBRARY_NAME = "quiche_jni";
 
 	static {
-		// try to load from "java.library.path" location first
-		// to allow user to overwrite the library when necessary.
-		// when failed, tries to load it from /native-libs/ folder in the JAR
-		try {
-			System.loadLibrary(LIBRARY_NAME);
-		} catch (java.lang.UnsatisfiedLinkError e) {
-			NativeUtils.loadEmbeddedLibrary(LIBRARY_NAME);
-		}
+		// "java.library.path" first, then the copy cached from the JAR
+		NativeUtils.loadLibrary(LIBRARY_NAME);
 
 		quiche_init_logger();
 	}
@@ -31,13 +26,19 @@ public final class Native {
 
 	private final static native void quiche_init_logger();
 
+	// MEMORY
+
+	public final static native long quiche_memory_allocated();
+
+	public final static native long quiche_memory_peak();
+
 	// CONFIG
 	
 	public final static native long quiche_config_new(int version);
 
-	public final static native void quiche_config_load_cert_chain_from_pem_file(long config_prt, String path);
+	public final static native int quiche_config_load_cert_chain_from_pem_file(long config_prt, String path);
 
-	public final static native void quiche_config_load_priv_key_from_pem_file(long config_ptr, String path);
+	public final static native int quiche_config_load_priv_key_from_pem_file(long config_ptr, String path);
 
 	public final static native void quiche_config_verify_peer(long config_ptr, boolean v);
 
@@ -71,11 +72,13 @@ public final class Native {
 
 	public final static native void quiche_config_set_disable_active_migration(long config_ptr, boolean v);
 
+	public final static native void quiche_config_enable_dgram(long config_ptr, boolean enabled, long recv_queue_len, long send_queue_len);
+
 	public final static native int quiche_config_set_cc_algorithm_name(long config_ptr, String name);
 
 	public final static native void quiche_config_enable_hystart(long config_ptr, boolean v);
 
-	public final static native long quiche_config_free(long config_ptr);
+	public final static native void quiche_config_free(long config_ptr);
 
 	// CONNECTION
 
@@ -95,6 +98,14 @@ public final class Native {
 
 	public final static native int quiche_conn_send(long conn_ptr, byte[] buf);
 
+	public final static native int quiche_conn_recv_buffer(long conn_ptr, ByteBuffer buf, int offset, int len);
+
+	public final static native int quiche_conn_send_buffer(long conn_ptr, ByteBuffer buf, int offset, int len);
+
+	public final static native int quiche_conn_recv_address(long conn_ptr, long buf_addr, int len);
+
+	public final static native int quiche_conn_send_address(long conn_ptr, long buf_addr, int len);
+
 	public final static native int quiche_conn_close(long conn_ptr, boolean app, long err, byte[] reason);
 
 	public final static native long quiche_conn_timeout_as_nanos(long conn_ptr);
@@ -107,18 +118,32 @@ public final class Native {
 
 	public final static native boolean quiche_conn_is_in_early_data(long conn_ptr);
 
+	public final static native boolean quiche_conn_is_resumed(long conn_ptr);
+
+	public final static native byte[] quiche_conn_session(long conn_ptr);
+
+	public final static native int quiche_conn_set_session(long conn_ptr, byte[] session);
+
 	public final static native boolean quiche_conn_is_closed(long conn_ptr);
 
 	public final static native void quiche_conn_stats(long conn_ptr, Stats holder);
 
 	public final static native void quiche_conn_free(long conn_ptr);
 
+	public final static native long quiche_conn_memory_usage(long conn_ptr);
+
 	// STREAMS
 
 	public final static native int quiche_conn_stream_recv(long conn_ptr, long stream_id, byte[] buf);
 
 	public final static native int quiche_conn_stream_send(long conn_ptr, long stream_id, byte[] buf, boolean fin);
 
+	public final static native int quiche_conn_stream_recv_buffer(long conn_ptr, long stream_id, ByteBuffer buf, int offset, int len);
+
+	public final static native int quiche_conn_stream_send_buffer(long conn_ptr, long stream_id, ByteBuffer buf, int offset, int len, boolean fin);
+
+	public final static native int quiche_conn_stream_send_buffers(long conn_ptr, long stream_id, ByteBuffer[] bufs, int[] ranges, boolean fin);
+
 	public final static native void quiche_conn_stream_shutdown(long conn_ptr, long stream_id, int direction, long err);
 
 	public final static native int quiche_conn_stream_capacity(long conn_ptr, long stream_id);
@@ -133,7 +158,25 @@ public final class Native {
 
 	public final static native void quiche_stream_iter_free(long stream_iter_ptr);
 
+	// DATAGRAMS
+
+	public final static native int quiche_conn_dgram_recv(long conn_ptr, byte[] buf);
+
+	public final static native int quiche_conn_dgram_send(long conn_ptr, byte[] buf);
+
+	public final static native int quiche_conn_dgram_recv_buffer(long conn_ptr, ByteBuffer buf, int offset, int len);
+
+	public final static native int quiche_conn_dgram_send_buffer(long conn_ptr, ByteBuffer buf, int offset, int len);
+
+	public final static native int quiche_conn_dgram_recv_address(long conn_ptr, long buf_addr, int len);
+
+	public final static native int quiche_conn_dgram_send_address(long conn_ptr, long buf_addr, int len);
+
+	public final static native int quiche_conn_dgram_max_writable_len(long conn_ptr);
+
 	// PACKET
 
 	public final static native void quiche_header_from_slice(byte[] buf, int dcid_len, PacketHeader holder);
+
+	public final static native int quiche_header_from_buffer(ByteBuffer buf, int offset, int len, int dcid_len, PacketHeader holder);
 }
@@ -0,0 +1,111 @@
+package io.quiche4j;
+
+import java.nio.ByteBuffer;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Native calls made for every packet or chunk of stream data.
+ *
+ * <p>{@link Connection} and {@link io.quiche4j.http3.Http3Connection} go
+ * through the backend on their data path, everything else (creation,
+ * configuration, events) always uses JNI. Connection and HTTP/3 handles are
+ * shared by all backends.
+ *
+ * <p>The backend is selected once, when first used, with the
+ * {@value #PROPERTY} system property: {@code jni} (the default) or the name
+ * of an implementation registered with {@link ServiceLoader}, e.g.
+ * {@code ffm} provided by {@code quiche4j-panama} on JDK 22+. When the named
+ * backend is not available JNI is used, check {@link #name} of
+ * {@link #current} to see which one is in effect.
+ *
+ * <p>Address arguments are native memory addresses, the memory must stay
+ * valid for the duration of the call.
+ */
+public abstract class NativeBackend {
+
+    public static final String PROPERTY = "quiche4j.backend";
+
+    public static final String JNI = "jni";
+
+    /**
+     * Returns the backend in use.
+     */
+    public static final NativeBackend current() {
+        return Holder.INSTANCE;
+    }
+
+    private static final class Holder {
+        static final NativeBackend INSTANCE = select(System.getProperty(PROPERTY, JNI));
+    }
+
+    private static NativeBackend select(String name) {
+        if (!JNI.equals(name)) {
+            try {
+                for (NativeBackend backend : ServiceLoader.load(NativeBackend.class)) {
+                    if (name.equals(backend.name()))
+                        return backend;
+                }
+            } catch (LinkageError | ServiceConfigurationError e) {
+                // e.g. the implementation requires newer JDK
+            }
+        }
+        return new JniBackend();
+    }
+
+    /**
+     * Returns the name used to select the backend.
+     */
+    public abstract String name();
+
+    public abstract int connRecv(long connPtr, byte[] buf);
+
+    public abstract int connRecvBuffer(long connPtr, ByteBuffer buf, int offset, int len);
+
+    public abstract int connRecvAddress(long connPtr, long bufAddr, int len);
+
+    public abstract int connSend(long connPtr, byte[] buf);
+
+    public abstract int connSendBuffer(long connPtr, ByteBuffer buf, int offset, int len);
+
+    public abstract int connSendAddress(long connPtr, long bufAddr, int len);
+
+    public abstract int streamRecv(long connPtr, long streamId, byte[] buf);
+
+    public abstract int streamRecvBuffer(long connPtr, long streamId, ByteBuffer buf, int offset, int len);
+
+    public abstract int streamSend(long connPtr, long streamId, byte[] buf, boolean fin);
+
+    public abstract int streamSendBuffer(long connPtr, long streamId, ByteBuffer buf, int offset, int len,
+            boolean fin);
+
+    /**
+     * Writes a gather list of direct buffers, {@code ranges} holds an
+     * (offset, length) pair for each of them.
+     */
+    public abstract int streamSendBuffers(long connPtr, long streamId, ByteBuffer[] bufs, int[] ranges,
+            boolean fin);
+
+    public abstract long timeoutAsNanos(long connPtr);
+
+    public abstract void onTimeout(long connPtr);
+
+    public abstract int h3RecvBody(long h3Ptr, long connPtr, long streamId, byte[] buf);
+
+    public abstract int h3RecvBodyBuffer(long h3Ptr, long connPtr, long streamId, ByteBuffer buf, int offset,
+            int len);
+
+    public abstract int h3RecvBodyAddress(long h3Ptr, long connPtr, long streamId, long bufAddr, int len);
+
+    public abstract long h3SendBody(long h3Ptr, long connPtr, long streamId, byte[] body, boolean fin);
+
+    public abstract long h3SendBodyBuffer(long h3Ptr, long connPtr, long streamId, ByteBuffer body, int offset,
+            int len, boolean fin);
+
+    public abstract long h3SendBodyBuffers(long h3Ptr, long connPtr, long streamId, ByteBuffer[] bodies,
+            int[] ranges, boolean fin);
+
+    public abstract long h3SendBodyAddress(long h3Ptr, long connPtr, long streamId, long bodyAddr, int len,
+            boolean fin);
+
+}
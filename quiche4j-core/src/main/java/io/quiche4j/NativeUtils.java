@@ -1,43 +1,212 @@
 package io.quiche4j;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
 
 /**
  * Helper functionality to try to resolve native library from JAR
  * in case when a system dependency is not available.
+ *
+ * <p>The library found in the JAR is extracted once into a cache directory
+ * keyed by the library version and the SHA-256 of its content, e.g.
+ * {@code ~/.cache/quiche4j/0.2.5/3f2a...}, and reused by later runs. The
+ * digest is computed at build time and shipped next to the library (e.g.
+ * {@code libquiche_jni.so.sha256}), so a cached copy is found and loaded
+ * without reading the library from the JAR. The
+ * cache location can be changed with the {@value #CACHE_DIR_PROPERTY} system
+ * property. When the cache is not writable the library is extracted into a
+ * fresh temporary directory instead, created with a random name and (on
+ * POSIX file systems) accessible to the owner only, as a predictable path in
+ * the shared temporary directory could be planted by another user.
  */
 public final class NativeUtils {
 
+    /**
+     * System property overriding the directory native libraries are extracted to.
+     */
+    public static final String CACHE_DIR_PROPERTY = "quiche4j.native.cacheDir";
+
     private static final String DEFAUL_DIR = "/native-libs/";
 
     private static final String[] ALLOWED_EXTENTIONS = new String[]{"so", "dylib", "dll"};
 
+    private static final Set<String> LOADED = new HashSet<>();
+
+    /**
+     * Loads the library from "java.library.path" location first to allow
+     * user to overwrite the library when necessary, when failed loads it from
+     * /native-libs/ folder in the JAR. Subsequent calls for the same library
+     * are no-op.
+     */
+    public static synchronized void loadLibrary(String libname) {
+        if (LOADED.contains(libname))
+            return;
+        try {
+            System.loadLibrary(libname);
+        } catch (UnsatisfiedLinkError e) {
+            if (!loadEmbeddedLibrary(DEFAUL_DIR, libname))
+                throw e;
+        }
+        LOADED.add(libname);
+    }
+
     public static void loadEmbeddedLibrary(String libname) {
         loadEmbeddedLibrary(DEFAUL_DIR, libname);
     }
 
-    public static void loadEmbeddedLibrary(String dir, String libname) {
+    /**
+     * Extracts the library from the JAR (unless there's a valid copy in the
+     * cache already) and loads it. Returns {@code false} if the library is
+     * not found or cannot be extracted.
+     */
+    public static synchronized boolean loadEmbeddedLibrary(String dir, String libname) {
         final String filename = "lib" + libname;
 
         String nativeLibraryFilepath = null;
+        String nativeLibraryFilename = null;
         for (String ext: ALLOWED_EXTENTIONS) {
             final String filepath = dir + filename + "." + ext;
-            final URL url = Quiche.class.getResource(filepath);
-            if (url != null) {
+            if (Quiche.class.getResource(filepath) != null) {
                 nativeLibraryFilepath = filepath;
+                nativeLibraryFilename = filename + "." + ext;
                 break;
             }
         }
 
-        if (nativeLibraryFilepath != null) {
-            // native library found within JAR, extract and load
+        if (nativeLibraryFilepath == null)
+            return false;
+
+        try {
+            String digest = builtDigest(nativeLibraryFilepath);
+            if (digest != null) {
+                final Path cached = cacheRoot().resolve(version()).resolve(digest).resolve(nativeLibraryFilename);
+                if (isExtracted(cached, resourceSize(nativeLibraryFilepath))) {
+                    System.load(cached.toAbsolutePath().toString());
+                    return true;
+                }
+            }
+
+            final byte[] content = Utils.readResource(nativeLibraryFilepath);
+            if (content == null)
+                return false;
+            // built without the digest resource, e.g. by the IDE
+            if (digest == null)
+                digest = sha256(content);
+            Path libfile;
             try {
-                final String libfile = Utils.copyFileFromJAR("libs", nativeLibraryFilepath);
-                System.load(libfile);
+                libfile = extract(cacheRoot().resolve(version()).resolve(digest), nativeLibraryFilename, content);
             } catch (IOException e) {
-                // no-op
+                // read-only home, sandbox etc.
+                libfile = extractTemp(nativeLibraryFilename, content);
             }
+            System.load(libfile.toAbsolutePath().toString());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Files only get into the cache by an atomic move of a complete copy, so
+     * a file of the right size is trusted without hashing it again.
+     */
+    private static boolean isExtracted(Path target, long size) throws IOException {
+        return 0 <= size && Files.isRegularFile(target) && Files.size(target) == size;
+    }
+
+    private static Path extract(Path dir, String filename, byte[] content) throws IOException {
+        final Path target = dir.resolve(filename);
+        if (isExtracted(target, content.length))
+            return target;
+
+        Files.createDirectories(dir);
+        final Path temp = Files.createTempFile(dir, filename, ".tmp");
+        try {
+            Files.write(temp, content);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return target;
+    }
+
+    /**
+     * Extracts the library into a new private temporary directory, both
+     * deleted on exit.
+     */
+    private static Path extractTemp(String filename, byte[] content) throws IOException {
+        final Path dir = Files.createTempDirectory("quiche4j-");
+        // deleted in reverse order of registration, the file first
+        dir.toFile().deleteOnExit();
+        final Path target = extract(dir, filename, content);
+        target.toFile().deleteOnExit();
+        return target;
+    }
+
+    private static Path cacheRoot() {
+        final String override = System.getProperty(CACHE_DIR_PROPERTY);
+        if (override != null && !override.isEmpty())
+            return Paths.get(override);
+        final String xdg = System.getenv("XDG_CACHE_HOME");
+        if (xdg != null && !xdg.isEmpty())
+            return Paths.get(xdg, "quiche4j");
+        return Paths.get(System.getProperty("user.home"), ".cache", "quiche4j");
+    }
+
+    /**
+     * Returns the SHA-256 of the library computed at build time, or
+     * {@code null} if it's not packaged.
+     */
+    private static String builtDigest(String filepath) throws IOException {
+        final byte[] content = Utils.readResource(filepath + ".sha256");
+        if (content == null)
+            return null;
+        // the checksum file might list the file name after the digest
+        final String digest = new String(content, StandardCharsets.US_ASCII).trim().split("\\s+")[0]
+                .toLowerCase(Locale.ROOT);
+        return digest.matches("[0-9a-f]{64}") ? digest : null;
+    }
+
+    /**
+     * Returns the size of the resource, read from the JAR directory without
+     * inflating it, or {@code -1} if unknown.
+     */
+    private static long resourceSize(String filepath) throws IOException {
+        final URL url = Quiche.class.getResource(filepath);
+        if (url == null)
+            return -1;
+        final URLConnection connection = url.openConnection();
+        return connection.getContentLengthLong();
+    }
+
+    private static String version() {
+        final String version = Quiche.class.getPackage().getImplementationVersion();
+        return version == null ? "unversioned" : version.replace(File.separatorChar, '_');
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return Utils.asHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            // every JRE is required to support SHA-256
+            throw new IllegalStateException(e);
         }
     }
-}
\ No newline at end of file
+}
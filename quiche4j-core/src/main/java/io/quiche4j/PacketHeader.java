@@ -1,5 +1,7 @@
 package io.quiche4j;
 
+import java.nio.ByteBuffer;
+
 /**
  * A QUIC packet's header.
  */
@@ -183,6 +185,22 @@ public final class PacketHeader {
         return hdr;
     }
 
+    /**
+     * Parses a QUIC packet header from the given direct buffer, without copying
+     * the packet into Java heap.
+     *
+     * <p>Bytes between the buffer's position and limit are parsed, the position is
+     * not modified. Returns {@code null} if the header cannot be parsed.
+     */
+    public final static PacketHeader parse(ByteBuffer buf, int dcidLength) {
+        if (!buf.isDirect())
+            throw new IllegalArgumentException("Direct buffer is required");
+        final PacketHeader hdr = new PacketHeader();
+        final int pos = buf.position();
+        final int code = Native.quiche_header_from_buffer(buf, pos, buf.limit() - pos, dcidLength, hdr);
+        return Quiche.ErrorCode.SUCCESS == code ? hdr : null;
+    }
+
     public final String toString() {
         return String.format(
             "ty=%s version=%d dcid=%s scid=%s pkt_num=%d pkt_num_len=%d token=%s versions=%s",
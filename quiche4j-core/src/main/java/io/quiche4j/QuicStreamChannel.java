@@ -0,0 +1,233 @@
+package io.quiche4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.util.function.Consumer;
+
+import io.quiche4j.Quiche.Shutdown;
+
+/**
+ * A non-blocking {@link ByteChannel} view of a QUIC stream, obtained with
+ * {@link Connection#streamChannel}. Lets streams be used with the rest of
+ * Java I/O, e.g. {@link java.nio.channels.FileChannel#transferFrom} or
+ * relaying to a socket channel.
+ *
+ * <p>A read returns {@code 0} when there's no data to read yet (also on a
+ * stream quiche doesn't know about yet, e.g. before the first write to a
+ * locally initiated one) and {@code -1} once the peer finished the stream
+ * and all of its data was read. A write returns {@code 0} when the stream has no capacity. Other
+ * errors of the underlying stream are thrown as {@link IOException}.
+ * Direct buffers are passed to quiche as they are, heap buffers are
+ * copied through a direct buffer owned by the channel.
+ *
+ * <p>Readiness is reported through the handlers set with
+ * {@link #onReadable} and {@link #onWritable}, invoked by
+ * {@link Connection#dispatchStreamChannels} which the application calls once
+ * per event loop iteration, after the received packets are processed. The
+ * writable handler is only invoked after a write returned {@code 0}.
+ *
+ * <p>{@link #close} finishes the stream (if not finished yet) and stops
+ * reading from it. Like the connection, the channel is not thread-safe.
+ */
+public final class QuicStreamChannel implements ByteChannel {
+
+    /**
+     * The size of the direct buffer heap buffers are copied through.
+     */
+    public static final int SCRATCH_SIZE = 16384;
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocateDirect(0);
+
+    private final Connection conn;
+    private final long streamId;
+    private ByteBuffer scratch;
+    private Consumer<QuicStreamChannel> readableHandler;
+    private Consumer<QuicStreamChannel> writableHandler;
+    private boolean writeBlocked;
+    private boolean outputShutdown;
+    private boolean open;
+
+    /**
+     * Set once the stream was seen by quiche: data was read or written, or
+     * the stream was reported readable.
+     */
+    private boolean active;
+
+    /**
+     * Set once a read consumed the peer's fin.
+     */
+    private boolean finReceived;
+
+    QuicStreamChannel(Connection conn, long streamId) {
+        this.conn = conn;
+        this.streamId = streamId;
+        this.writeBlocked = false;
+        this.outputShutdown = false;
+        this.open = true;
+        this.active = false;
+        this.finReceived = false;
+    }
+
+    public final long streamId() {
+        return this.streamId;
+    }
+
+    @Override
+    public final int read(ByteBuffer dst) throws IOException {
+        checkOpen();
+        if (finReceived)
+            return -1;
+        if (!dst.hasRemaining())
+            return 0;
+        final int read;
+        if (dst.isDirect()) {
+            read = conn.streamRecv(streamId, dst);
+        } else {
+            final ByteBuffer buf = scratch();
+            buf.clear().limit(Math.min(buf.capacity(), dst.remaining()));
+            read = conn.streamRecv(streamId, buf);
+            if (0 < read) {
+                buf.flip();
+                dst.put(buf);
+            }
+        }
+        if (0 < read) {
+            active = true;
+            // fin is consumed with the last of the data, reported by the next read
+            finReceived = conn.streamFinished(streamId);
+            return read;
+        }
+        if (Quiche.ErrorCode.DONE == read)
+            return 0;
+        // quiche reports a stream it doesn't know as finished, and fails to
+        // read from it with INVALID_STREAM_STATE: unknown before it's used,
+        // gone once all of its data was read
+        if (0 == read || Quiche.ErrorCode.INVALID_STREAM_STATE == read) {
+            if (!active)
+                return 0;
+            if (conn.streamFinished(streamId)) {
+                finReceived = true;
+                return -1;
+            }
+            if (0 == read)
+                return 0;
+        }
+        throw new IOException("Stream " + streamId + " read failed with error " + read);
+    }
+
+    @Override
+    public final int write(ByteBuffer src) throws IOException {
+        checkOpen();
+        if (outputShutdown)
+            throw new IOException("Stream " + streamId + " output is shut down");
+        if (!src.hasRemaining())
+            return 0;
+        int written;
+        if (src.isDirect()) {
+            written = conn.streamSend(streamId, src, false);
+        } else {
+            final ByteBuffer buf = scratch();
+            buf.clear();
+            final int limit = src.limit();
+            final int pos = src.position();
+            src.limit(pos + Math.min(buf.capacity(), src.remaining()));
+            buf.put(src).flip();
+            src.limit(limit);
+            written = conn.streamSend(streamId, buf, false);
+            src.position(pos + Math.max(0, written));
+        }
+        if (Quiche.ErrorCode.DONE == written)
+            written = 0;
+        if (written < 0)
+            throw new IOException("Stream " + streamId + " write failed with error " + written);
+        if (0 == written)
+            writeBlocked = true;
+        else
+            active = true;
+        return written;
+    }
+
+    /**
+     * Finishes the stream, no more data is written after what was already
+     * accepted. Does nothing if the output is already shut down.
+     */
+    public final void shutdownOutput() throws IOException {
+        checkOpen();
+        if (outputShutdown)
+            return;
+        final int written = conn.streamSend(streamId, EMPTY, true);
+        if (written < 0)
+            throw new IOException("Stream " + streamId + " shutdown failed with error " + written);
+        outputShutdown = true;
+        active = true;
+    }
+
+    /**
+     * Sets the handler invoked by {@link Connection#dispatchStreamChannels}
+     * when the stream has data to read (or is finished).
+     */
+    public final QuicStreamChannel onReadable(Consumer<QuicStreamChannel> handler) {
+        this.readableHandler = handler;
+        return this;
+    }
+
+    /**
+     * Sets the handler invoked by {@link Connection#dispatchStreamChannels}
+     * when the stream got capacity after a write returned {@code 0}.
+     */
+    public final QuicStreamChannel onWritable(Consumer<QuicStreamChannel> handler) {
+        this.writableHandler = handler;
+        return this;
+    }
+
+    @Override
+    public final boolean isOpen() {
+        return this.open;
+    }
+
+    /**
+     * Finishes the stream and shuts down reading from it. Errors of the
+     * underlying stream (e.g. if it's already reset) are ignored.
+     */
+    @Override
+    public final void close() {
+        if (!open)
+            return;
+        open = false;
+        conn.removeStreamChannel(this);
+        if (conn.isFreed())
+            return;
+        if (!outputShutdown)
+            conn.streamSend(streamId, EMPTY, true);
+        if (!conn.streamFinished(streamId))
+            conn.streamShutdown(streamId, Shutdown.READ, 0);
+    }
+
+    final void fireReadable() {
+        active = true;
+        if (null != readableHandler)
+            readableHandler.accept(this);
+    }
+
+    final void fireWritable() {
+        if (!writeBlocked)
+            return;
+        writeBlocked = false;
+        if (null != writableHandler)
+            writableHandler.accept(this);
+    }
+
+    private ByteBuffer scratch() {
+        if (null == scratch)
+            scratch = ByteBuffer.allocateDirect(SCRATCH_SIZE);
+        return scratch;
+    }
+
+    private void checkOpen() throws ClosedChannelException {
+        if (!open)
+            throw new ClosedChannelException();
+    }
+
+}
@@ -1,5 +1,6 @@
 package io.quiche4j;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
@@ -217,6 +218,36 @@ public final class Quiche {
         return Native.quiche_negotiate_version(sourceConnId, destinationConnId, buf);
     }
 
+    /**
+     * Writes a version negotiation packet into {@code buf}, starting at its
+     * position.
+     *
+     * <p>Same as {@link #negotiateVersion(byte[], byte[], byte[])}, but the packet
+     * is written in Java, without a native call. On success the length of the
+     * packet is returned and the position is advanced accordingly,
+     * {@link ErrorCode#BUFFER_TOO_SHORT} is returned if it doesn't fit.
+     */
+    public static final int negotiateVersion(byte[] sourceConnId, byte[] destinationConnId, ByteBuffer buf) {
+        return StatelessPackets.negotiateVersion(sourceConnId, destinationConnId, buf);
+    }
+
+    /**
+     * Returns the number of bytes of native memory currently allocated by
+     * quiche and the JNI library.
+     *
+     * <p>Memory allocated by BoringSSL (TLS state) is not included.
+     */
+    public static final long nativeMemoryAllocated() {
+        return Native.quiche_memory_allocated();
+    }
+
+    /**
+     * Returns the highest value of {@link #nativeMemoryAllocated} observed so far.
+     */
+    public static final long nativeMemoryPeak() {
+        return Native.quiche_memory_peak();
+    }
+
     /**
      * Returns {@code true} if the given protocol version is supported.
      */
@@ -244,6 +275,22 @@ public final class Quiche {
         return Native.quiche_retry(sourceConnId, destinationConnId, newSourceConnId, token, version, buf);
     }
 
+    /**
+     * Writes a stateless retry packet into {@code buf}, starting at its position.
+     *
+     * <p>Same as {@link #retry(byte[], byte[], byte[], byte[], int, byte[])}, but
+     * the packet (including its integrity tag) is written in Java, without a
+     * native call. Retries are sent in response to unauthenticated packets, so
+     * this keeps a flood of Initials away from JNI. On success the length of
+     * the packet is returned and the position is advanced accordingly,
+     * {@link ErrorCode#BUFFER_TOO_SHORT} is returned if it doesn't fit and
+     * {@link ErrorCode#UNKNOWN_VERSION} if the version is not supported.
+     */
+    public static final int retry(byte[] sourceConnId, byte[] destinationConnId, byte[] newSourceConnId, byte[] token,
+            int version, ByteBuffer buf) {
+        return StatelessPackets.retry(sourceConnId, destinationConnId, newSourceConnId, token, version, buf);
+    }
+
     /**
      * Creates a new server-side connection.
      *
@@ -270,6 +317,10 @@ public final class Quiche {
      * The {@code sourceConnId} parameter is used as the connection's source
      * connection ID, while the optional {@code serverName} parameter is used to
      * verify the peer's certificate.
+     *
+     * <p>When the config has a {@link SessionCache}, the session stored for
+     * {@code serverName} is resumed and the session of the new connection is
+     * stored back once it's freed.
      * 
      * @throws ConnectionFailureException
      */
@@ -279,7 +330,14 @@ public final class Quiche {
         if (ptr <= ErrorCode.SUCCESS) {
             throw new ConnectionFailureException(ptr);
         }
-        return Connection.newInstance(ptr);
+        final SessionCache sessionCache = config.sessionCache();
+        if (null != sessionCache && null != serverName) {
+            final byte[] session = sessionCache.take(serverName);
+            // a session that can't be resumed means a full handshake
+            if (null != session)
+                Native.quiche_conn_set_session(ptr, session);
+        }
+        return Connection.newInstance(ptr, serverName, sessionCache);
     }
 
 }
\ No newline at end of file
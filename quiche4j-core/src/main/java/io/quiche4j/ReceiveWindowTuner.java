@@ -0,0 +1,275 @@
+package io.quiche4j;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Picks receive flow control windows for new connections from the measured
+ * round-trip time and consumption rate of earlier connections to the same
+ * peer.
+ *
+ * <p>A fixed stream window caps the throughput at {@code window / RTT}, while
+ * large windows for every connection waste memory. The tuner keeps a ladder
+ * of configurations with stream windows doubling from {@code minStreamWindow}
+ * up to {@code maxStreamWindow} (the per-connection ceiling), the connection
+ * window being {@code connectionWindowFactor} times the stream window. A new
+ * connection gets the smallest window covering twice the bandwidth-delay
+ * product estimated for its peer. Peers seen consuming data as fast as their
+ * window allowed are moved a step up, as their real bandwidth is hidden by
+ * the window. Unknown peers start at the bottom.
+ *
+ * <p>Connection windows of acquired {@link Window}s are summed up and kept
+ * under {@code memoryCap}: a connection that wouldn't fit gets a smaller
+ * window (the smallest one even over the cap, refusing connections is up to
+ * {@link io.quiche4j.server.MemoryBudget}).
+ *
+ * <p>quiche keeps windows fixed for the lifetime of a connection, so the
+ * tuning happens between connections rather than within one.
+ *
+ * <p>Example:
+ * <pre>
+ *     final ReceiveWindowTuner tuner = new ReceiveWindowTuner(
+ *         () -&gt; new ConfigBuilder(Quiche.PROTOCOL_VERSION)
+ *             .withApplicationProtos(Http3.APPLICATION_PROTOCOL)
+ *             .withMaxIdleTimeout(5_000),
+ *         512L &lt;&lt; 20);
+ *
+ *     final ReceiveWindowTuner.Window window = tuner.acquire(serverName);
+ *     final Connection conn = Quiche.connect(serverName, connId, window.config());
+ *     // ... transfer, counting bytes read from streams ...
+ *     window.release(conn, bytesRead);
+ * </pre>
+ *
+ * <p>The tuner is thread-safe.
+ */
+public final class ReceiveWindowTuner {
+
+    /**
+     * The default stream window of unknown peers.
+     */
+    public static final long DEFAULT_MIN_STREAM_WINDOW = 256L << 10;
+
+    /**
+     * The default stream window ceiling.
+     */
+    public static final long DEFAULT_MAX_STREAM_WINDOW = 16L << 20;
+
+    /**
+     * The default ratio of connection to stream window.
+     */
+    public static final int DEFAULT_CONNECTION_WINDOW_FACTOR = 4;
+
+    /**
+     * The default maximum number of peers with estimates kept.
+     */
+    public static final int DEFAULT_MAX_PEERS = 4096;
+
+    /**
+     * Weight of the latest sample in the moving averages.
+     */
+    private static final double SAMPLE_WEIGHT = 0.25;
+
+    /**
+     * Share of the window consumed per round trip above which the window is
+     * considered to be the bottleneck.
+     */
+    private static final double WINDOW_LIMITED_SHARE = 0.5;
+
+    private final static class Estimate {
+        private double rttMillis;
+        private double bytesPerSecond;
+        private boolean windowLimited;
+        private int tier;
+    }
+
+    /**
+     * Windows granted to a connection, to be released once the connection is
+     * closed.
+     */
+    public final class Window {
+
+        private final String peer;
+        private final int tier;
+        private final long acquiredAt;
+        private boolean released;
+
+        private Window(String peer, int tier) {
+            this.peer = peer;
+            this.tier = tier;
+            this.acquiredAt = System.nanoTime();
+            this.released = false;
+        }
+
+        /**
+         * Returns the configuration to create the connection with.
+         */
+        public final Config config() {
+            return ReceiveWindowTuner.this.config(tier);
+        }
+
+        public final long streamWindow() {
+            return streamWindows[tier];
+        }
+
+        public final long connectionWindow() {
+            return streamWindows[tier] * connectionWindowFactor;
+        }
+
+        /**
+         * Releases the window, sampling RTT of the connection and the rate at
+         * which the application consumed {@code bytesConsumed} bytes since the
+         * window was acquired.
+         */
+        public final void release(Connection conn, long bytesConsumed) {
+            release(conn.stats().rtt(), bytesConsumed, System.nanoTime() - acquiredAt);
+        }
+
+        /**
+         * Releases the window with the given sample.
+         */
+        public final void release(long rttMillis, long bytesConsumed, long elapsedNanos) {
+            ReceiveWindowTuner.this.release(this, rttMillis, bytesConsumed, elapsedNanos);
+        }
+
+        /**
+         * Releases the window without sampling, e.g. when the connection failed.
+         */
+        public final void release() {
+            release(0, 0, 0);
+        }
+    }
+
+    private final Supplier<ConfigBuilder> template;
+    private final long[] streamWindows;
+    private final Config[] configs;
+    private final int connectionWindowFactor;
+    private final long memoryCap;
+    private final int maxPeers;
+    private final LinkedHashMap<String, Estimate> peers;
+    private long committed;
+
+    public ReceiveWindowTuner(Supplier<ConfigBuilder> template, long memoryCap) {
+        this(template, DEFAULT_MIN_STREAM_WINDOW, DEFAULT_MAX_STREAM_WINDOW,
+            DEFAULT_CONNECTION_WINDOW_FACTOR, memoryCap);
+    }
+
+    /**
+     * @param template supplies builders with everything but flow control
+     *                 windows configured, called once per window size
+     */
+    public ReceiveWindowTuner(Supplier<ConfigBuilder> template, long minStreamWindow, long maxStreamWindow,
+            int connectionWindowFactor, long memoryCap) {
+        if (minStreamWindow <= 0)
+            throw new IllegalArgumentException("Min stream window should be positive");
+        if (maxStreamWindow < minStreamWindow)
+            throw new IllegalArgumentException("Max stream window should not be less than min stream window");
+        if (connectionWindowFactor <= 0)
+            throw new IllegalArgumentException("Connection window factor should be positive");
+        if (memoryCap <= 0)
+            throw new IllegalArgumentException("Memory cap should be positive");
+        int tiers = 1;
+        while (tiers < Long.numberOfLeadingZeros(minStreamWindow) && (minStreamWindow << tiers) <= maxStreamWindow)
+            tiers++;
+        this.streamWindows = new long[tiers];
+        for (int i = 0; i < tiers; i++)
+            this.streamWindows[i] = minStreamWindow << i;
+        this.template = template;
+        this.configs = new Config[tiers];
+        this.connectionWindowFactor = connectionWindowFactor;
+        this.memoryCap = memoryCap;
+        this.maxPeers = DEFAULT_MAX_PEERS;
+        this.peers = new LinkedHashMap<>(16, 0.75f, true);
+        this.committed = 0;
+    }
+
+    /**
+     * Acquires windows for a new connection to the peer, identified e.g. by
+     * its server name or address.
+     */
+    public final synchronized Window acquire(String peer) {
+        final Estimate estimate = peers.get(peer);
+        int tier = null == estimate ? 0 : estimate.tier;
+        while (0 < tier && memoryCap < committed + streamWindows[tier] * connectionWindowFactor)
+            tier--;
+        committed += streamWindows[tier] * connectionWindowFactor;
+        return new Window(peer, tier);
+    }
+
+    /**
+     * Returns the sum of connection windows of windows not yet released.
+     */
+    public final synchronized long committed() {
+        return this.committed;
+    }
+
+    /**
+     * Returns the stream window the next connection to the peer would get,
+     * disregarding the memory cap.
+     */
+    public final synchronized long streamWindow(String peer) {
+        final Estimate estimate = peers.get(peer);
+        return streamWindows[null == estimate ? 0 : estimate.tier];
+    }
+
+    private synchronized void release(Window window, long rttMillis, long bytesConsumed, long elapsedNanos) {
+        if (window.released)
+            return;
+        window.released = true;
+        committed -= window.connectionWindow();
+        if (rttMillis <= 0)
+            return;
+
+        Estimate estimate = peers.get(window.peer);
+        if (null == estimate) {
+            estimate = new Estimate();
+            estimate.rttMillis = rttMillis;
+            peers.put(window.peer, estimate);
+            evict();
+        } else {
+            estimate.rttMillis += SAMPLE_WEIGHT * (rttMillis - estimate.rttMillis);
+        }
+        // short exchanges say nothing about the bandwidth
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (streamWindows[0] <= bytesConsumed && rttMillis < elapsedMillis) {
+            final double rate = bytesConsumed * 1000.0 / elapsedMillis;
+            estimate.bytesPerSecond = 0 == estimate.bytesPerSecond
+                ? rate
+                : estimate.bytesPerSecond + SAMPLE_WEIGHT * (rate - estimate.bytesPerSecond);
+            estimate.windowLimited =
+                WINDOW_LIMITED_SHARE * window.streamWindow() <= rate * rttMillis / 1000.0;
+        }
+
+        final double target = Math.max(2 * estimate.bytesPerSecond * estimate.rttMillis / 1000.0,
+            estimate.windowLimited ? 2 * window.streamWindow() : 0);
+        int tier = 0;
+        while (tier < streamWindows.length - 1 && streamWindows[tier] < target)
+            tier++;
+        estimate.tier = tier;
+    }
+
+    private synchronized Config config(int tier) {
+        Config config = configs[tier];
+        if (null == config) {
+            final long streamWindow = streamWindows[tier];
+            config = template.get()
+                .withInitialMaxData(streamWindow * connectionWindowFactor)
+                .withInitialMaxStreamDataBidiLocal(streamWindow)
+                .withInitialMaxStreamDataBidiRemote(streamWindow)
+                .withInitialMaxStreamDataUni(streamWindow)
+                .build();
+            configs[tier] = config;
+        }
+        return config;
+    }
+
+    private void evict() {
+        final Iterator<Estimate> it = peers.values().iterator();
+        while (maxPeers < peers.size() && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package io.quiche4j;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side cache of TLS sessions, keyed by server name.
+ *
+ * <p>A connection created by {@link Quiche#connect} with a {@link Config} that
+ * has a cache attached (see {@link ConfigBuilder#withSessionCache}) resumes the
+ * session previously stored for the same server name, if any. With early data
+ * enabled the client is then able to send requests in 0-RTT, see
+ * {@link Connection#isInEarlyData}. The session of a connection is stored
+ * back to the cache once the connection is closed (see
+ * {@link Connection#storeSession}), or at the latest when it's freed.
+ *
+ * <p>Each session is used at most once, as recommended by RFC 8446 (a resumed
+ * connection normally receives a fresh ticket from the server). Sessions older
+ * than {@code ttl} are discarded, the least recently stored ones are evicted
+ * once the cache holds {@code maxEntries} servers.
+ *
+ * <p>The cache is thread-safe.
+ */
+public final class SessionCache {
+
+    /**
+     * The default maximum number of cached sessions.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    /**
+     * The default lifetime of a cached session.
+     */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private final static class Session {
+        private final byte[] session;
+        private final long expiresAt;
+
+        Session(byte[] session, long expiresAt) {
+            this.session = session;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Session> sessions;
+
+    public SessionCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    public SessionCache(int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("Max entries should be positive");
+        if (ttlMillis <= 0)
+            throw new IllegalArgumentException("TTL should be positive");
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.sessions = new LinkedHashMap<String, Session>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > SessionCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Stores the session for the given server, replacing the previous one.
+     */
+    public final synchronized void put(String serverName, byte[] session) {
+        if (null == serverName || null == session)
+            return;
+        sessions.put(serverName, new Session(session, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Removes and returns the session stored for the given server, or
+     * {@code null} if there's none or it's expired.
+     */
+    public final synchronized byte[] take(String serverName) {
+        if (null == serverName)
+            return null;
+        final Session entry = sessions.remove(serverName);
+        if (null == entry || entry.expiresAt - System.nanoTime() <= 0)
+            return null;
+        return entry.session;
+    }
+
+    /**
+     * Removes expired sessions.
+     */
+    public final synchronized void purge() {
+        final long now = System.nanoTime();
+        final Iterator<Session> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expiresAt - now <= 0)
+                it.remove();
+        }
+    }
+
+    public final synchronized int size() {
+        return sessions.size();
+    }
+
+    public final synchronized void clear() {
+        sessions.clear();
+    }
+
+}
@@ -0,0 +1,164 @@
+package io.quiche4j;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Writes Version Negotiation and Retry packets without crossing JNI.
+ *
+ * <p>Those are the packets a server sends in response to unauthenticated
+ * Initials, so an attacker decides how many of them are written. The native
+ * counterparts ({@link Native#quiche_negotiate_version} and
+ * {@link Native#quiche_retry}) copy all connection IDs and the token into
+ * native memory and the packet back; here the packet is written straight into
+ * the caller's buffer.
+ *
+ * <p>The Retry integrity tag (AES-128-GCM over the Retry pseudo-packet with
+ * a key and nonce fixed by the protocol version) is computed with a cipher
+ * cached per thread.
+ */
+final class StatelessPackets {
+
+    private static final int FORM_BIT = 0x80;
+    private static final int FIXED_BIT = 0x40;
+    private static final int TYPE_RETRY = 0x03;
+    private static final int TAG_LEN = 16;
+
+    private static final int[] SUPPORTED_VERSIONS = { Quiche.PROTOCOL_VERSION_DRAFT29,
+            Quiche.PROTOCOL_VERSION_DRAFT28, Quiche.PROTOCOL_VERSION_DRAFT27 };
+
+    // draft-ietf-quic-tls-27 and 28, section 5.8
+    private static final byte[] RETRY_KEY_DRAFT27 = hex("4d32ecdb2a2133c841e4043df27d4430");
+    private static final byte[] RETRY_NONCE_DRAFT27 = hex("4d1611d05513a552c587d575");
+
+    // draft-ietf-quic-tls-29, section 5.8
+    private static final byte[] RETRY_KEY_DRAFT29 = hex("ccce187ed09a09d05728155a6cb96be1");
+    private static final byte[] RETRY_NONCE_DRAFT29 = hex("e54930f97f2136f0530a8c1c");
+
+    private static final ThreadLocal<RetryCipher> DRAFT27_CIPHER = ThreadLocal
+            .withInitial(() -> new RetryCipher(RETRY_KEY_DRAFT27, RETRY_NONCE_DRAFT27));
+    private static final ThreadLocal<RetryCipher> DRAFT29_CIPHER = ThreadLocal
+            .withInitial(() -> new RetryCipher(RETRY_KEY_DRAFT29, RETRY_NONCE_DRAFT29));
+
+    private StatelessPackets() {
+    }
+
+    /**
+     * @see Quiche#negotiateVersion(byte[], byte[], ByteBuffer)
+     */
+    static int negotiateVersion(byte[] scid, byte[] dcid, ByteBuffer out) {
+        final int len = 1 + 4 + 1 + scid.length + 1 + dcid.length + 4 * SUPPORTED_VERSIONS.length;
+        if (out.remaining() < len)
+            return Quiche.ErrorCode.BUFFER_TOO_SHORT;
+        // the rest of the first byte is unused, randomized so that the
+        // packet can't be mistaken for a long header of a known version
+        out.put((byte) (FORM_BIT | ThreadLocalRandom.current().nextInt(0x80)));
+        out.putInt(0);
+        // connection IDs are echoed back swapped
+        out.put((byte) scid.length).put(scid);
+        out.put((byte) dcid.length).put(dcid);
+        for (int version : SUPPORTED_VERSIONS) {
+            out.putInt(version);
+        }
+        return len;
+    }
+
+    /**
+     * @see Quiche#retry(byte[], byte[], byte[], byte[], int, ByteBuffer)
+     */
+    static int retry(byte[] scid, byte[] dcid, byte[] newScid, byte[] token, int version, ByteBuffer out) {
+        final RetryCipher cipher = retryCipher(version);
+        if (null == cipher)
+            return Quiche.ErrorCode.UNKNOWN_VERSION;
+        final int len = 1 + 4 + 1 + scid.length + 1 + newScid.length + token.length + TAG_LEN;
+        if (out.remaining() < len)
+            return Quiche.ErrorCode.BUFFER_TOO_SHORT;
+        final int start = out.position();
+        out.put((byte) (FORM_BIT | FIXED_BIT | (TYPE_RETRY << 4)));
+        out.putInt(version);
+        out.put((byte) scid.length).put(scid);
+        out.put((byte) newScid.length).put(newScid);
+        out.put(token);
+        final ByteBuffer packet = out.duplicate();
+        packet.limit(out.position()).position(start);
+        if (!cipher.tag(dcid, packet, out)) {
+            out.position(start);
+            return Quiche.ErrorCode.CRYPTO_FAIL;
+        }
+        return len;
+    }
+
+    private static RetryCipher retryCipher(int version) {
+        switch (version) {
+            case Quiche.PROTOCOL_VERSION_DRAFT27:
+            case Quiche.PROTOCOL_VERSION_DRAFT28:
+                return DRAFT27_CIPHER.get();
+            case Quiche.PROTOCOL_VERSION_DRAFT29:
+                return DRAFT29_CIPHER.get();
+            default:
+                return null;
+        }
+    }
+
+    private static final class RetryCipher {
+
+        private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+        private final SecretKeySpec key;
+        private final GCMParameterSpec nonce;
+        private final GCMParameterSpec decoy;
+        private final byte[] odcidLen;
+        private Cipher cipher;
+
+        RetryCipher(byte[] key, byte[] nonce) {
+            this.key = new SecretKeySpec(key, "AES");
+            this.nonce = new GCMParameterSpec(TAG_LEN * 8, nonce);
+            final byte[] other = nonce.clone();
+            other[0] ^= 1;
+            this.decoy = new GCMParameterSpec(TAG_LEN * 8, other);
+            this.odcidLen = new byte[1];
+            this.cipher = null;
+        }
+
+        /**
+         * Writes the integrity tag of {@code packet} sent in response to an
+         * Initial with {@code odcid} into {@code out}.
+         */
+        boolean tag(byte[] odcid, ByteBuffer packet, ByteBuffer out) {
+            try {
+                if (null == cipher) {
+                    cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                } else {
+                    // JCE refuses to encrypt twice with the same key and IV,
+                    // which is exactly what the Retry tag is about
+                    cipher.init(Cipher.ENCRYPT_MODE, key, decoy);
+                }
+                cipher.init(Cipher.ENCRYPT_MODE, key, nonce);
+                odcidLen[0] = (byte) odcid.length;
+                cipher.updateAAD(odcidLen);
+                cipher.updateAAD(odcid);
+                cipher.updateAAD(packet);
+                cipher.doFinal(EMPTY.duplicate(), out);
+                return true;
+            } catch (GeneralSecurityException e) {
+                // the cipher is in an unknown state
+                cipher = null;
+                return false;
+            }
+        }
+    }
+
+    private static byte[] hex(String s) {
+        final byte[] bytes = new byte[s.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+}
@@ -5,6 +5,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 public class Utils {
 
@@ -22,6 +23,47 @@ public class Utils {
         return new String(hex);
     }
 
+    /**
+     * Reads a resource bundled with the library, returns {@code null} if
+     * there's no such resource.
+     */
+    public static final byte[] readResource(String filepath) throws IOException {
+        try (final InputStream stream = Utils.class.getResourceAsStream(filepath)) {
+            if (stream == null)
+                return null;
+            return stream.readAllBytes();
+        }
+    }
+
+    /**
+     * Returns (position, remaining) pairs of a gather list of direct buffers,
+     * as expected by the native calls taking {@code ByteBuffer[]}.
+     */
+    public static final int[] gatherRanges(ByteBuffer[] bufs) {
+        final int[] ranges = new int[bufs.length * 2];
+        for (int i = 0; i < bufs.length; i++) {
+            final ByteBuffer buf = bufs[i];
+            if (!buf.isDirect())
+                throw new IllegalArgumentException("Direct buffer is required");
+            ranges[i * 2] = buf.position();
+            ranges[i * 2 + 1] = buf.remaining();
+        }
+        return ranges;
+    }
+
+    /**
+     * Advances positions of a gather list by the total number of bytes
+     * {@code consumed}, in order.
+     */
+    public static final void consumeGathered(ByteBuffer[] bufs, long consumed) {
+        for (int i = 0; i < bufs.length && 0 < consumed; i++) {
+            final ByteBuffer buf = bufs[i];
+            final int n = (int) Math.min(consumed, buf.remaining());
+            buf.position(buf.position() + n);
+            consumed -= n;
+        }
+    }
+
     public static final String copyFileFromJAR(String prefix, String filepath) throws IOException {
         try (final InputStream fileStream = Utils.class.getResourceAsStream(filepath)) {
             if (fileStream == null)
@@ -0,0 +1,217 @@
+package io.quiche4j.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.quiche4j.Config;
+
+/**
+ * A pool of direct buffers for packets and stream chunks, to be used with the
+ * {@link java.nio.ByteBuffer} based methods of {@link io.quiche4j.Connection}.
+ *
+ * <p>Buffers are carved out of large direct slabs, so there's neither a
+ * {@link ByteBuffer#allocateDirect} call nor garbage per packet. Datagram
+ * buffers all have the same size (see {@link #forConfig}), stream chunks are
+ * served from size-class buckets, a request is rounded up to the next class.
+ * Chunks bigger than the largest class are allocated without pooling.
+ *
+ * <p>The pool is thread-confined: buffers are leased only by the thread that
+ * leased the first one (typically an event loop), without any
+ * synchronization. Buffers can be released from any thread, those released
+ * by other threads go to a lock-free stack which is drained by the owner once
+ * its local free list is empty. Slabs are never returned to the system.
+ *
+ * <p>Example:
+ * <pre>
+ *     final DatagramBufferPool pool = DatagramBufferPool.forConfig(config);
+ *
+ *     final PooledBuffer packet = pool.leaseDatagram();
+ *     try {
+ *         channel.receive(packet.buffer());
+ *         packet.buffer().flip();
+ *         conn.recv(packet.buffer());
+ *     } finally {
+ *         packet.release();
+ *     }
+ * </pre>
+ */
+public final class DatagramBufferPool {
+
+    /**
+     * The default size of a single slab.
+     */
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    /**
+     * The default size classes of stream chunks.
+     */
+    public static final int[] DEFAULT_CHUNK_SIZES = { 4096, 16384, 65536 };
+
+    final static class Bucket {
+
+        private final int bufferSize;
+        private final int buffersPerSlab;
+        private final ArrayDeque<PooledBuffer> local;
+        private final AtomicReference<PooledBuffer> remote;
+        private final DatagramBufferPool pool;
+        private int allocated;
+
+        Bucket(DatagramBufferPool pool, int bufferSize, int slabSize) {
+            this.pool = pool;
+            this.bufferSize = bufferSize;
+            this.buffersPerSlab = Math.max(1, slabSize / bufferSize);
+            this.local = new ArrayDeque<>();
+            this.remote = new AtomicReference<>();
+            this.allocated = 0;
+        }
+
+        final PooledBuffer lease() {
+            PooledBuffer buf = local.pollFirst();
+            if (null == buf) {
+                drainRemote();
+                buf = local.pollFirst();
+            }
+            if (null == buf) {
+                allocateSlab();
+                buf = local.pollFirst();
+            }
+            buf.lease();
+            return buf;
+        }
+
+        final void release(PooledBuffer buf) {
+            if (Thread.currentThread() == pool.owner) {
+                local.addFirst(buf);
+                return;
+            }
+            PooledBuffer head;
+            do {
+                head = remote.get();
+                buf.next = head;
+            } while (!remote.compareAndSet(head, buf));
+        }
+
+        private void drainRemote() {
+            PooledBuffer buf = remote.getAndSet(null);
+            while (null != buf) {
+                final PooledBuffer next = buf.next;
+                buf.next = null;
+                local.addFirst(buf);
+                buf = next;
+            }
+        }
+
+        private void allocateSlab() {
+            final ByteBuffer slab = ByteBuffer.allocateDirect(bufferSize * buffersPerSlab);
+            for (int i = 0; i < buffersPerSlab; i++) {
+                slab.limit((i + 1) * bufferSize).position(i * bufferSize);
+                local.addLast(new PooledBuffer(this, slab.slice()));
+            }
+            allocated += buffersPerSlab;
+        }
+
+        /**
+         * Returns the number of buffers allocated by this bucket.
+         */
+        final int allocated() {
+            return this.allocated;
+        }
+    }
+
+    private final int datagramSize;
+    private final Bucket datagrams;
+    private final Bucket[] chunks;
+    private volatile Thread owner;
+
+    /**
+     * Creates a pool of {@code datagramSize} buffers with the default slab
+     * size and chunk size classes.
+     */
+    public DatagramBufferPool(int datagramSize) {
+        this(datagramSize, DEFAULT_SLAB_SIZE, DEFAULT_CHUNK_SIZES);
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * <p>The {@code slabSize} parameter is the number of bytes allocated at
+     * once when a bucket runs out of buffers, {@code chunkSizes} are the size
+     * classes of stream chunks.
+     */
+    public DatagramBufferPool(int datagramSize, int slabSize, int... chunkSizes) {
+        if (datagramSize <= 0)
+            throw new IllegalArgumentException("Datagram size should be positive");
+        if (slabSize <= 0)
+            throw new IllegalArgumentException("Slab size should be positive");
+        this.datagramSize = datagramSize;
+        this.datagrams = new Bucket(this, datagramSize, slabSize);
+
+        final int[] sizes = chunkSizes.clone();
+        Arrays.sort(sizes);
+        this.chunks = new Bucket[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            if (sizes[i] <= 0)
+                throw new IllegalArgumentException("Chunk size should be positive");
+            this.chunks[i] = new Bucket(this, sizes[i], slabSize);
+        }
+        this.owner = null;
+    }
+
+    /**
+     * Creates a pool with datagram buffers of {@link Config#maxUdpPayloadSize}
+     * bytes, enough to hold any packet the peer is allowed to send.
+     */
+    public static DatagramBufferPool forConfig(Config config) {
+        return new DatagramBufferPool(config.maxUdpPayloadSize());
+    }
+
+    public final int datagramSize() {
+        return this.datagramSize;
+    }
+
+    /**
+     * Leases a buffer of {@link #datagramSize} bytes.
+     */
+    public final PooledBuffer leaseDatagram() {
+        checkOwner();
+        return datagrams.lease();
+    }
+
+    /**
+     * Leases a buffer of at least {@code size} bytes for stream data.
+     */
+    public final PooledBuffer leaseChunk(int size) {
+        checkOwner();
+        for (int i = 0; i < chunks.length; i++) {
+            if (size <= chunks[i].bufferSize)
+                return chunks[i].lease();
+        }
+        final PooledBuffer buf = new PooledBuffer(null, ByteBuffer.allocateDirect(size));
+        buf.lease();
+        return buf;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the pool for its slabs.
+     */
+    public final long allocatedBytes() {
+        long total = (long) datagrams.allocated() * datagrams.bufferSize;
+        for (Bucket bucket : chunks) {
+            total += (long) bucket.allocated() * bucket.bufferSize;
+        }
+        return total;
+    }
+
+    private void checkOwner() {
+        final Thread current = Thread.currentThread();
+        final Thread owner = this.owner;
+        if (current == owner)
+            return;
+        if (null != owner)
+            throw new IllegalStateException("Pool is owned by " + owner.getName());
+        this.owner = current;
+    }
+
+}
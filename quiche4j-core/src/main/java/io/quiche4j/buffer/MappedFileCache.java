@@ -0,0 +1,163 @@
+package io.quiche4j.buffer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of read-only memory mappings of files, used to send file
+ * contents on streams without copying them through the Java heap (see
+ * {@link io.quiche4j.Connection#sendFile}).
+ *
+ * <p>Files are mapped in windows of {@code windowSize} bytes aligned to the
+ * window size, so serving the same file to many peers maps each part of it
+ * once. The least recently used windows are dropped once more than
+ * {@code maxMappedBytes} are mapped. A dropped mapping is unmapped by the
+ * garbage collector when no longer referenced, regions handed out earlier
+ * stay valid until then.
+ *
+ * <p>Mappings are keyed by the identity of the {@link FileChannel}, thus
+ * the same channel should be used for the same file. Mappings outlive the
+ * channel, call {@link #invalidate} when the channel is closed or the file is
+ * modified.
+ *
+ * <p>The cache is thread-safe.
+ */
+public final class MappedFileCache {
+
+    /**
+     * The default size of a single mapping.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 4 << 20;
+
+    /**
+     * The default limit of the total size of mappings held by the cache.
+     */
+    public static final long DEFAULT_MAX_MAPPED_BYTES = 256L << 20;
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocateDirect(0);
+
+    private static final MappedFileCache SHARED =
+        new MappedFileCache(DEFAULT_WINDOW_SIZE, DEFAULT_MAX_MAPPED_BYTES);
+
+    private final static class Key {
+        private final FileChannel ch;
+        private final long index;
+
+        Key(FileChannel ch, long index) {
+            this.ch = ch;
+            this.index = index;
+        }
+
+        @Override
+        public final int hashCode() {
+            return 31 * System.identityHashCode(ch) + Long.hashCode(index);
+        }
+
+        @Override
+        public final boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            final Key other = (Key) obj;
+            return ch == other.ch && index == other.index;
+        }
+    }
+
+    private final int windowSize;
+    private final long maxMappedBytes;
+    private final LinkedHashMap<Key, MappedByteBuffer> mappings;
+    private long mappedBytes;
+
+    public MappedFileCache(int windowSize, long maxMappedBytes) {
+        if (windowSize <= 0)
+            throw new IllegalArgumentException("Window size should be positive");
+        if (maxMappedBytes < windowSize)
+            throw new IllegalArgumentException("Max mapped bytes should be at least the window size");
+        this.windowSize = windowSize;
+        this.maxMappedBytes = maxMappedBytes;
+        this.mappings = new LinkedHashMap<>(16, 0.75f, true);
+        this.mappedBytes = 0;
+    }
+
+    /**
+     * Returns the cache used by connections.
+     */
+    public static final MappedFileCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns a direct buffer with the file contents starting at {@code pos},
+     * between the buffer's position and limit.
+     *
+     * <p>The region holds at most {@code len} bytes and never crosses a
+     * window boundary, so it can be shorter than requested. An empty buffer
+     * is returned when {@code len} is {@code 0}.
+     *
+     * @throws EOFException if {@code pos} is at or beyond the end of file
+     */
+    public final synchronized ByteBuffer region(FileChannel ch, long pos, long len) throws IOException {
+        if (len <= 0)
+            return EMPTY;
+        final long index = pos / windowSize;
+        final long start = index * windowSize;
+        long end = Math.min(pos + len, start + windowSize);
+
+        final Key key = new Key(ch, index);
+        MappedByteBuffer mapping = mappings.get(key);
+        if (null == mapping || start + mapping.capacity() < end) {
+            // not mapped yet, or mapped while the file was shorter
+            final long size = Math.min(windowSize, ch.size() - start);
+            if (size <= pos - start)
+                throw new EOFException("Position " + pos + " is beyond the end of file");
+            if (null != mapping)
+                mappedBytes -= mapping.capacity();
+            mapping = ch.map(FileChannel.MapMode.READ_ONLY, start, size);
+            mappings.put(key, mapping);
+            mappedBytes += size;
+            evict();
+        }
+
+        end = Math.min(end, start + mapping.capacity());
+        final ByteBuffer region = mapping.duplicate();
+        region.limit((int) (end - start));
+        region.position((int) (pos - start));
+        return region;
+    }
+
+    /**
+     * Drops all mappings of the channel.
+     */
+    public final synchronized void invalidate(FileChannel ch) {
+        final Iterator<Map.Entry<Key, MappedByteBuffer>> it = mappings.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Key, MappedByteBuffer> entry = it.next();
+            if (ch == entry.getKey().ch) {
+                mappedBytes -= entry.getValue().capacity();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the total size of mappings held by the cache.
+     */
+    public final synchronized long mappedBytes() {
+        return mappedBytes;
+    }
+
+    private void evict() {
+        final Iterator<MappedByteBuffer> it = mappings.values().iterator();
+        // the most recently used window (the one just mapped) is never evicted
+        while (maxMappedBytes < mappedBytes && 1 < mappings.size()) {
+            mappedBytes -= it.next().capacity();
+            it.remove();
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package io.quiche4j.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A direct buffer leased from {@link DatagramBufferPool}.
+ *
+ * <p>The buffer has to be returned with {@link #release} once the application
+ * is done with it, which can be done from any thread. The {@link ByteBuffer}
+ * must not be used after that.
+ */
+public final class PooledBuffer {
+
+    private final DatagramBufferPool.Bucket bucket;
+    private final ByteBuffer buffer;
+    private final AtomicBoolean leased;
+
+    // link in the stack of buffers released by other threads
+    PooledBuffer next;
+
+    PooledBuffer(DatagramBufferPool.Bucket bucket, ByteBuffer buffer) {
+        this.bucket = bucket;
+        this.buffer = buffer;
+        this.leased = new AtomicBoolean(false);
+        this.next = null;
+    }
+
+    /**
+     * Returns the underlying direct buffer. The buffer is cleared when leased.
+     */
+    public final ByteBuffer buffer() {
+        return this.buffer;
+    }
+
+    public final int capacity() {
+        return this.buffer.capacity();
+    }
+
+    /**
+     * Returns {@code true} if the buffer is not backed by a pool, i.e. it was
+     * requested bigger than the largest size class.
+     */
+    public final boolean isUnpooled() {
+        return null == this.bucket;
+    }
+
+    final void lease() {
+        leased.set(true);
+        buffer.clear();
+    }
+
+    /**
+     * Returns the buffer to the pool.
+     *
+     * @throws IllegalStateException if the buffer was already released
+     */
+    public final void release() {
+        if (!leased.compareAndSet(true, false))
+            throw new IllegalStateException("Buffer is already released");
+        if (null != bucket)
+            bucket.release(this);
+    }
+
+}
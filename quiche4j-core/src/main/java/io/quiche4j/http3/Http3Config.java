@@ -1,16 +1,26 @@
 package io.quiche4j.http3;
 
+import java.lang.ref.Cleaner.Cleanable;
+
+import io.quiche4j.Native;
+
 /**
  * An HTTP/3 configuration.
  * 
  * <p>Maintains a pointer to a native object {@code quiche::h3::Config}.
+ *
+ * <p>HTTP/3 connections don't depend on the configuration once created, so it
+ * can be freed with {@link #free} (or {@link #close}) as soon as it's not
+ * needed for new connections. Otherwise it's freed when garbage collected.
  */
-public class Http3Config {
+public class Http3Config implements AutoCloseable {
 
-    private final long ptr;
+    private volatile long ptr;
+    private final Cleanable cleanable;
 
     protected Http3Config(long ptr) {
         this.ptr = ptr;
+        this.cleanable = Native.registerCleaner(this, freeAction(ptr));
     }
 
     /**
@@ -19,7 +29,32 @@ public class Http3Config {
      * <p>Intended to be used only by the library code.
      */
     protected final long getPointer() {
-        return this.ptr;
+        final long ptr = this.ptr;
+        if (0L == ptr)
+            throw new IllegalStateException("HTTP/3 config is freed");
+        return ptr;
+    }
+
+    private final static Runnable freeAction(long ptr) {
+        return () -> Http3Native.quiche_h3_config_free(ptr);
+    }
+
+    /**
+     * Deallocates a native struct. The method is idempotent.
+     */
+    public final void free() {
+        if (0L != this.ptr) {
+            this.ptr = 0L;
+            this.cleanable.clean();
+        }
+    }
+
+    /**
+     * Same as {@link #free}.
+     */
+    @Override
+    public final void close() {
+        free();
     }
 
 }
\ No newline at end of file
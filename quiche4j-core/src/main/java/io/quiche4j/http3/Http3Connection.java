@@ -1,26 +1,56 @@
 package io.quiche4j.http3;
 
+import java.io.IOException;
+import java.lang.ref.Cleaner.Cleanable;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.List;
 
 import io.quiche4j.Connection;
+import io.quiche4j.FileTransfers;
 import io.quiche4j.Native;
+import io.quiche4j.NativeBackend;
+import io.quiche4j.Quiche;
+import io.quiche4j.Utils;
+import io.quiche4j.buffer.MappedFileCache;
 
 /**
  * An HTTP/3 connection.
  * 
  * <p>Maintains a pointer to a native object {@code quiche::h3::Connection}.
+ *
+ * <p>Native state is deallocated by {@link #free} (or {@link #close}), or by
+ * the cleaner once the object is garbage collected. The HTTP/3 state doesn't
+ * reference the underlying {@link Connection}, so the two can be freed in
+ * any order. Once either of them is freed, methods of this object throw
+ * {@link IllegalStateException} instead of touching deallocated memory.
  */
-public final class Http3Connection {
+public final class Http3Connection implements AutoCloseable {
 
-    private final long ptr;
+    private static final NativeBackend BACKEND = NativeBackend.current();
+
+    /**
+     * H3_INTERNAL_ERROR, used to reset streams of files that can't be read.
+     */
+    private static final long INTERNAL_ERROR_CODE = 0x102;
+
+    private volatile long ptr;
+    private final Cleanable cleanable;
     private final Connection conn;
 
+    /**
+     * Files being sent as bodies, created on first use.
+     */
+    private FileTransfers files;
+
     /**
      * Java object to carry around pointer to a native struct.
      */
     private Http3Connection(long ptr, Connection conn) {
         this.ptr = ptr;
         this.conn = conn;
+        this.cleanable = Native.registerCleaner(this, freeAction(ptr));
     }
 
     /**
@@ -31,9 +61,7 @@ public final class Http3Connection {
      */
     public final static Http3Connection withTransport(Connection conn, Http3Config config) {
         final long ptr = Http3Native.quiche_h3_conn_new_with_transport(conn.getPointer(), config.getPointer());
-        final Http3Connection h3 = new Http3Connection(ptr, conn);
-        Native.registerCleaner(h3, h3::free);
-        return h3;
+        return new Http3Connection(ptr, conn);
     }
 
     /**
@@ -72,7 +100,26 @@ public final class Http3Connection {
      * if there is no data to read.
      */
     public final int recvBody(long streamId, byte[] buf) {
-        return Http3Native.quiche_h3_recv_body(getPointer(), conn.getPointer(), streamId, buf);
+        return BACKEND.h3RecvBody(getPointer(), conn.getPointer(), streamId, buf);
+    }
+
+    /**
+     * Reads request or response body data directly into the given direct buffer.
+     *
+     * <p>Data is written starting at the buffer's position, at most up to its limit.
+     * On success the amount of bytes read is returned and the position is advanced
+     * accordingly.
+     *
+     * @see #recvBody(long, byte[])
+     */
+    public final int recvBody(long streamId, ByteBuffer buf) {
+        checkDirect(buf);
+        final int pos = buf.position();
+        final int read = BACKEND.h3RecvBodyBuffer(
+            getPointer(), conn.getPointer(), streamId, buf, pos, buf.limit() - pos);
+        if (0 < read)
+            buf.position(pos + read);
+        return read;
     }
 
     /**
@@ -98,6 +145,39 @@ public final class Http3Connection {
         return Http3Native.quiche_h3_send_response(getPointer(), conn.getPointer(), streamId, headers, fin);
     }
 
+    /**
+     * Sends a prepared response on the specified stream: headers and as much of the
+     * body as the stream takes, finishing the stream once the body is complete.
+     *
+     * <p>The {@link Http3.ErrorCode#STREAM_BLOCKED} error is returned when the headers
+     * don't fit into the stream's capacity, nothing is sent in this case. Otherwise the
+     * number of body bytes written is returned. When it's lower than
+     * {@link Http3ResponseCache.Response#bodyLength} the rest should be sent with
+     * {@link #sendResponseBody} once the stream is reported as writable again.
+     */
+    public final long sendResponse(long streamId, Http3ResponseCache.Response response) {
+        final long written = Http3Native.quiche_h3_send_cached_response(
+            getPointer(), conn.getPointer(), streamId, response.getPointer());
+        // native memory of the response must not be freed during the call
+        Reference.reachabilityFence(response);
+        return written;
+    }
+
+    /**
+     * Continues sending the body of a prepared response starting at {@code offset},
+     * finishing the stream once the body is complete.
+     *
+     * @see #sendBody(long, byte[], boolean)
+     */
+    public final long sendResponseBody(long streamId, Http3ResponseCache.Response response, long offset) {
+        if (offset < 0 || response.bodyLength() < offset)
+            throw new IllegalArgumentException("Offset is out of the body bounds");
+        final long written = Http3Native.quiche_h3_send_cached_body(
+            getPointer(), conn.getPointer(), streamId, response.getPointer(), (int) offset);
+        Reference.reachabilityFence(response);
+        return written;
+    }
+
     /**
      * Sends an HTTP/3 body chunk on the given stream.
      *
@@ -113,7 +193,105 @@ public final class Http3Connection {
      * writable again.
      */
     public final long sendBody(long streamId, byte[] body, boolean fin) {
-        return Http3Native.quiche_h3_send_body(getPointer(), conn.getPointer(), streamId, body, fin);
+        return BACKEND.h3SendBody(getPointer(), conn.getPointer(), streamId, body, fin);
+    }
+
+    /**
+     * Sends an HTTP/3 body chunk on the given stream directly from the given direct buffer.
+     *
+     * <p>Bytes between the buffer's position and limit are sent. On success the
+     * number of bytes written is returned and the position is advanced accordingly.
+     *
+     * @see #sendBody(long, byte[], boolean)
+     */
+    public final long sendBody(long streamId, ByteBuffer body, boolean fin) {
+        checkDirect(body);
+        final int pos = body.position();
+        final long written = BACKEND.h3SendBodyBuffer(
+            getPointer(), conn.getPointer(), streamId, body, pos, body.limit() - pos, fin);
+        if (0 < written)
+            body.position(pos + (int) written);
+        return written;
+    }
+
+    /**
+     * Sends HTTP/3 body chunks on the given stream from a gather list of direct
+     * buffers in a single native call.
+     *
+     * <p>Bytes between position and limit of each buffer are sent in order (each
+     * buffer as a DATA frame of its own), {@code fin} applies to the last one. On
+     * success the total number of body bytes written is returned and positions are
+     * advanced accordingly. Buffers that didn't fit into the stream's capacity are
+     * not sent, retry once the stream is writable again.
+     *
+     * @see #sendBody(long, byte[], boolean)
+     */
+    public final long sendBody(long streamId, ByteBuffer[] bodies, boolean fin) {
+        final int[] ranges = Utils.gatherRanges(bodies);
+        final long written = BACKEND.h3SendBodyBuffers(getPointer(), conn.getPointer(), streamId, bodies, ranges, fin);
+        if (0 < written)
+            Utils.consumeGathered(bodies, written);
+        return written;
+    }
+
+    /**
+     * Sends {@code len} bytes of the file starting at {@code pos} as the body on
+     * the given stream and finishes the stream.
+     *
+     * @see #sendFile(long, FileChannel, long, long, boolean)
+     */
+    public final long sendFile(long streamId, FileChannel ch, long pos, long len) throws IOException {
+        return sendFile(streamId, ch, pos, len, true);
+    }
+
+    /**
+     * Sends {@code len} bytes of the file starting at {@code pos} as the body on
+     * the given stream, without copying them through the Java heap.
+     *
+     * <p>The file is read from read-only memory mappings held by
+     * {@link MappedFileCache#shared}. As much as the stream's capacity allows is
+     * written right away, the rest is written as the peer extends flow control
+     * credit, each time {@link #poll} is done with the received events (or
+     * explicitly with {@link #resumeFiles}). {@code fin} is set once the whole
+     * region is written.
+     *
+     * <p>On success the number of body bytes written right away is returned (which
+     * might be {@code 0}), use {@link #sendFileRemaining} to track the progress. On
+     * error a negative error code of {@link #sendBody} is returned. A single file can
+     * be sent on a stream at a time, no other body should be sent on the stream until
+     * the file is done. If the file can't be read any further (e.g. the channel is closed before
+     * the transfer is done) the stream is reset with {@code H3_INTERNAL_ERROR}.
+     *
+     * <p>The file must not be truncated while sent: reading a mapping past the
+     * end of file crashes the JVM with {@code SIGBUS}.
+     *
+     * @throws IOException if the file can't be mapped
+     */
+    public final long sendFile(long streamId, FileChannel ch, long pos, long len, boolean fin) throws IOException {
+        if (null == files) {
+            files = new FileTransfers(MappedFileCache.shared(),
+                (id, buf, last) -> sendBody(id, buf, last),
+                (id, err) -> conn.streamShutdown(id, Quiche.Shutdown.WRITE, err));
+        }
+        return files.start(streamId, ch, pos, len, fin, INTERNAL_ERROR_CODE);
+    }
+
+    /**
+     * Returns the number of bytes of the file sent on the stream not yet written,
+     * or {@link Http3.ErrorCode#DONE} if there's no file being sent on it.
+     */
+    public final long sendFileRemaining(long streamId) {
+        return null == files ? Http3.ErrorCode.DONE : files.remaining(streamId);
+    }
+
+    /**
+     * Continues sending files blocked on streams' capacity, returns the number
+     * of body bytes written.
+     *
+     * <p>Called by {@link #poll} once there are no more events.
+     */
+    public final long resumeFiles() {
+        return null == files ? 0 : files.resume();
     }
 
     /**
@@ -131,7 +309,23 @@ public final class Http3Connection {
      * feels way more natural for Java code.
      */
     public long poll(Http3EventListener listener) {
-        return Http3Native.quiche_h3_conn_poll(getPointer(), conn.getPointer(), listener);
+        final long streamId = Http3Native.quiche_h3_conn_poll(getPointer(), conn.getPointer(), listener);
+        // all received data processed, streams might have got more capacity
+        if (Http3.ErrorCode.DONE == streamId && null != files && !files.isEmpty())
+            files.resume();
+        return streamId;
+    }
+
+    /**
+     * Returns the underlying QUIC connection.
+     */
+    public final Connection connection() {
+        return this.conn;
+    }
+
+    private static final void checkDirect(ByteBuffer buf) {
+        if (!buf.isDirect())
+            throw new IllegalArgumentException("Direct buffer is required");
     }
 
     /**
@@ -139,14 +333,41 @@ public final class Http3Connection {
      * 
      * <p>Intended to be used only by the library code.
      */
-    private final long getPointer() {
-        return this.ptr;
+    public final long getPointer() {
+        final long ptr = this.ptr;
+        if (0L == ptr)
+            throw new IllegalStateException("HTTP/3 connection is freed");
+        return ptr;
+    }
+
+    private final static Runnable freeAction(long ptr) {
+        return () -> Http3Native.quiche_h3_conn_free(ptr);
+    }
+
+    /**
+     * Deallocates a native struct. The underlying {@link Connection} is not freed.
+     *
+     * <p>The method is idempotent.
+     */
+    public final void free() {
+        if (0L != this.ptr) {
+            this.ptr = 0L;
+            this.cleanable.clean();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the native struct was deallocated.
+     */
+    public final boolean isFreed() {
+        return 0L == this.ptr;
     }
 
     /**
-     * Deallocates a native struct.
+     * Same as {@link #free}.
      */
-    private final void free() {
-        Http3Native.quiche_h3_conn_free(getPointer());
+    @Override
+    public final void close() {
+        free();
     }
 }
\ No newline at end of file
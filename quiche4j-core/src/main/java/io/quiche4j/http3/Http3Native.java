@@ -2,6 +2,8 @@ package io.quiche4j.http3;
 
 import static io.quiche4j.Native.LIBRARY_NAME;
 
+import java.nio.ByteBuffer;
+
 import io.quiche4j.NativeUtils;
 
 /**
@@ -10,11 +12,7 @@ import io.quiche4j.NativeUtils;
 public class Http3Native {
 
     static {
-        try {
-            System.loadLibrary(LIBRARY_NAME);
-        } catch (java.lang.UnsatisfiedLinkError e) {
-            NativeUtils.loadEmbeddedLibrary(LIBRARY_NAME);
-		}
+		NativeUtils.loadLibrary(LIBRARY_NAME);
 	}
 
 	public final static native long quiche_h3_config_new();
@@ -29,10 +27,30 @@ public class Http3Native {
 
 	public final static native int quiche_h3_recv_body(long h3_conn_ptr, long conn_ptr, long stream_id, byte[] buf);
 
+	public final static native int quiche_h3_recv_body_buffer(long h3_conn_ptr, long conn_ptr, long stream_id, ByteBuffer buf, int offset, int len);
+
+	public final static native int quiche_h3_recv_body_address(long h3_conn_ptr, long conn_ptr, long stream_id, long buf_addr, int len);
+
 	public final static native int quiche_h3_send_response(long h3_conn_ptr, long conn_ptr, long stream_id, Http3Header[] headers, boolean fin);
 
 	public final static native long quiche_h3_send_body(long h3_conn_ptr, long conn_ptr, long stream_id, byte[] body, boolean fin);
 
+	public final static native long quiche_h3_send_body_buffer(long h3_conn_ptr, long conn_ptr, long stream_id, ByteBuffer body, int offset, int len, boolean fin);
+
+	public final static native long quiche_h3_send_body_buffers(long h3_conn_ptr, long conn_ptr, long stream_id, ByteBuffer[] bodies, int[] ranges, boolean fin);
+
+	public final static native long quiche_h3_send_body_address(long h3_conn_ptr, long conn_ptr, long stream_id, long body_addr, int len, boolean fin);
+
 	public final static native long quiche_h3_conn_poll(long h3_conn_ptr, long conn_ptr, Http3EventListener listener);
 
+	// CACHED RESPONSES
+
+	public final static native long quiche_h3_response_new(Http3Header[] headers, byte[] body);
+
+	public final static native void quiche_h3_response_free(long response_ptr);
+
+	public final static native long quiche_h3_send_cached_response(long h3_conn_ptr, long conn_ptr, long stream_id, long response_ptr);
+
+	public final static native long quiche_h3_send_cached_body(long h3_conn_ptr, long conn_ptr, long stream_id, long response_ptr, int offset);
+
 }
@@ -0,0 +1,176 @@
+package io.quiche4j.http3;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import io.quiche4j.Native;
+
+/**
+ * Cache of complete HTTP/3 responses prepared in native memory, for responses
+ * served over and over again (health checks, redirects, small static assets).
+ *
+ * <p>Headers and body of a {@link Response} are converted to their native
+ * form once. Replaying it with {@link Http3Connection#sendResponse(long, Response)}
+ * is a single native call that sends the headers and as much of the body as
+ * the stream takes, without allocating or copying anything on the Java side.
+ * Note that QPACK encoding is still done by quiche on each send, as quiche
+ * doesn't expose its encoder.
+ *
+ * <p>The cache is bounded by the total size of responses, the least recently
+ * used ones are evicted first. Native memory of an evicted response is
+ * released once it's garbage collected, so it's safe to evict responses
+ * still being sent by other threads.
+ *
+ * <p>Example:
+ * <pre>
+ *     Http3ResponseCache.Response response = cache.get(path);
+ *     if (null == response)
+ *         response = cache.put(path, headers, body);
+ *     final long written = h3Conn.sendResponse(streamId, response);
+ *     if (0 &lt;= written &amp;&amp; written &lt; response.bodyLength()) {
+ *         // continue with h3Conn.sendResponseBody(streamId, response, written)
+ *         // once the stream is writable again
+ *     }
+ * </pre>
+ *
+ * <p>The cache is thread-safe.
+ */
+public final class Http3ResponseCache {
+
+    /**
+     * The default limit of the total size of cached responses.
+     */
+    public static final long DEFAULT_MAX_BYTES = 32L << 20;
+
+    /**
+     * Rough per header overhead of the native representation.
+     */
+    private static final int HEADER_OVERHEAD = 48;
+
+    /**
+     * A response prepared in native memory, see {@link #of}.
+     */
+    public final static class Response {
+
+        private final long ptr;
+        private final int bodyLength;
+        private final long size;
+
+        private Response(long ptr, int bodyLength, long size) {
+            this.ptr = ptr;
+            this.bodyLength = bodyLength;
+            this.size = size;
+            Native.registerCleaner(this, freeAction(ptr));
+        }
+
+        /**
+         * Prepares the response, it doesn't have to be cached to be replayed.
+         */
+        public static final Response of(List<Http3Header> headers, byte[] body) {
+            final Http3Header[] array = headers.toArray(new Http3Header[0]);
+            final long ptr = Http3Native.quiche_h3_response_new(array, body);
+            if (ptr <= 0)
+                throw new IllegalArgumentException("Failed to prepare the response");
+            long size = body.length;
+            for (Http3Header header : array)
+                size += header.name().length() + header.value().length() + HEADER_OVERHEAD;
+            return new Response(ptr, body.length, size);
+        }
+
+        public final int bodyLength() {
+            return this.bodyLength;
+        }
+
+        /**
+         * Returns the approximate native memory held by the response.
+         */
+        public final long size() {
+            return this.size;
+        }
+
+        final long getPointer() {
+            return this.ptr;
+        }
+
+        private final static Runnable freeAction(long ptr) {
+            return () -> Http3Native.quiche_h3_response_free(ptr);
+        }
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Response> responses;
+    private long bytes;
+
+    public Http3ResponseCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public Http3ResponseCache(long maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("Max bytes should be positive");
+        this.maxBytes = maxBytes;
+        this.responses = new LinkedHashMap<>(16, 0.75f, true);
+        this.bytes = 0;
+    }
+
+    /**
+     * Returns the response cached for the key, or {@code null}.
+     */
+    public final synchronized Response get(String key) {
+        return responses.get(key);
+    }
+
+    /**
+     * Prepares the response and caches it for the key, replacing the one
+     * cached before. Returns the response, which is not cached if it's
+     * larger than the cache.
+     */
+    public final Response put(String key, List<Http3Header> headers, byte[] body) {
+        final Response response = Response.of(headers, body);
+        if (maxBytes < response.size())
+            return response;
+        synchronized (this) {
+            final Response previous = responses.put(key, response);
+            if (null != previous)
+                bytes -= previous.size();
+            bytes += response.size();
+            evict();
+        }
+        return response;
+    }
+
+    /**
+     * Removes the response cached for the key, returns the removed one or
+     * {@code null}.
+     */
+    public final synchronized Response remove(String key) {
+        final Response response = responses.remove(key);
+        if (null != response)
+            bytes -= response.size();
+        return response;
+    }
+
+    /**
+     * Returns the number of cached responses.
+     */
+    public final synchronized int size() {
+        return responses.size();
+    }
+
+    /**
+     * Returns the approximate total size of cached responses.
+     */
+    public final synchronized long bytes() {
+        return bytes;
+    }
+
+    private void evict() {
+        final Iterator<Response> it = responses.values().iterator();
+        while (maxBytes < bytes && it.hasNext()) {
+            bytes -= it.next().size();
+            it.remove();
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package io.quiche4j.server;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for new server-side connections.
+ *
+ * <p>Accepting a connection starts a TLS handshake, which is expensive
+ * compared to forwarding packets of established connections. The controller
+ * bounds that work in two ways:
+ *
+ * <ul>
+ * <li>Initial packets are rate limited per source address prefix (/24 for
+ * IPv4 and /48 for IPv6) with a {@link TokenBucket}, Initials over the rate
+ * are dropped before any processing.</li>
+ * <li>The number of handshakes in progress is capped. Below the cap clients
+ * are accepted right away, once it's reached clients without an address
+ * validation token are forced to do a stateless {@link io.quiche4j.Quiche#retry}.
+ * Retry costs the server nothing but a packet and ensures spoofed source
+ * addresses never get to the handshake.</li>
+ * </ul>
+ *
+ * <p>The server reports handshakes with {@link #handshakeStarted} (once the
+ * connection is accepted) and {@link #handshakeFinished} (once it's
+ * established or closed before that).
+ *
+ * <p>The controller is thread-safe and can be shared by a number of event
+ * loops.
+ *
+ * <p>Example:
+ * <pre>
+ *     final AdmissionController admission = new AdmissionController(256, 20, 40);
+ *
+ *     switch (admission.admit(packet.getAddress(), null != hdr.token())) {
+ *         case DROP:
+ *             continue;
+ *         case RETRY:
+ *             // send Quiche.retry(...)
+ *             continue;
+ *         case ACCEPT:
+ *             conn = Quiche.accept(connId, odcid, config);
+ *             admission.handshakeStarted();
+ *     }
+ * </pre>
+ */
+public final class AdmissionController {
+
+    public enum Decision {
+        /**
+         * Accept the connection.
+         */
+        ACCEPT,
+
+        /**
+         * Send a stateless retry to validate the client address first.
+         */
+        RETRY,
+
+        /**
+         * Drop the packet.
+         */
+        DROP,
+    }
+
+    /**
+     * The default number of rate limiter slots.
+     */
+    public static final int DEFAULT_SLOTS = 4096;
+
+    private final int maxHandshakes;
+    private final TokenBucket initials;
+    private final AtomicInteger handshakes;
+
+    /**
+     * Creates a controller.
+     *
+     * @param maxHandshakes     the number of handshakes in progress above which
+     *                          unvalidated clients are forced to retry
+     * @param initialsPerSecond the rate of Initial packets per source prefix
+     * @param burst             the number of Initials per source prefix allowed
+     *                          in a burst
+     */
+    public AdmissionController(int maxHandshakes, long initialsPerSecond, int burst) {
+        this(maxHandshakes, new TokenBucket(initialsPerSecond, burst, DEFAULT_SLOTS));
+    }
+
+    public AdmissionController(int maxHandshakes, TokenBucket initials) {
+        if (maxHandshakes < 0)
+            throw new IllegalArgumentException("Max handshakes should not be negative");
+        this.maxHandshakes = maxHandshakes;
+        this.initials = initials;
+        this.handshakes = new AtomicInteger();
+    }
+
+    public final int maxHandshakes() {
+        return this.maxHandshakes;
+    }
+
+    /**
+     * Returns the number of handshakes currently in progress.
+     */
+    public final int handshakesInProgress() {
+        return handshakes.get();
+    }
+
+    /**
+     * Decides what to do with an Initial packet that doesn't belong to any
+     * existing connection.
+     *
+     * <p>{@code validated} tells whether the packet carries an address
+     * validation token (the token itself is checked by the caller). Such
+     * clients have already been through a retry and are not subject to the
+     * handshake cap, only to the rate limit.
+     */
+    public final Decision admit(InetAddress source, boolean validated) {
+        if (!initials.tryAcquire(prefixKey(source)))
+            return Decision.DROP;
+        if (validated || handshakes.get() < maxHandshakes)
+            return Decision.ACCEPT;
+        return Decision.RETRY;
+    }
+
+    public final void handshakeStarted() {
+        handshakes.incrementAndGet();
+    }
+
+    public final void handshakeFinished() {
+        handshakes.decrementAndGet();
+    }
+
+    private static int prefixKey(InetAddress address) {
+        if (null == address)
+            return 0;
+        final byte[] addr = address.getAddress();
+        // /24 for IPv4 and /48 for IPv6
+        final int len = 4 == addr.length ? 3 : 6;
+        int key = addr.length;
+        for (int i = 0; i < len; i++) {
+            key = 31 * key + addr[i];
+        }
+        return key;
+    }
+
+}
@@ -0,0 +1,177 @@
+package io.quiche4j.server;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Confines connections to the thread running their event loop.
+ *
+ * <p>{@link io.quiche4j.Connection} and {@link io.quiche4j.http3.Http3Connection}
+ * are not thread-safe. Instead of guarding native calls with locks, the
+ * application submits commands touching a connection (stream writes, closes
+ * and alike) with {@link #execute} from any thread, and the event loop runs
+ * them with {@link #runPending} once per iteration, between processing
+ * received packets and flushing outgoing ones. Handlers that take a while can
+ * thus run on their own threads, while the connection is only ever touched by
+ * the event loop.
+ *
+ * <p>Commands are passed through a lock-free multi-producer single-consumer
+ * queue. The event loop is woken up (with the {@code wakeup} action, e.g.
+ * {@link java.nio.channels.Selector#wakeup}) only when it's about to block or
+ * blocked already, see {@link #prepareToBlock}, so a busy loop is never
+ * interrupted.
+ *
+ * <p>Example:
+ * <pre>
+ *     final ConnectionExecutor executor = new ConnectionExecutor(selector::wakeup);
+ *
+ *     // event loop
+ *     while (running) {
+ *         executor.runPending();
+ *         // recv packets, handle timeouts, flush with SendScheduler
+ *         if (executor.prepareToBlock()) {
+ *             selector.select(timeout);
+ *         } else {
+ *             selector.selectNow();
+ *         }
+ *     }
+ *
+ *     // any other thread
+ *     executor.execute(() -&gt; {
+ *         h3.sendBody(streamId, body, true);
+ *         scheduler.markPending(client);
+ *     });
+ * </pre>
+ */
+public final class ConnectionExecutor implements Executor {
+
+    private final static class Node {
+        private Runnable task;
+        private volatile Node next;
+
+        Node(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    private final Runnable wakeup;
+    private final AtomicReference<Node> tail;
+    private final AtomicBoolean wakeupArmed;
+    private Node head;
+    private volatile Thread owner;
+
+    /**
+     * Creates an executor that wakes up its event loop with the given action.
+     */
+    public ConnectionExecutor(Runnable wakeup) {
+        this.wakeup = wakeup;
+        final Node stub = new Node(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+        this.wakeupArmed = new AtomicBoolean();
+        this.owner = null;
+    }
+
+    /**
+     * Submits a command to run on the event loop. Can be called from any
+     * thread, including the event loop itself.
+     */
+    @Override
+    public final void execute(Runnable task) {
+        if (null == task)
+            throw new NullPointerException("task");
+        final Node node = new Node(task);
+        final Node prev = tail.getAndSet(node);
+        prev.next = node;
+        // checked after the node is linked, so the loop either sees the
+        // command before blocking or gets woken up
+        if (wakeupArmed.getAndSet(false))
+            wakeup.run();
+    }
+
+    /**
+     * Submits a command to run on the event loop and returns its result.
+     */
+    public final <T> CompletableFuture<T> submit(Callable<T> task) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns {@code true} if called by the event loop thread.
+     */
+    public final boolean inEventLoop() {
+        return Thread.currentThread() == owner;
+    }
+
+    /**
+     * Runs commands submitted so far, returns the number of commands run.
+     *
+     * <p>Must only be called by the event loop, the first call binds the
+     * executor to the calling thread. Commands submitted while running (e.g.
+     * by the commands themselves) are left for the next iteration.
+     */
+    public final int runPending() {
+        final Thread current = Thread.currentThread();
+        if (null == owner) {
+            owner = current;
+        } else if (owner != current) {
+            throw new IllegalStateException("Executor is owned by another thread");
+        }
+        wakeupArmed.set(false);
+
+        final Node last = tail.get();
+        int count = 0;
+        while (true) {
+            final Node next = head.next;
+            if (null == next)
+                break;
+            final Runnable task = next.task;
+            next.task = null;
+            head = next;
+            count++;
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                current.getUncaughtExceptionHandler().uncaughtException(current, e);
+            }
+            if (next == last)
+                break;
+        }
+        return count;
+    }
+
+    /**
+     * Returns {@code true} if there are commands waiting to be run.
+     */
+    public final boolean hasPending() {
+        return null != head.next;
+    }
+
+    /**
+     * Called by the event loop before blocking (e.g. in {@code select}).
+     *
+     * <p>Returns {@code true} if the loop may block, that is, there are no
+     * pending commands, and any command submitted from now on wakes it up.
+     * Returns {@code false} if there are commands to run already.
+     */
+    public final boolean prepareToBlock() {
+        wakeupArmed.set(true);
+        if (hasPending()) {
+            wakeupArmed.set(false);
+            return false;
+        }
+        return true;
+    }
+
+}
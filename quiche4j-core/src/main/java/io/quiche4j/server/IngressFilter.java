@@ -0,0 +1,44 @@
+package io.quiche4j.server;
+
+import java.net.InetSocketAddress;
+
+/**
+ * A stage in front of the server's receive path.
+ *
+ * <p>{@link #onReceive} is called for every datagram before its header is
+ * parsed or it's passed to native code, so dropping traffic here costs next
+ * to nothing. {@link #onStatelessSend} is consulted before a packet is sent
+ * to an address that hasn't proven it owns it (Version Negotiation and Retry
+ * packets), which allows to enforce the anti-amplification limit of the
+ * protocol for stateless responses as well. Connections enforce the limit on
+ * their own.
+ *
+ * <p>Implementations are expected to be thread-safe.
+ *
+ * @see SourceRateLimiter
+ */
+public interface IngressFilter {
+
+    /**
+     * Returns {@code false} if the datagram of {@code length} bytes received
+     * from {@code sender} should be dropped.
+     */
+    boolean onReceive(InetSocketAddress sender, int length);
+
+    /**
+     * Returns {@code false} if a stateless packet of {@code length} bytes must
+     * not be sent to {@code recipient}.
+     */
+    default boolean onStatelessSend(InetSocketAddress recipient, int length) {
+        return true;
+    }
+
+    /**
+     * Called once the peer at {@code address} is validated, e.g. its
+     * handshake is completed. Receiving early data doesn't validate the
+     * address, 0-RTT packets can be sent from a spoofed one.
+     */
+    default void onValidated(InetSocketAddress address) {
+    }
+
+}
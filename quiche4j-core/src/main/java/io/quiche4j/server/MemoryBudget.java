@@ -0,0 +1,121 @@
+package io.quiche4j.server;
+
+import java.util.function.LongSupplier;
+
+import io.quiche4j.Config;
+import io.quiche4j.Quiche;
+
+/**
+ * Limits native memory used by a server.
+ *
+ * <p>The budget is consulted before accepting a new connection. Below the
+ * soft limit connections are accepted as usual. Between the soft and the hard
+ * limit they are accepted with a constrained configuration, typically one
+ * advertising smaller flow control windows (so the peer can't make the
+ * connection buffer as much data). Above the hard limit new connections are
+ * refused, existing ones are not affected.
+ *
+ * <p>By default the usage is {@link Quiche#nativeMemoryAllocated}, i.e. the
+ * whole process. A different measure (e.g. a sum of
+ * {@link io.quiche4j.Connection#nativeMemoryUsage} over connections of a single
+ * server) can be supplied instead.
+ *
+ * <p>Example:
+ * <pre>
+ *     final MemoryBudget budget = new MemoryBudget(512L &lt;&lt; 20, 768L &lt;&lt; 20);
+ *
+ *     final Config selected = budget.select(config, constrainedConfig);
+ *     if (null == selected) {
+ *         // over budget, drop the Initial packet
+ *         continue;
+ *     }
+ *     final Connection conn = Quiche.accept(connId, odcid, selected);
+ * </pre>
+ */
+public final class MemoryBudget {
+
+    public enum Decision {
+        /**
+         * Accept the connection as usual.
+         */
+        ACCEPT,
+
+        /**
+         * Accept the connection with a constrained configuration.
+         */
+        CONSTRAIN,
+
+        /**
+         * Refuse the connection.
+         */
+        REJECT,
+    }
+
+    private final long softLimit;
+    private final long hardLimit;
+    private final LongSupplier usage;
+
+    /**
+     * Creates a budget measured with {@link Quiche#nativeMemoryAllocated}.
+     */
+    public MemoryBudget(long softLimit, long hardLimit) {
+        this(softLimit, hardLimit, Quiche::nativeMemoryAllocated);
+    }
+
+    /**
+     * Creates a budget measured with the given {@code usage} supplier.
+     */
+    public MemoryBudget(long softLimit, long hardLimit, LongSupplier usage) {
+        if (softLimit <= 0)
+            throw new IllegalArgumentException("Soft limit should be positive");
+        if (hardLimit < softLimit)
+            throw new IllegalArgumentException("Hard limit should not be less than soft limit");
+        this.softLimit = softLimit;
+        this.hardLimit = hardLimit;
+        this.usage = usage;
+    }
+
+    public final long softLimit() {
+        return this.softLimit;
+    }
+
+    public final long hardLimit() {
+        return this.hardLimit;
+    }
+
+    /**
+     * Returns the current memory usage in bytes.
+     */
+    public final long usage() {
+        return usage.getAsLong();
+    }
+
+    /**
+     * Decides whether a new connection fits into the budget.
+     */
+    public final Decision admit() {
+        final long used = usage();
+        if (used < softLimit)
+            return Decision.ACCEPT;
+        if (used < hardLimit)
+            return Decision.CONSTRAIN;
+        return Decision.REJECT;
+    }
+
+    /**
+     * Picks configuration for a new connection according to {@link #admit}.
+     *
+     * <p>Returns {@code null} if the connection should be refused.
+     */
+    public final Config select(Config config, Config constrainedConfig) {
+        switch (admit()) {
+            case ACCEPT:
+                return config;
+            case CONSTRAIN:
+                return constrainedConfig;
+            default:
+                return null;
+        }
+    }
+
+}
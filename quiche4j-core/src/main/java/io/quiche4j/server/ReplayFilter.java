@@ -0,0 +1,151 @@
+package io.quiche4j.server;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time-windowed strike register protecting 0-RTT data from replays.
+ *
+ * <p>A replayed 0-RTT flight has to carry the original destination connection
+ * ID chosen by the client: 0-RTT packets are authenticated together with their
+ * header, and with a stateless retry the ID is bound to the address
+ * validation token. A client, on the other hand, picks a fresh random ID for
+ * each connection attempt. Thus a server that records the original
+ * destination connection ID of every accepted connection and refuses to
+ * accept the same ID twice can't be made to process the same early data
+ * twice. The check happens before the connection is created, so the
+ * application never sees replayed requests.
+ *
+ * <p>IDs are recorded in a rotating set of bloom filters: each generation
+ * covers a fraction of the window and the oldest one is cleared when a new
+ * period starts, so memory is bounded regardless of the connection rate.
+ * Seeds are random, so colliding IDs can't be crafted. A false positive makes
+ * a legitimate connection attempt fail, the expected rate of such failures is
+ * about {@code 0.1%} at the configured number of connections per window.
+ *
+ * <p>Recording and checking an ID is lock-free (bits are set with atomic
+ * operations), only the rotation of generations, once per period, takes a
+ * lock. The filter can be shared by all workers of a server.
+ *
+ * <p>Note that an ID is only remembered for {@code window}. Sessions resumed
+ * with tickets older than that are not protected, the window should cover the
+ * lifetime of session tickets issued by the server.
+ */
+public final class ReplayFilter {
+
+    private static final int GENERATIONS = 4;
+    private static final int HASHES = 10;
+    private static final int BITS_PER_ENTRY = 16;
+
+    private final long periodNanos;
+    private final int bitMask;
+    private final long seed1;
+    private final long seed2;
+    private final AtomicLongArray[] bits;
+    private final AtomicLongArray epochs;
+    private final long origin;
+
+    /**
+     * Creates a filter remembering IDs for at least {@code windowMillis}.
+     *
+     * @param expectedConnections the expected number of connections accepted
+     *                            during the window
+     */
+    public ReplayFilter(long windowMillis, int expectedConnections) {
+        if (windowMillis <= 0)
+            throw new IllegalArgumentException("Window should be positive");
+        if (expectedConnections <= 0)
+            throw new IllegalArgumentException("Expected connections should be positive");
+        // an entry lives in its generation for at least GENERATIONS - 1 periods
+        this.periodNanos = Math.max(1L, TimeUnit.MILLISECONDS.toNanos(windowMillis) / (GENERATIONS - 1));
+        final long perGeneration = (long) expectedConnections * BITS_PER_ENTRY / (GENERATIONS - 1);
+        final int size = (int) Math.min(1L << 30, Math.max(64L, Long.highestOneBit(perGeneration - 1) << 1));
+        this.bitMask = size - 1;
+        final SecureRandom random = new SecureRandom();
+        this.seed1 = random.nextLong();
+        this.seed2 = random.nextLong() | 1L;
+        this.bits = new AtomicLongArray[GENERATIONS];
+        this.epochs = new AtomicLongArray(GENERATIONS);
+        for (int i = 0; i < GENERATIONS; i++) {
+            this.bits[i] = new AtomicLongArray(size >>> 6);
+            this.epochs.set(i, i);
+        }
+        this.origin = System.nanoTime();
+    }
+
+    /**
+     * Records the given ID. Returns {@code false} if it was (most likely)
+     * already recorded within the window, in which case the connection must
+     * not be accepted.
+     */
+    public final boolean add(byte[] connId) {
+        final long epoch = (System.nanoTime() - origin) / periodNanos;
+        final AtomicLongArray current = generation(epoch);
+        final long h1 = hash(connId, seed1);
+        final long h2 = hash(connId, seed2) | 1L;
+
+        boolean seen = false;
+        for (int g = 1; g < GENERATIONS && !seen; g++) {
+            final long past = epoch - g;
+            if (past < 0)
+                break;
+            final int index = (int) (past % GENERATIONS);
+            // a generation not rotated since then holds expired entries
+            if (epochs.get(index) == past)
+                seen = contains(bits[index], h1, h2);
+        }
+
+        boolean fresh = false;
+        for (int i = 0; i < HASHES; i++) {
+            final int bit = (int) (h1 + i * h2) & bitMask;
+            final long mask = 1L << (bit & 63);
+            final long prev = current.getAndAccumulate(bit >>> 6, mask, (a, b) -> a | b);
+            if (0L == (prev & mask))
+                fresh = true;
+        }
+        return fresh && !seen;
+    }
+
+    private AtomicLongArray generation(long epoch) {
+        final int index = (int) (epoch % GENERATIONS);
+        final AtomicLongArray generation = bits[index];
+        if (epochs.get(index) >= epoch)
+            return generation;
+        synchronized (this) {
+            // the epoch is published once the generation is cleared, so
+            // no bits are set into a generation being cleared
+            if (epochs.get(index) < epoch) {
+                for (int i = 0; i < generation.length(); i++) {
+                    generation.set(i, 0L);
+                }
+                epochs.set(index, epoch);
+            }
+        }
+        return generation;
+    }
+
+    private boolean contains(AtomicLongArray generation, long h1, long h2) {
+        for (int i = 0; i < HASHES; i++) {
+            final int bit = (int) (h1 + i * h2) & bitMask;
+            if (0L == (generation.get(bit >>> 6) & (1L << (bit & 63))))
+                return false;
+        }
+        return true;
+    }
+
+    private static long hash(byte[] data, long seed) {
+        long h = seed ^ (data.length * 0x9E3779B97F4A7C15L);
+        for (byte b : data) {
+            h = (h ^ (b & 0xff)) * 0x100000001B3L;
+            h ^= h >>> 29;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
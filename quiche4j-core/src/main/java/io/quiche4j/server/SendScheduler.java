@@ -0,0 +1,204 @@
+package io.quiche4j.server;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.function.Function;
+
+import io.quiche4j.Connection;
+
+/**
+ * Schedules outgoing packets across multiple connections.
+ *
+ * <p>Instead of draining every connection with {@link Connection#send} on each
+ * iteration of the event loop, the application marks connections that might
+ * have pending output (any time it calls {@link Connection#recv},
+ * {@link Connection#onTimeout}, {@link Connection#streamSend} and alike) using
+ * {@link #markPending}. Only those connections are visited by {@link #flush}.
+ *
+ * <p>Pending connections are serviced with deficit round-robin: each visit
+ * grants a connection {@code quantum} packets, and a single {@link #flush}
+ * call writes at most {@code quota} packets in total. A connection that still
+ * has output once its quantum is used moves to the tail of the queue, so a
+ * single bulk transfer can't starve the rest. A connection that reports
+ * {@link io.quiche4j.Quiche.ErrorCode#DONE} leaves the queue until it's
+ * marked again.
+ *
+ * <p>The scheduler is not thread-safe and is expected to be owned by the
+ * event loop that owns the connections.
+ *
+ * <p>Example:
+ * <pre>
+ *     final SendScheduler&lt;Client&gt; scheduler = new SendScheduler&lt;&gt;(Client::connection);
+ *
+ *     // after conn.recv(...), conn.onTimeout() or stream writes
+ *     scheduler.markPending(client);
+ *
+ *     // once per event loop iteration
+ *     scheduler.flush(out, (client, buf, len) -&gt; {
+ *         socket.send(new DatagramPacket(buf, len, client.sender()));
+ *     });
+ * </pre>
+ */
+public final class SendScheduler<T> {
+
+    /**
+     * The default number of packets a connection may send per visit.
+     */
+    public static final int DEFAULT_QUANTUM = 8;
+
+    /**
+     * The default number of packets written by a single {@link SendScheduler#flush} call.
+     */
+    public static final int DEFAULT_QUOTA = 512;
+
+    /**
+     * Receives packets generated by {@link SendScheduler#flush}.
+     */
+    @FunctionalInterface
+    public interface PacketSink<T> {
+        /**
+         * Sends the first {@code len} bytes of {@code buf} to the peer of {@code owner}.
+         *
+         * <p>The buffer is reused for the next packet as soon as the method returns.
+         */
+        void send(T owner, byte[] buf, int len) throws IOException;
+    }
+
+    private final static class Entry<T> {
+        private final T owner;
+        private int deficit;
+        private boolean queued;
+        private boolean removed;
+
+        Entry(T owner) {
+            this.owner = owner;
+            this.deficit = 0;
+            this.queued = false;
+            this.removed = false;
+        }
+    }
+
+    private final Function<T, Connection> connectionOf;
+    private final int quantum;
+    private final int quota;
+    private final HashMap<T, Entry<T>> entries;
+    private final ArrayDeque<Entry<T>> active;
+
+    /**
+     * Creates a scheduler with {@link #DEFAULT_QUANTUM} and {@link #DEFAULT_QUOTA}.
+     */
+    public SendScheduler(Function<T, Connection> connectionOf) {
+        this(connectionOf, DEFAULT_QUANTUM, DEFAULT_QUOTA);
+    }
+
+    /**
+     * Creates a scheduler.
+     *
+     * <p>The {@code connectionOf} function resolves the connection for a given
+     * owner (e.g. a per-client state object), {@code quantum} is the number of
+     * packets a connection may send per visit and {@code quota} is the number of
+     * packets written by a single {@link #flush} call.
+     */
+    public SendScheduler(Function<T, Connection> connectionOf, int quantum, int quota) {
+        if (quantum <= 0)
+            throw new IllegalArgumentException("Quantum should be positive");
+        if (quota <= 0)
+            throw new IllegalArgumentException("Quota should be positive");
+        this.connectionOf = connectionOf;
+        this.quantum = quantum;
+        this.quota = quota;
+        this.entries = new HashMap<>();
+        this.active = new ArrayDeque<>();
+    }
+
+    /**
+     * Marks the connection of {@code owner} as one that might have packets to send.
+     *
+     * <p>Marking a connection which is already pending is a no-op.
+     */
+    public final void markPending(T owner) {
+        Entry<T> entry = entries.get(owner);
+        if (null == entry) {
+            entry = new Entry<>(owner);
+            entries.put(owner, entry);
+        }
+        if (!entry.queued) {
+            entry.queued = true;
+            active.addLast(entry);
+        }
+    }
+
+    /**
+     * Forgets about {@code owner}, e.g. when its connection is closed.
+     */
+    public final void remove(T owner) {
+        final Entry<T> entry = entries.remove(owner);
+        if (null != entry) {
+            // lazily dropped from the queue by the next flush
+            entry.removed = true;
+        }
+    }
+
+    /**
+     * Returns {@code true} if there are connections that might have packets to send.
+     *
+     * <p>This is the case when the previous {@link #flush} ran out of its quota
+     * before all pending connections were drained.
+     */
+    public final boolean hasPending() {
+        return !active.isEmpty();
+    }
+
+    /**
+     * Writes packets of pending connections into {@code sink}, using {@code buf}
+     * as a scratch buffer.
+     *
+     * <p>Returns the number of packets written.
+     */
+    public final int flush(byte[] buf, PacketSink<T> sink) throws IOException {
+        int budget = quota;
+        while (0 < budget && !active.isEmpty()) {
+            final Entry<T> entry = active.pollFirst();
+            if (entry.removed)
+                continue;
+
+            // leftover deficit means the previous flush ran out of quota
+            // in the middle of this connection's turn
+            if (0 == entry.deficit)
+                entry.deficit = quantum;
+
+            final Connection conn = connectionOf.apply(entry.owner);
+            boolean drained = false;
+            try {
+                while (0 < entry.deficit && 0 < budget) {
+                    final int len = conn.send(buf);
+                    if (len <= 0) {
+                        // either DONE or the connection failed, in both
+                        // cases there's nothing else to send
+                        drained = true;
+                        break;
+                    }
+                    entry.deficit--;
+                    budget--;
+                    sink.send(entry.owner, buf, len);
+                }
+            } catch (IOException e) {
+                entry.deficit = 0;
+                active.addFirst(entry);
+                throw e;
+            }
+
+            if (drained) {
+                entry.deficit = 0;
+                entry.queued = false;
+            } else if (0 == entry.deficit) {
+                active.addLast(entry);
+            } else {
+                active.addFirst(entry);
+            }
+        }
+        return quota - budget;
+    }
+
+}
@@ -0,0 +1,271 @@
+package io.quiche4j.server;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link IngressFilter} limiting the packet rate per source address prefix and
+ * the amount of data sent to unvalidated addresses.
+ *
+ * <p>Each source prefix (by default a single IPv4 address or an IPv6 /64) has
+ * its own token bucket of {@code burst} packets refilled at
+ * {@code packetsPerSecond}, packets over the rate are dropped. Until an
+ * address is validated the limiter also counts bytes received from it and
+ * refuses stateless packets that would make the server send more than three
+ * times as much (RFC 9000, section 8). Unlike the rate, this is tracked per
+ * exact address: validating one address doesn't lift the limit for its
+ * neighbours in the prefix, any of which could be spoofed. At most
+ * {@link #MAX_SOURCES_PER_PREFIX} addresses are tracked per prefix, the
+ * others get no stateless responses.
+ *
+ * <p>Entries live in a number of shards, each a concurrent map looked up
+ * without locking, buckets themselves are updated with compare-and-set.
+ * Entries idle for longer than {@code idleTimeout} are expired, each shard is
+ * swept by whichever thread notices the sweep is due. A shard holds at most
+ * {@code maxEntries / shards} entries, sources that don't fit (a flood from
+ * spoofed addresses, most likely) share a single hashed {@link TokenBucket}
+ * and get no stateless responses at all.
+ */
+public final class SourceRateLimiter implements IngressFilter {
+
+    /**
+     * Anti-amplification factor for unvalidated addresses.
+     */
+    public static final int AMPLIFICATION_FACTOR = 3;
+
+    /**
+     * Maximum number of addresses within a prefix tracked for anti-amplification.
+     */
+    public static final int MAX_SOURCES_PER_PREFIX = 64;
+
+    public static final int DEFAULT_IPV4_PREFIX = 32;
+    public static final int DEFAULT_IPV6_PREFIX = 64;
+    public static final int DEFAULT_SHARDS = 64;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final int OVERFLOW_SLOTS = 4096;
+
+    private final static class Source {
+        private final AtomicLong received;
+        private final AtomicLong sent;
+        private volatile boolean validated;
+        private volatile long lastSeen;
+
+        Source(long now) {
+            this.received = new AtomicLong();
+            this.sent = new AtomicLong();
+            this.validated = false;
+            this.lastSeen = now;
+        }
+    }
+
+    private final static class Entry {
+        // theoretical arrival time, see TokenBucket
+        private final AtomicLong tat;
+        private final ConcurrentHashMap<InetAddress, Source> sources;
+        private volatile long lastSeen;
+
+        Entry(long now) {
+            // a full bucket
+            this.tat = new AtomicLong(now);
+            this.sources = new ConcurrentHashMap<>();
+            this.lastSeen = now;
+        }
+    }
+
+    private final static class Shard {
+        private final ConcurrentHashMap<Long, Entry> entries;
+        private final AtomicInteger size;
+        private final AtomicLong nextSweep;
+
+        Shard(long nextSweep) {
+            this.entries = new ConcurrentHashMap<>();
+            this.size = new AtomicInteger();
+            this.nextSweep = new AtomicLong(nextSweep);
+        }
+    }
+
+    private final long interval;
+    private final long tolerance;
+    private final long idleTimeout;
+    private final long ipv4Mask;
+    private final long ipv6Mask;
+    private final int maxShardEntries;
+    private final Shard[] shards;
+    private final TokenBucket overflow;
+
+    public SourceRateLimiter(long packetsPerSecond, int burst, int maxEntries) {
+        this(packetsPerSecond, burst, maxEntries, DEFAULT_IPV4_PREFIX, DEFAULT_IPV6_PREFIX,
+                DEFAULT_SHARDS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    public SourceRateLimiter(long packetsPerSecond, int burst, int maxEntries, int ipv4Prefix, int ipv6Prefix,
+            int shards, long idleTimeoutMillis) {
+        if (packetsPerSecond <= 0 || burst <= 0)
+            throw new IllegalArgumentException("Rate and burst should be positive");
+        if (ipv4Prefix < 1 || ipv4Prefix > 32 || ipv6Prefix < 1 || ipv6Prefix > 64)
+            throw new IllegalArgumentException("Invalid prefix length");
+        if (shards <= 0 || maxEntries < shards)
+            throw new IllegalArgumentException("Invalid number of entries");
+        this.interval = Math.max(1L, TimeUnit.SECONDS.toNanos(1) / packetsPerSecond);
+        this.tolerance = this.interval * burst;
+        this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.ipv4Mask = -1L << (32 - ipv4Prefix);
+        this.ipv6Mask = -1L << (64 - ipv6Prefix);
+        this.maxShardEntries = maxEntries / shards;
+        this.shards = new Shard[shards];
+        final long now = System.nanoTime();
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(now + this.idleTimeout);
+        }
+        this.overflow = new TokenBucket(packetsPerSecond, burst, OVERFLOW_SLOTS);
+    }
+
+    @Override
+    public boolean onReceive(InetSocketAddress sender, int length) {
+        final long key = prefixKey(sender);
+        final long now = System.nanoTime();
+        final Shard shard = shard(key);
+        sweepIfDue(shard, now);
+
+        Entry entry = shard.entries.get(key);
+        if (null == entry) {
+            if (shard.size.get() >= maxShardEntries)
+                return overflow.tryAcquire(Long.hashCode(key));
+            final Entry created = new Entry(now);
+            entry = shard.entries.putIfAbsent(key, created);
+            if (null == entry) {
+                entry = created;
+                shard.size.incrementAndGet();
+            }
+        }
+        entry.lastSeen = now;
+        if (!acquire(entry, now))
+            return false;
+        final Source source = source(entry, sender.getAddress(), now);
+        if (null != source && !source.validated)
+            source.received.addAndGet(length);
+        return true;
+    }
+
+    @Override
+    public boolean onStatelessSend(InetSocketAddress recipient, int length) {
+        final Source source = tracked(recipient);
+        // untracked sources are most likely spoofed
+        if (null == source)
+            return false;
+        if (source.validated)
+            return true;
+        final long limit = AMPLIFICATION_FACTOR * source.received.get();
+        while (true) {
+            final long sent = source.sent.get();
+            if (sent + length > limit)
+                return false;
+            if (source.sent.compareAndSet(sent, sent + length))
+                return true;
+        }
+    }
+
+    @Override
+    public void onValidated(InetSocketAddress address) {
+        final Source source = tracked(address);
+        if (null != source)
+            source.validated = true;
+    }
+
+    /**
+     * Returns the number of tracked sources.
+     */
+    public final int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size.get();
+        }
+        return size;
+    }
+
+    private boolean acquire(Entry entry, long now) {
+        while (true) {
+            final long tat = entry.tat.get();
+            final long next = Math.max(tat - now, 0L) + interval;
+            if (next > tolerance)
+                return false;
+            if (entry.tat.compareAndSet(tat, now + next))
+                return true;
+        }
+    }
+
+    /**
+     * Returns the source tracked for the address, tracking it if there's room
+     * in the entry, or {@code null}.
+     */
+    private Source source(Entry entry, InetAddress address, long now) {
+        if (null == address)
+            return null;
+        Source source = entry.sources.get(address);
+        if (null == source) {
+            if (entry.sources.size() >= MAX_SOURCES_PER_PREFIX)
+                return null;
+            final Source created = new Source(now);
+            source = entry.sources.putIfAbsent(address, created);
+            if (null == source)
+                source = created;
+        }
+        source.lastSeen = now;
+        return source;
+    }
+
+    private Source tracked(InetSocketAddress socketAddress) {
+        final InetAddress address = socketAddress.getAddress();
+        if (null == address)
+            return null;
+        final long key = prefixKey(socketAddress);
+        final Entry entry = shard(key).entries.get(key);
+        return null == entry ? null : entry.sources.get(address);
+    }
+
+    private void sweepIfDue(Shard shard, long now) {
+        final long due = shard.nextSweep.get();
+        if (now - due < 0 || !shard.nextSweep.compareAndSet(due, now + idleTimeout))
+            return;
+        final Iterator<Entry> it = shard.entries.values().iterator();
+        while (it.hasNext()) {
+            final Entry entry = it.next();
+            if (now - entry.lastSeen > idleTimeout) {
+                it.remove();
+                shard.size.decrementAndGet();
+                continue;
+            }
+            entry.sources.values().removeIf(source -> now - source.lastSeen > idleTimeout);
+        }
+    }
+
+    private Shard shard(long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return shards[(int) ((h >>> 32) % shards.length)];
+    }
+
+    private long prefixKey(InetSocketAddress socketAddress) {
+        final InetAddress address = socketAddress.getAddress();
+        if (null == address)
+            return 0L;
+        final byte[] addr = address.getAddress();
+        if (4 == addr.length) {
+            final long v4 = ((addr[0] & 0xffL) << 24) | ((addr[1] & 0xffL) << 16) | ((addr[2] & 0xffL) << 8)
+                    | (addr[3] & 0xffL);
+            // laid out as the lower half of an IPv4-mapped IPv6 address
+            return 0x0000_ffff_0000_0000L | (v4 & ipv4Mask & 0xffff_ffffL);
+        }
+        long v6 = 0L;
+        for (int i = 0; i < 8; i++) {
+            v6 = (v6 << 8) | (addr[i] & 0xffL);
+        }
+        return v6 & ipv6Mask;
+    }
+
+}
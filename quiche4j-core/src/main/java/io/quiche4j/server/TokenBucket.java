@@ -0,0 +1,87 @@
+package io.quiche4j.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free token bucket rate limiter.
+ *
+ * <p>The bucket holds up to {@code burst} permits and is refilled at
+ * {@code permitsPerSecond}. It's implemented as a generic cell rate algorithm:
+ * the state of a bucket is a single "theoretical arrival time", updated with
+ * compare-and-set, so acquiring a permit never blocks and never allocates.
+ *
+ * <p>A single instance may keep a number of independent buckets (slots),
+ * e.g. one per source address prefix. Keys are hashed into a fixed number of
+ * slots, thus the memory used doesn't depend on the number of distinct keys
+ * (which is what an attacker controls). Keys colliding in the same slot
+ * share the bucket.
+ *
+ * <p>The bucket is thread-safe.
+ */
+public final class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long interval;
+    private final long tolerance;
+    private final long origin;
+    private final int mask;
+    private final AtomicLongArray slots;
+
+    /**
+     * Creates a single bucket.
+     */
+    public TokenBucket(long permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, 1);
+    }
+
+    /**
+     * Creates {@code slots} independent buckets (rounded up to a power of two).
+     */
+    public TokenBucket(long permitsPerSecond, int burst, int slots) {
+        if (permitsPerSecond <= 0)
+            throw new IllegalArgumentException("Rate should be positive");
+        if (burst <= 0)
+            throw new IllegalArgumentException("Burst should be positive");
+        if (slots <= 0 || slots > (1 << 30))
+            throw new IllegalArgumentException("Invalid number of slots");
+        this.interval = Math.max(1L, NANOS_PER_SECOND / permitsPerSecond);
+        this.tolerance = this.interval * burst;
+        // arrival times are stored relative to the origin, so that zero
+        // (initial value of each slot) means a full bucket
+        this.origin = System.nanoTime() - this.tolerance;
+        final int size = 1 == slots ? 1 : Integer.highestOneBit(slots - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicLongArray(size);
+    }
+
+    /**
+     * Takes a permit from the bucket, returns {@code false} if there's none.
+     */
+    public final boolean tryAcquire() {
+        return tryAcquire(0);
+    }
+
+    /**
+     * Takes a permit from the bucket of the given key, returns {@code false}
+     * if there's none.
+     */
+    public final boolean tryAcquire(int key) {
+        final int slot = spread(key) & mask;
+        final long now = System.nanoTime() - origin;
+        while (true) {
+            final long tat = slots.get(slot);
+            final long next = Math.max(tat, now) + interval;
+            if (next - now > tolerance)
+                return false;
+            if (slots.compareAndSet(slot, tat, next))
+                return true;
+        }
+    }
+
+    private static int spread(int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
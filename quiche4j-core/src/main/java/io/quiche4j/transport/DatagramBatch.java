@@ -0,0 +1,225 @@
+package io.quiche4j.transport;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A batch of datagrams for {@link NativeUdp#receive} and {@link NativeUdp#send}.
+ *
+ * <p>Payloads are stored in a single direct buffer split into fixed-size slots,
+ * one slot per datagram. Per-datagram metadata (length, segment size and peer
+ * address) is stored in a second direct buffer, so that the native code reads
+ * and writes both without any copying.
+ *
+ * <p>When GRO is enabled on receive, a single slot might contain multiple
+ * coalesced datagrams from the same peer, each {@link #segmentSize} bytes long
+ * (the last one could be shorter). When {@link #segmentSize} is set on send
+ * and is smaller than the length, the kernel splits the slot into datagrams
+ * of that size (GSO).
+ *
+ * <p>The batch is not thread-safe.
+ */
+public final class DatagramBatch {
+
+    /**
+     * The maximum number of datagrams processed by a single native call.
+     */
+    public static final int MAX_SIZE = 64;
+
+    /**
+     * Size of a per-datagram metadata record, see {@code DatagramMeta} in JNI code.
+     */
+    static final int META_SIZE = 32;
+
+    private static final int META_LEN = 0;
+    private static final int META_SEGMENT_SIZE = 4;
+    private static final int META_FAMILY = 8;
+    private static final int META_PORT = 12;
+    private static final int META_ADDR = 16;
+
+    private final ByteBuffer data;
+    private final ByteBuffer meta;
+    private final int slotSize;
+    private final int capacity;
+    private int count;
+
+    /**
+     * Allocates a batch of {@code capacity} datagrams, each up to {@code slotSize} bytes.
+     *
+     * <p>To benefit from GRO on receive, {@code slotSize} should be {@code 65535}.
+     */
+    public DatagramBatch(int capacity, int slotSize) {
+        if (capacity <= 0 || MAX_SIZE < capacity)
+            throw new IllegalArgumentException("Capacity should be within [1, " + MAX_SIZE + "]");
+        if (slotSize <= 0)
+            throw new IllegalArgumentException("Slot size should be positive");
+        this.capacity = capacity;
+        this.slotSize = slotSize;
+        this.data = ByteBuffer.allocateDirect(capacity * slotSize);
+        this.meta = ByteBuffer.allocateDirect(capacity * META_SIZE).order(ByteOrder.nativeOrder());
+        this.count = 0;
+    }
+
+    public final int capacity() {
+        return this.capacity;
+    }
+
+    public final int slotSize() {
+        return this.slotSize;
+    }
+
+    /**
+     * Returns the number of datagrams in the batch.
+     */
+    public final int count() {
+        return this.count;
+    }
+
+    /**
+     * Sets the number of datagrams in the batch.
+     */
+    public final void setCount(int count) {
+        if (count < 0 || capacity < count)
+            throw new IndexOutOfBoundsException("Count " + count + " is out of [0, " + capacity + "]");
+        this.count = count;
+    }
+
+    /**
+     * Empties the batch.
+     */
+    public final void clear() {
+        this.count = 0;
+    }
+
+    /**
+     * Returns the buffer holding all slots. The slot {@code i} starts at {@link #offset}.
+     */
+    public final ByteBuffer data() {
+        return this.data;
+    }
+
+    final ByteBuffer meta() {
+        return this.meta;
+    }
+
+    /**
+     * Returns the offset of the slot {@code i} within the {@link #data} buffer.
+     */
+    public final int offset(int i) {
+        return i * slotSize;
+    }
+
+    /**
+     * Returns a view of the slot {@code i} limited to the length of the datagram.
+     */
+    public final ByteBuffer slot(int i) {
+        final ByteBuffer view = data.duplicate();
+        view.limit(offset(i) + length(i)).position(offset(i));
+        return view.slice();
+    }
+
+    /**
+     * Returns the number of bytes in the slot {@code i}.
+     */
+    public final int length(int i) {
+        return meta.getInt(i * META_SIZE + META_LEN);
+    }
+
+    /**
+     * Returns the size of the datagrams within the slot {@code i}.
+     *
+     * <p>Equals to {@link #length} unless the slot carries multiple coalesced datagrams.
+     */
+    public final int segmentSize(int i) {
+        return meta.getInt(i * META_SIZE + META_SEGMENT_SIZE);
+    }
+
+    /**
+     * Returns the port of the peer for the slot {@code i}.
+     */
+    public final int port(int i) {
+        return meta.getInt(i * META_SIZE + META_PORT);
+    }
+
+    /**
+     * Returns the address of the peer for the slot {@code i}.
+     */
+    public final InetSocketAddress socketAddress(int i) {
+        final int base = i * META_SIZE;
+        final int family = meta.getInt(base + META_FAMILY);
+        final byte[] addr = new byte[6 == family ? 16 : 4];
+        for (int j = 0; j < addr.length; j++) {
+            addr[j] = meta.get(base + META_ADDR + j);
+        }
+        try {
+            return new InetSocketAddress(InetAddress.getByAddress(addr), port(i));
+        } catch (UnknownHostException e) {
+            // only thrown for illegal address length
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Copies the content of the slot {@code i} into {@code dst}.
+     *
+     * <p>Returns the number of bytes copied.
+     */
+    public final int get(int i, byte[] dst) {
+        final int len = Math.min(length(i), dst.length);
+        data.limit(offset(i) + len).position(offset(i));
+        data.get(dst, 0, len);
+        data.clear();
+        return len;
+    }
+
+    /**
+     * Puts the first {@code len} bytes of {@code src} as the next datagram
+     * of the batch, addressed to {@code peer}.
+     *
+     * <p>A positive {@code segmentSize} smaller than {@code len} asks the kernel to
+     * split the payload into multiple datagrams (GSO).
+     *
+     * <p>Returns the index of the slot.
+     */
+    public final int add(byte[] src, int len, int segmentSize, InetSocketAddress peer) {
+        if (slotSize < len)
+            throw new IllegalArgumentException("Datagram doesn't fit into the slot");
+        final int i = this.count;
+        setCount(i + 1);
+        data.clear().position(offset(i));
+        data.put(src, 0, len);
+        data.clear();
+        set(i, len, segmentSize, peer);
+        return i;
+    }
+
+    /**
+     * Sets metadata for the slot {@code i}, e.g. when the payload was
+     * written directly into the {@link #data} buffer.
+     */
+    public final void set(int i, int len, int segmentSize, InetSocketAddress peer) {
+        final int base = i * META_SIZE;
+        final byte[] addr = peer.getAddress().getAddress();
+        meta.putInt(base + META_LEN, len);
+        meta.putInt(base + META_SEGMENT_SIZE, segmentSize);
+        meta.putInt(base + META_FAMILY, 16 == addr.length ? 6 : 4);
+        meta.putInt(base + META_PORT, peer.getPort());
+        for (int j = 0; j < 16; j++) {
+            meta.put(base + META_ADDR + j, j < addr.length ? addr[j] : 0);
+        }
+    }
+
+    public final String toString() {
+        final int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            lengths[i] = length(i);
+        }
+        return String.format("count=%d capacity=%d slot_size=%d lengths=%s",
+            count, capacity, slotSize, Arrays.toString(lengths));
+    }
+
+}
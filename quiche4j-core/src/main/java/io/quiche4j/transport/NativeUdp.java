@@ -0,0 +1,141 @@
+package io.quiche4j.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Batched UDP socket backed by {@code recvmmsg}/{@code sendmmsg} (Linux only).
+ *
+ * <p>Each {@link #receive} and {@link #send} call moves up to
+ * {@link DatagramBatch#MAX_SIZE} datagrams with a single syscall, reading and
+ * writing directly into direct buffers of the {@link DatagramBatch}. The socket
+ * can additionally use {@code UDP_GRO} to coalesce incoming datagrams and
+ * {@code UDP_SEGMENT} to offload segmentation of outgoing ones.
+ *
+ * <p>The socket is non-blocking, use {@link #awaitReadable} to wait for incoming
+ * datagrams. Following the library convention, I/O methods report failures as
+ * negative return codes (negated {@code errno}) rather than exceptions.
+ *
+ * <p>Example:
+ * <pre>
+ *     final NativeUdp socket = NativeUdp.bind(new InetSocketAddress("0.0.0.0", 4433), true);
+ *     final DatagramBatch batch = new DatagramBatch(DatagramBatch.MAX_SIZE, 65535);
+ *     while (socket.awaitReadable(100)) {
+ *         final int count = socket.receive(batch);
+ *         for (int i = 0; i &lt; count; i++) {
+ *             // slot i holds batch.length(i) bytes, split into batch.segmentSize(i) datagrams
+ *         }
+ *     }
+ * </pre>
+ */
+public final class NativeUdp implements Closeable {
+
+    private static final int POLLIN = 0x001;
+    private static final int POLLOUT = 0x004;
+
+    private int fd;
+
+    private NativeUdp(int fd) {
+        this.fd = fd;
+    }
+
+    /**
+     * Returns {@code true} if the native transport is supported on this platform.
+     */
+    public static final boolean isSupported() {
+        try {
+            return TransportNative.udp_is_supported();
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens a UDP socket bound to the given local address.
+     *
+     * <p>When {@code gro} is set, tries to enable {@code UDP_GRO} on the socket.
+     * Use {@link #isGroEnabled} to check if the kernel accepted the option.
+     */
+    public static final NativeUdp bind(InetSocketAddress local, boolean gro) throws IOException {
+        final byte[] addr = local.getAddress().getAddress();
+        final int family = 16 == addr.length ? 6 : 4;
+        final int fd = TransportNative.udp_open(family, addr, local.getPort(), gro);
+        if (fd < 0) {
+            throw new IOException("Failed to bind UDP socket to " + local + ", errno " + (-fd));
+        }
+        return new NativeUdp(fd);
+    }
+
+    /**
+     * Returns the underlying file descriptor.
+     */
+    public final int fd() {
+        return this.fd;
+    }
+
+    /**
+     * Returns the local port the socket is bound to.
+     */
+    public final int localPort() {
+        return TransportNative.udp_local_port(fd);
+    }
+
+    /**
+     * Returns {@code true} if {@code UDP_GRO} is enabled for the socket.
+     */
+    public final boolean isGroEnabled() {
+        return TransportNative.udp_gro_enabled(fd);
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for the socket to become readable.
+     */
+    public final boolean awaitReadable(int timeoutMillis) {
+        final int revents = TransportNative.udp_poll(fd, POLLIN, timeoutMillis);
+        return 0 < revents && 0 != (revents & POLLIN);
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for the socket to become writable.
+     */
+    public final boolean awaitWritable(int timeoutMillis) {
+        final int revents = TransportNative.udp_poll(fd, POLLOUT, timeoutMillis);
+        return 0 < revents && 0 != (revents & POLLOUT);
+    }
+
+    /**
+     * Receives up to {@link DatagramBatch#capacity} datagrams into the batch.
+     *
+     * <p>Returns the number of received datagrams (also reflected by
+     * {@link DatagramBatch#count}), {@code 0} if there was nothing to read, or
+     * negated {@code errno} on failure.
+     */
+    public final int receive(DatagramBatch batch) {
+        final int n = TransportNative.udp_recv(fd, batch.data(), batch.slotSize(), batch.meta(), batch.capacity());
+        batch.setCount(0 < n ? n : 0);
+        return n;
+    }
+
+    /**
+     * Sends all datagrams from the batch.
+     *
+     * <p>Returns the number of datagrams (slots) sent, which could be lower than
+     * {@link DatagramBatch#count} when the socket buffer is full, or negated
+     * {@code errno} on failure. The batch is not modified.
+     */
+    public final int send(DatagramBatch batch) {
+        return TransportNative.udp_send(fd, batch.data(), batch.slotSize(), batch.meta(), batch.count());
+    }
+
+    /**
+     * Closes the socket. Subsequent calls are no-op.
+     */
+    public final void close() {
+        if (0 <= fd) {
+            TransportNative.udp_close(fd);
+            fd = -1;
+        }
+    }
+
+}
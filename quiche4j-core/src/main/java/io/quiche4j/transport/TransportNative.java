@@ -0,0 +1,36 @@
+package io.quiche4j.transport;
+
+import static io.quiche4j.Native.LIBRARY_NAME;
+
+import java.nio.ByteBuffer;
+
+import io.quiche4j.NativeUtils;
+
+/**
+ * Declaration of native JNI calls for UDP transport.
+ *
+ * <p>Negative return codes are {@code -errno}.
+ */
+public class TransportNative {
+
+	static {
+		NativeUtils.loadLibrary(LIBRARY_NAME);
+	}
+
+	public final static native boolean udp_is_supported();
+
+	public final static native int udp_open(int family, byte[] addr, int port, boolean gro);
+
+	public final static native boolean udp_gro_enabled(int fd);
+
+	public final static native int udp_local_port(int fd);
+
+	public final static native int udp_poll(int fd, int events, int timeout_millis);
+
+	public final static native int udp_recv(int fd, ByteBuffer data, int slot_size, ByteBuffer meta, int count);
+
+	public final static native int udp_send(int fd, ByteBuffer data, int slot_size, ByteBuffer meta, int count);
+
+	public final static native void udp_close(int fd);
+
+}
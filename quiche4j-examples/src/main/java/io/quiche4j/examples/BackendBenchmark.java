@@ -0,0 +1,112 @@
+package io.quiche4j.examples;
+
+import java.nio.ByteBuffer;
+
+import io.quiche4j.Config;
+import io.quiche4j.ConfigBuilder;
+import io.quiche4j.Connection;
+import io.quiche4j.NativeBackend;
+import io.quiche4j.Quiche;
+import io.quiche4j.Utils;
+
+/**
+ * Measures per-call and per-packet overhead of the selected
+ * {@link NativeBackend}. A client and a server connection exchange stream
+ * data in memory, with no sockets involved, so the time is spent in quiche
+ * and in crossing the Java/native boundary.
+ *
+ * <p>Run once per backend and compare:
+ * <pre>
+ *     java -cp ... io.quiche4j.examples.BackendBenchmark
+ *     java --enable-native-access=ALL-UNNAMED -Dquiche4j.backend=ffm -cp ... io.quiche4j.examples.BackendBenchmark
+ * </pre>
+ */
+public class BackendBenchmark {
+
+    private static final int MAX_DATAGRAM_SIZE = 1350;
+    private static final int CHUNK_SIZE = 1024;
+    private static final int CALLS = 10_000_000;
+    private static final int PACKETS = 500_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        final Config serverConfig = config()
+            .loadCertChainFromPem(Utils.readResource("/cert.crt"))
+            .loadPrivKeyFromPem(Utils.readResource("/cert.key"))
+            .build();
+        final Config clientConfig = config().build();
+
+        final Connection client = Quiche.connect("localhost", Quiche.newConnectionId(), clientConfig);
+        final Connection server = Quiche.accept(Quiche.newConnectionId(), null, serverConfig);
+        final ByteBuffer packet = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+        final ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        final ByteBuffer sink = ByteBuffer.allocateDirect(65536);
+
+        while (!client.isEstablished() || !server.isEstablished()) {
+            if (0 == pump(client, server, packet) + pump(server, client, packet))
+                throw new IllegalStateException("Handshake stalled");
+        }
+
+        System.out.println("backend: " + NativeBackend.current().name());
+        for (int round = 0; round < ROUNDS; round++) {
+            // the cheapest call there is, mostly the cost of the transition
+            long start = System.nanoTime();
+            long sum = 0;
+            for (int i = 0; i < CALLS; i++)
+                sum += client.timeoutAsNanos();
+            final double perCall = (double) (System.nanoTime() - start) / CALLS;
+
+            start = System.nanoTime();
+            int packets = 0;
+            while (packets < PACKETS) {
+                chunk.clear();
+                client.streamSend(0, chunk, false);
+                final int sent = pump(client, server, packet);
+                sink.clear();
+                while (0 < server.streamRecv(0, sink))
+                    sink.clear();
+                if (0 == sent + pump(server, client, packet))
+                    throw new IllegalStateException("Transfer stalled");
+                packets += sent;
+            }
+            final double perPacket = (double) (System.nanoTime() - start) / packets;
+
+            System.out.println(String.format("round %d: %.1f ns/call, %.1f ns/packet (%d)",
+                round, perCall, perPacket, sum & 1));
+        }
+
+        client.free();
+        server.free();
+    }
+
+    private static ConfigBuilder config() {
+        return new ConfigBuilder(Quiche.PROTOCOL_VERSION)
+            .withApplicationProtos("\u0005bench".getBytes())
+            .withVerifyPeer(false)
+            .withMaxIdleTimeout(60_000)
+            .withMaxUdpPayloadSize(MAX_DATAGRAM_SIZE)
+            .withInitialMaxData(10_000_000)
+            .withInitialMaxStreamDataBidiLocal(1_000_000)
+            .withInitialMaxStreamDataBidiRemote(1_000_000)
+            .withInitialMaxStreamsBidi(100)
+            .withDisableActiveMigration(true);
+    }
+
+    /**
+     * Moves all pending packets from one connection to the other, returns
+     * the number of packets moved.
+     */
+    private static int pump(Connection from, Connection to, ByteBuffer packet) {
+        int count = 0;
+        while (true) {
+            packet.clear();
+            final int len = from.send(packet);
+            if (len <= 0)
+                return count;
+            packet.flip();
+            to.recv(packet);
+            count++;
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package io.quiche4j.examples;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.quiche4j.Config;
+import io.quiche4j.ConfigBuilder;
+import io.quiche4j.Quiche;
+import io.quiche4j.Utils;
+import io.quiche4j.http3.Http3;
+import io.quiche4j.http3.Http3Config;
+import io.quiche4j.http3.Http3ConfigBuilder;
+import io.quiche4j.http3.Http3Header;
+import io.quiche4j.netty.Http3BlockingHandler;
+import io.quiche4j.netty.Http3ServerCodec;
+
+/**
+ * HTTP/3 server handling each request on its own (virtual) thread
+ * with blocking request and response bodies.
+ */
+public class Http3BlockingServer {
+
+    private static final int MAX_DATAGRAM_SIZE = 1350;
+    private static final String SERVER_NAME = "Quiche4j";
+
+    public static void main(String[] args) throws Exception {
+        String hostname = "localhost";
+        int port = 4433;
+        if (0 < args.length) {
+            if (args[0].contains(":")) {
+                final String[] parts = args[0].split(":", 2);
+                if (!parts[0].isEmpty())
+                    hostname = parts[0];
+                port = Integer.parseInt(parts[1]);
+            } else {
+                port = Integer.parseInt(args[0]);
+            }
+        }
+
+        final Config config = new ConfigBuilder(Quiche.PROTOCOL_VERSION)
+            .withApplicationProtos(Http3.APPLICATION_PROTOCOL)
+            .withVerifyPeer(false)
+            .loadCertChainFromPem(Utils.readResource("/cert.crt"))
+            .loadPrivKeyFromPem(Utils.readResource("/cert.key"))
+            .withMaxIdleTimeout(5_000)
+            .withMaxUdpPayloadSize(MAX_DATAGRAM_SIZE)
+            .withInitialMaxData(10_000_000)
+            .withInitialMaxStreamDataBidiLocal(1_000_000)
+            .withInitialMaxStreamDataBidiRemote(1_000_000)
+            .withInitialMaxStreamDataUni(1_000_000)
+            .withInitialMaxStreamsBidi(100)
+            .withInitialMaxStreamsUni(100)
+            .withDisableActiveMigration(true)
+            .enableEarlyData()
+            .build();
+        final Http3Config h3Config = new Http3ConfigBuilder().build();
+
+        final Http3BlockingHandler handler = new Http3BlockingHandler(exchange -> {
+            // drain the request body, reads park the thread until data arrives
+            long received = 0;
+            final byte[] buf = new byte[4096];
+            try (InputStream in = exchange.requestBody()) {
+                int n;
+                while (-1 != (n = in.read(buf)))
+                    received += n;
+            }
+
+            final byte[] body = String.format("Hello from Quiche4j! path=%s received=%d%n",
+                exchange.requestHeader(":path"), received).getBytes();
+            final List<Http3Header> headers = new ArrayList<>();
+            headers.add(new Http3Header(":status", "200"));
+            headers.add(new Http3Header("server", SERVER_NAME));
+            headers.add(new Http3Header("content-length", Integer.toString(body.length)));
+            exchange.sendResponseHeaders(headers, false);
+            // writes park the thread while the stream is blocked by flow control
+            try (OutputStream out = exchange.responseBody()) {
+                out.write(body);
+            }
+        });
+
+        final EventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            final Channel channel = new Bootstrap()
+                .group(group)
+                .channel(NioDatagramChannel.class)
+                .handler(new Http3ServerCodec(config, h3Config, handler))
+                .bind(new InetSocketAddress(hostname, port))
+                .sync()
+                .channel();
+            System.out.println(String.format("! listening on %s:%d", hostname, port));
+            channel.closeFuture().sync();
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+}
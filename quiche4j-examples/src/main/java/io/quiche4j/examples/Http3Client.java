@@ -56,8 +56,8 @@ public class Http3Client {
             .withApplicationProtos(Http3.APPLICATION_PROTOCOL)
             // CAUTION: this should not be set to `false` in production
             .withVerifyPeer(true)
-            .loadCertChainFromPemFile(Utils.copyFileFromJAR("certs", "/cert.crt"))
-            .loadPrivKeyFromPemFile(Utils.copyFileFromJAR("certs", "/cert.key"))
+            .loadCertChainFromPem(Utils.readResource("/cert.crt"))
+            .loadPrivKeyFromPem(Utils.readResource("/cert.key"))
             .withMaxIdleTimeout(5_000)
             .withMaxUdpPayloadSize(MAX_DATAGRAM_SIZE)
             .withInitialMaxData(10_000_000)
@@ -379,8 +379,8 @@ public class Http3NettyClient {
         final Config config = new ConfigBuilder(Quiche.PROTOCOL_VERSION)
             .withApplicationProtos(Http3.APPLICATION_PROTOCOL)
             .withVerifyPeer(true)
-            .loadCertChainFromPemFile(Utils.copyFileFromJAR("certs", "/cert.crt"))
-            .loadPrivKeyFromPemFile(Utils.copyFileFromJAR("certs", "/cert.key"))
+            .loadCertChainFromPem(Utils.readResource("/cert.crt"))
+            .loadPrivKeyFromPem(Utils.readResource("/cert.key"))
             .withMaxIdleTimeout(5_000)
             .withMaxUdpPayloadSize(MAX_DATAGRAM_SIZE)
             .withInitialMaxData(10_000_000)
@@ -10,7 +10,9 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.quiche4j.Config;
@@ -26,6 +28,7 @@ import io.quiche4j.PacketHeader;
 import io.quiche4j.PacketType;
 import io.quiche4j.Quiche;
 import io.quiche4j.Utils;
+import io.quiche4j.server.SendScheduler;
 
 public class Http3Server {
 
@@ -71,6 +74,15 @@ public class Http3Server {
             this.h3Conn = conn;
         }
 
+        /**
+         * Releases native state right away instead of waiting for GC.
+         */
+        public final void free() {
+            if (null != this.h3Conn)
+                this.h3Conn.free();
+            this.conn.free();
+        }
+
     }
 
     private static final int MAX_DATAGRAM_SIZE = 1350;
@@ -102,8 +114,8 @@ public class Http3Server {
         final Config config = new ConfigBuilder(Quiche.PROTOCOL_VERSION)
             .withApplicationProtos(Http3.APPLICATION_PROTOCOL)
             .withVerifyPeer(false)
-            .loadCertChainFromPemFile(Utils.copyFileFromJAR("certs", "/cert.crt"))
-            .loadPrivKeyFromPemFile(Utils.copyFileFromJAR("certs", "/cert.key"))
+            .loadCertChainFromPem(Utils.readResource("/cert.crt"))
+            .loadPrivKeyFromPem(Utils.readResource("/cert.key"))
             .withMaxIdleTimeout(5_000)
             .withMaxUdpPayloadSize(MAX_DATAGRAM_SIZE)
             .withInitialMaxData(10_000_000)
@@ -122,11 +134,15 @@ public class Http3Server {
         final Http3Config h3Config = new Http3ConfigBuilder().build();
         final byte[] connIdSeed = Quiche.newConnectionIdSeed();
         final HashMap<String, Client> clients = new HashMap<>();
+        final SendScheduler<Client> scheduler = new SendScheduler<>(Client::connection);
         final AtomicBoolean running = new AtomicBoolean(true);
 
         System.out.println(String.format("! listening on %s:%d", hostname, port));
 
         while (running.get()) {
+            // DON'T BLOCK FOR LONG IF SOME OUTPUT IS STILL QUEUED
+            socket.setSoTimeout(scheduler.hasPending() ? 1 : 100);
+
             // READING
             while (true) {
                 final DatagramPacket packet = new DatagramPacket(buf, buf.length);
@@ -136,6 +152,7 @@ public class Http3Server {
                     // TIMERS
                     for (Client client : clients.values()) {
                         client.connection().onTimeout();
+                        scheduler.markPending(client);
                     }
                     break;
                 }
@@ -242,6 +259,8 @@ public class Http3Server {
                 if (read <= 0)
                     break;
 
+                scheduler.markPending(client);
+
                 System.out.println("> conn.recv " + read + " bytes");
                 System.out.println("> conn.established " + conn.isEstablished());
 
@@ -297,30 +316,21 @@ public class Http3Server {
             }
 
             // WRITES
-            int len = 0;
-            for (Client client : clients.values()) {
-                final Connection conn = client.connection();
-
-                while (true) {
-                    len = conn.send(out);
-                    if (len < 0 && len != Quiche.ErrorCode.DONE) {
-                        System.out.println("! conn.send failed " + len);
-                        break;
-                    }
-                    if (len <= 0)
-                        break;
-                    System.out.println("> conn.send " + len + " bytes");
-                    final DatagramPacket packet = new DatagramPacket(out, len, client.sender());
-                    socket.send(packet);
-                }
-            }
+            scheduler.flush(out, (client, packetBuf, len) -> {
+                System.out.println("> conn.send " + len + " bytes");
+                socket.send(new DatagramPacket(packetBuf, len, client.sender()));
+            });
 
             // CLEANUP CLOSED CONNS
-            for (String connId : clients.keySet()) {
-                if (clients.get(connId).connection().isClosed()) {
-                    System.out.println("> cleaning up " + connId);
-
-                    clients.remove(connId);
+            final Iterator<Map.Entry<String, Client>> it = clients.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<String, Client> entry = it.next();
+                if (entry.getValue().connection().isClosed()) {
+                    System.out.println("> cleaning up " + entry.getKey());
+
+                    it.remove();
+                    scheduler.remove(entry.getValue());
+                    entry.getValue().free();
 
                     System.out.println("! # of clients: " + clients.size());
                 }
@@ -0,0 +1,169 @@
+package io.quiche4j.examples;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.quiche4j.Config;
+import io.quiche4j.ConfigBuilder;
+import io.quiche4j.Quiche;
+import io.quiche4j.Utils;
+import io.quiche4j.http3.Http3;
+import io.quiche4j.http3.Http3Config;
+import io.quiche4j.http3.Http3ConfigBuilder;
+import io.quiche4j.http3.Http3Header;
+import io.quiche4j.netty.Http3BlockingHandler;
+import io.quiche4j.netty.Http3ClientCodec;
+import io.quiche4j.netty.Http3DataFrame;
+import io.quiche4j.netty.Http3HeadersFrame;
+import io.quiche4j.netty.Http3ServerCodec;
+
+/**
+ * Runs an HTTP/3 server and a client in the same process over loopback and
+ * checks a single request goes through. Exits with a non-zero status on
+ * failure.
+ *
+ * <p>Used as a smoke test of the native image built with {@code -Pnative},
+ * it touches every JNI upcall and the library extraction from the JAR.
+ */
+public class Http3Smoke {
+
+    private static final int MAX_DATAGRAM_SIZE = 1350;
+    private static final String BODY = "Hello from Quiche4j!";
+
+    public static void main(String[] args) throws Exception {
+        final Config serverConfig = new ConfigBuilder(Quiche.PROTOCOL_VERSION)
+            .withApplicationProtos(Http3.APPLICATION_PROTOCOL)
+            .withVerifyPeer(false)
+            .loadCertChainFromPem(Utils.readResource("/cert.crt"))
+            .loadPrivKeyFromPem(Utils.readResource("/cert.key"))
+            .withMaxIdleTimeout(5_000)
+            .withMaxUdpPayloadSize(MAX_DATAGRAM_SIZE)
+            .withInitialMaxData(1_000_000)
+            .withInitialMaxStreamDataBidiLocal(100_000)
+            .withInitialMaxStreamDataBidiRemote(100_000)
+            .withInitialMaxStreamDataUni(100_000)
+            .withInitialMaxStreamsBidi(10)
+            .withInitialMaxStreamsUni(10)
+            .withDisableActiveMigration(true)
+            .build();
+        final Config clientConfig = new ConfigBuilder(Quiche.PROTOCOL_VERSION)
+            .withApplicationProtos(Http3.APPLICATION_PROTOCOL)
+            .withVerifyPeer(false)
+            .withMaxIdleTimeout(5_000)
+            .withMaxUdpPayloadSize(MAX_DATAGRAM_SIZE)
+            .withInitialMaxData(1_000_000)
+            .withInitialMaxStreamDataBidiLocal(100_000)
+            .withInitialMaxStreamDataBidiRemote(100_000)
+            .withInitialMaxStreamDataUni(100_000)
+            .withInitialMaxStreamsBidi(10)
+            .withInitialMaxStreamsUni(10)
+            .withDisableActiveMigration(true)
+            .build();
+        final Http3Config h3Config = new Http3ConfigBuilder().build();
+
+        final Http3BlockingHandler handler = new Http3BlockingHandler(exchange -> {
+            final byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+            final List<Http3Header> headers = new ArrayList<>();
+            headers.add(new Http3Header(":status", "200"));
+            headers.add(new Http3Header("content-length", Integer.toString(body.length)));
+            exchange.sendResponseHeaders(headers, false);
+            try (OutputStream out = exchange.responseBody()) {
+                out.write(body);
+            }
+        });
+
+        final EventLoopGroup group = new NioEventLoopGroup(2);
+        try {
+            final Channel server = new Bootstrap()
+                .group(group)
+                .channel(NioDatagramChannel.class)
+                .handler(new Http3ServerCodec(serverConfig, h3Config, handler))
+                .bind(new InetSocketAddress("127.0.0.1", 0))
+                .sync()
+                .channel();
+            final InetSocketAddress remote = (InetSocketAddress) server.localAddress();
+
+            final Http3ClientCodec codec = new Http3ClientCodec(clientConfig, h3Config, remote, "localhost");
+            new Bootstrap()
+                .group(group)
+                .channel(NioDatagramChannel.class)
+                .handler(codec)
+                .bind(new InetSocketAddress("127.0.0.1", 0))
+                .sync();
+            codec.handshakeFuture().get(5, TimeUnit.SECONDS);
+
+            final List<Http3Header> request = new ArrayList<>();
+            request.add(new Http3Header(":method", "GET"));
+            request.add(new Http3Header(":scheme", "https"));
+            request.add(new Http3Header(":authority", "localhost"));
+            request.add(new Http3Header(":path", "/"));
+            final ResponseCollector response = new ResponseCollector();
+            codec.newRequest(request, true, response).sync();
+
+            final String result = response.future.get(5, TimeUnit.SECONDS);
+            if (!(response.status + " " + result).equals("200 " + BODY)) {
+                System.err.println("! unexpected response: " + response.status + " " + result);
+                System.exit(1);
+            }
+            System.out.println("! ok");
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    private static final class ResponseCollector extends ChannelInboundHandlerAdapter {
+
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        final StringBuilder body = new StringBuilder();
+        String status;
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            try {
+                if (msg instanceof Http3HeadersFrame) {
+                    final Http3HeadersFrame frame = (Http3HeadersFrame) msg;
+                    for (Http3Header header : frame.headers()) {
+                        if (":status".equals(header.name()))
+                            status = header.value();
+                    }
+                    if (frame.isEndStream())
+                        future.complete(body.toString());
+                } else if (msg instanceof Http3DataFrame) {
+                    final Http3DataFrame frame = (Http3DataFrame) msg;
+                    final ByteBuf content = frame.content();
+                    body.append(content.toString(StandardCharsets.UTF_8));
+                    if (frame.isEndStream())
+                        future.complete(body.toString());
+                }
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            future.complete(body.toString());
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            future.completeExceptionally(cause);
+            ctx.close();
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package io.quiche4j.examples;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.quiche4j.Quiche;
+import io.quiche4j.Utils;
+
+/**
+ * Checks that Version Negotiation and Retry packets written in Java
+ * ({@link Quiche#negotiateVersion(byte[], byte[], ByteBuffer)} and
+ * {@link Quiche#retry(byte[], byte[], byte[], byte[], int, ByteBuffer)}) are
+ * the same as the ones written by quiche, for random connection IDs and
+ * tokens and every supported version. Exits with a non-zero status on
+ * mismatch.
+ *
+ * <p>The unused bits of the first byte of a Version Negotiation packet are
+ * random, so they are not compared.
+ */
+public class StatelessPacketsCheck {
+
+    private static final int MAX_DATAGRAM_SIZE = 1350;
+    private static final int ROUNDS = 1_000;
+
+    private static final int[] VERSIONS = { Quiche.PROTOCOL_VERSION_DRAFT27,
+            Quiche.PROTOCOL_VERSION_DRAFT28, Quiche.PROTOCOL_VERSION_DRAFT29 };
+
+    public static void main(String[] args) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final byte[] expected = new byte[MAX_DATAGRAM_SIZE];
+        final ByteBuffer out = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            final byte[] scid = randomBytes(random.nextInt(Quiche.MAX_CONN_ID_LEN + 1));
+            final byte[] dcid = randomBytes(random.nextInt(Quiche.MAX_CONN_ID_LEN + 1));
+
+            final int nativeLen = Quiche.negotiateVersion(scid, dcid, expected);
+            out.clear();
+            final int javaLen = Quiche.negotiateVersion(scid, dcid, out);
+            final byte[] actual = written(out, javaLen);
+            if (0 < nativeLen && 0 < javaLen) {
+                expected[0] &= (byte) 0x80;
+                actual[0] &= (byte) 0x80;
+            }
+            check("version negotiation", nativeLen, expected, javaLen, actual);
+
+            final byte[] newScid = randomBytes(Quiche.MAX_CONN_ID_LEN);
+            final byte[] token = randomBytes(random.nextInt(256));
+            for (int version : VERSIONS) {
+                final int nativeRetryLen = Quiche.retry(scid, dcid, newScid, token, version, expected);
+                out.clear();
+                final int javaRetryLen = Quiche.retry(scid, dcid, newScid, token, version, out);
+                check("retry " + Integer.toHexString(version), nativeRetryLen, expected, javaRetryLen,
+                    written(out, javaRetryLen));
+            }
+        }
+        System.out.println("! ok");
+    }
+
+    private static void check(String packet, int expectedLen, byte[] expected, int actualLen, byte[] actual) {
+        if (expectedLen != actualLen) {
+            System.err.println("! " + packet + ": length " + actualLen + ", expected " + expectedLen);
+            System.exit(1);
+        }
+        if (0 < expectedLen && !Arrays.equals(Arrays.copyOf(expected, expectedLen), actual)) {
+            System.err.println("! " + packet + ": " + Utils.asHex(actual) + ", expected "
+                + Utils.asHex(Arrays.copyOf(expected, expectedLen)));
+            System.exit(1);
+        }
+    }
+
+    private static byte[] written(ByteBuffer out, int len) {
+        final byte[] bytes = new byte[Math.max(0, len)];
+        out.flip();
+        out.get(bytes, 0, Math.min(bytes.length, out.remaining()));
+        return bytes;
+    }
+
+    private static byte[] randomBytes(int len) {
+        final byte[] bytes = new byte[len];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        return bytes;
+    }
+
+}
@@ -1,19 +1,185 @@
 extern crate jni;
 
 use env_logger::{Builder, Target};
-use jni::objects::{JClass, JList, JString, JValue, ReleaseMode};
-use jni::sys::{jboolean, jbyteArray, jint, jlong, jobject, jobjectArray};
+use jni::objects::{JByteBuffer, JClass, JList, JString, JValue};
+use jni::signature::{JavaType, Primitive};
+use jni::sys::{jboolean, jbyteArray, jint, jintArray, jlong, jobject, jobjectArray};
 use jni::JNIEnv;
 use quiche::{h3, Config, Connection, Error, Header, StreamIter, Type};
 use std::pin::Pin;
+use std::sync::{Mutex, MutexGuard};
 use std::slice;
 
 type JNIResult<T> = Result<T, jni::errors::Error>;
 
 static ARRAY_LIST_CLASS: &str = "java/util/ArrayList";
 static HTTP3_HEADER_CLASS: &str = "io/quiche4j/http3/Http3Header";
+static HTTP3_EVENT_LISTENER_CLASS: &str = "io/quiche4j/http3/Http3EventListener";
 static LOG_FILTER_ENV: &str = "QUICHE4J_JNI_LOG";
 
+/// Native memory accounting.
+///
+/// Every allocation made by Rust code (quiche itself and this library) goes
+/// through `CountingAllocator`, which keeps process-wide totals along with a
+/// per-thread running balance. The balance is used to attribute memory to
+/// connections: each JNI call on a connection opens a `Scope` and whatever
+/// the call allocates (or frees) is added to the connection's `Account`.
+/// Memory allocated by BoringSSL through `malloc` is not visible here.
+mod memory {
+    use std::alloc::{GlobalAlloc, Layout, System};
+    use std::cell::Cell;
+    use std::sync::atomic::{AtomicIsize, AtomicUsize, Ordering};
+
+    pub struct CountingAllocator;
+
+    static ALLOCATED: AtomicUsize = AtomicUsize::new(0);
+    static PEAK: AtomicUsize = AtomicUsize::new(0);
+
+    thread_local! {
+        static THREAD_BALANCE: Cell<isize> = Cell::new(0);
+    }
+
+    #[inline]
+    fn on_alloc(size: usize) {
+        let total = ALLOCATED.fetch_add(size, Ordering::Relaxed) + size;
+        // the load keeps the common case free of a read-modify-write,
+        // fetch_max doesn't lose a higher peak stored concurrently
+        if total > PEAK.load(Ordering::Relaxed) {
+            PEAK.fetch_max(total, Ordering::Relaxed);
+        }
+        // fails only while the thread is being torn down
+        let _ = THREAD_BALANCE.try_with(|b| b.set(b.get() + size as isize));
+    }
+
+    #[inline]
+    fn on_dealloc(size: usize) {
+        ALLOCATED.fetch_sub(size, Ordering::Relaxed);
+        let _ = THREAD_BALANCE.try_with(|b| b.set(b.get() - size as isize));
+    }
+
+    unsafe impl GlobalAlloc for CountingAllocator {
+        unsafe fn alloc(&self, layout: Layout) -> *mut u8 {
+            let ptr = System.alloc(layout);
+            if !ptr.is_null() {
+                on_alloc(layout.size());
+            }
+            ptr
+        }
+
+        unsafe fn alloc_zeroed(&self, layout: Layout) -> *mut u8 {
+            let ptr = System.alloc_zeroed(layout);
+            if !ptr.is_null() {
+                on_alloc(layout.size());
+            }
+            ptr
+        }
+
+        unsafe fn dealloc(&self, ptr: *mut u8, layout: Layout) {
+            System.dealloc(ptr, layout);
+            on_dealloc(layout.size());
+        }
+
+        unsafe fn realloc(&self, ptr: *mut u8, layout: Layout, new_size: usize) -> *mut u8 {
+            let new_ptr = System.realloc(ptr, layout, new_size);
+            if !new_ptr.is_null() {
+                on_dealloc(layout.size());
+                on_alloc(new_size);
+            }
+            new_ptr
+        }
+    }
+
+    pub fn allocated() -> usize {
+        ALLOCATED.load(Ordering::Relaxed)
+    }
+
+    pub fn peak() -> usize {
+        PEAK.load(Ordering::Relaxed)
+    }
+
+    fn thread_balance() -> isize {
+        THREAD_BALANCE.try_with(|b| b.get()).unwrap_or(0)
+    }
+
+    /// Number of bytes attributed to a single connection.
+    pub struct Account {
+        bytes: AtomicIsize,
+    }
+
+    impl Account {
+        pub fn new(bytes: isize) -> Account {
+            Account {
+                bytes: AtomicIsize::new(bytes),
+            }
+        }
+
+        pub fn bytes(&self) -> usize {
+            // frees attributed to a different connection could drive it
+            // slightly negative
+            self.bytes.load(Ordering::Relaxed).max(0) as usize
+        }
+    }
+
+    /// Measures the thread's balance while alive, the difference is added
+    /// to the account on drop.
+    pub struct Scope<'a> {
+        account: &'a Account,
+        start: isize,
+    }
+
+    impl<'a> Scope<'a> {
+        pub fn enter(account: &'a Account) -> Scope<'a> {
+            Scope {
+                account,
+                start: thread_balance(),
+            }
+        }
+    }
+
+    impl<'a> Drop for Scope<'a> {
+        fn drop(&mut self) {
+            let delta = thread_balance() - self.start;
+            if delta != 0 {
+                self.account.bytes.fetch_add(delta, Ordering::Relaxed);
+            }
+        }
+    }
+
+    /// Measures what `f` allocates on the current thread.
+    pub fn measure<T, F: FnOnce() -> T>(f: F) -> (T, isize) {
+        let start = thread_balance();
+        let result = f();
+        (result, thread_balance() - start)
+    }
+}
+
+#[global_allocator]
+static GLOBAL: memory::CountingAllocator = memory::CountingAllocator;
+
+/// Locks the config behind `config_ptr`.
+///
+/// A built config is shared by connections created on any number of threads
+/// (so is its TLS context), while `quiche::accept` and `quiche::connect` take
+/// it by mutable reference. The lock is only held for the duration of a call.
+fn config_lock<'a>(config_ptr: jlong) -> MutexGuard<'a, Config> {
+    let config = unsafe { &*(config_ptr as *const Mutex<Config>) };
+    // a panic in quiche doesn't leave the config in a broken state
+    config.lock().unwrap_or_else(|e| e.into_inner())
+}
+
+/// A connection as seen from Java: quiche connection plus its memory account.
+struct ConnHandle {
+    conn: Box<Connection>,
+    account: memory::Account,
+}
+
+fn new_conn_handle(conn: Box<Connection>, bytes: isize) -> jlong {
+    Box::into_raw(Box::new(ConnHandle {
+        conn,
+        account: memory::Account::new(bytes),
+    })) as jlong
+}
+
 fn h3_error_code(error: h3::Error) -> i32 {
     match error {
         h3::Error::Done => -1,
@@ -29,6 +195,9 @@ fn h3_error_code(error: h3::Error) -> i32 {
         h3::Error::QpackDecompressionFailed => -11,
         h3::Error::TransportError { .. } => -12,
         h3::Error::StreamBlocked => -13,
+        // errors added by newer quiche versions are not exposed yet
+        #[allow(unreachable_patterns)]
+        _ => -3,
     }
 }
 
@@ -48,7 +217,20 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1new(
     version: jint,
 ) -> jlong {
     let config = Config::new(version as u32).unwrap();
-    Box::into_raw(Box::new(config)) as jlong
+    Box::into_raw(Box::new(Mutex::new(config))) as jlong
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1free(
+    _env: JNIEnv,
+    _class: JClass,
+    config_ptr: jlong,
+) {
+    if config_ptr == 0 {
+        return;
+    }
+    unsafe { Box::from_raw(config_ptr as *mut Mutex<Config>) };
 }
 
 #[no_mangle]
@@ -58,10 +240,13 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1load_1cert_1chain
     _class: JClass,
     config_ptr: jlong,
     path: JString,
-) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+) -> jint {
+    let mut config = config_lock(config_ptr);
     let path_str: String = env.get_string(path).unwrap().into();
-    config.load_cert_chain_from_pem_file(&path_str).unwrap();
+    match config.load_cert_chain_from_pem_file(&path_str) {
+        Ok(_) => 0 as jint,
+        Err(e) => e as jint,
+    }
 }
 
 #[no_mangle]
@@ -71,10 +256,13 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1load_1priv_1key_1
     _class: JClass,
     config_ptr: jlong,
     path: JString,
-) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+) -> jint {
+    let mut config = config_lock(config_ptr);
     let path_str: String = env.get_string(path).unwrap().into();
-    config.load_priv_key_from_pem_file(&path_str).unwrap();
+    match config.load_priv_key_from_pem_file(&path_str) {
+        Ok(_) => 0 as jint,
+        Err(e) => e as jint,
+    }
 }
 
 #[no_mangle]
@@ -85,7 +273,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1verify_1peer(
     config_ptr: jlong,
     v: jboolean,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.verify_peer(v != 0);
 }
 
@@ -97,7 +285,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1grease(
     config_ptr: jlong,
     v: jboolean,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.grease(v != 0);
 }
 
@@ -108,7 +296,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1log_1keys(
     _class: JClass,
     config_ptr: jlong,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.log_keys();
 }
 
@@ -119,7 +307,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1enable_1early_1da
     _class: JClass,
     config_ptr: jlong,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.enable_early_data();
 }
 
@@ -131,7 +319,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1application_
     config_ptr: jlong,
     protos: jbyteArray,
 ) -> jint {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     let protos_bytes: Vec<u8> = env.convert_byte_array(protos).unwrap();
     match config.set_application_protos(&protos_bytes[..]) {
         Ok(_) => 0 as jint,
@@ -147,7 +335,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1max_1idle_1t
     config_ptr: jlong,
     v: jlong,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.set_max_idle_timeout(v as u64);
 }
 
@@ -159,7 +347,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1max_1udp_1pa
     config_ptr: jlong,
     v: jlong,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.set_max_udp_payload_size(v as u64);
 }
 
@@ -171,7 +359,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1initial_1max
     config_ptr: jlong,
     v: jlong,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.set_initial_max_data(v as u64);
 }
 
@@ -183,7 +371,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1initial_1max
     config_ptr: jlong,
     v: jlong,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.set_initial_max_stream_data_bidi_local(v as u64);
 }
 
@@ -195,7 +383,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1initial_1max
     config_ptr: jlong,
     v: jlong,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.set_initial_max_stream_data_bidi_remote(v as u64);
 }
 
@@ -207,7 +395,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1initial_1max
     config_ptr: jlong,
     v: jlong,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.set_initial_max_stream_data_uni(v as u64);
 }
 
@@ -219,7 +407,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1initial_1max
     config_ptr: jlong,
     v: jlong,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.set_initial_max_streams_bidi(v as u64);
 }
 
@@ -231,7 +419,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1initial_1max
     config_ptr: jlong,
     v: jlong,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.set_initial_max_streams_uni(v as u64);
 }
 
@@ -243,7 +431,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1ack_1delay_1
     config_ptr: jlong,
     v: jlong,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.set_ack_delay_exponent(v as u64);
 }
 
@@ -255,7 +443,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1max_1ack_1de
     config_ptr: jlong,
     v: jlong,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.set_max_ack_delay(v as u64);
 }
 
@@ -267,10 +455,24 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1disable_1act
     config_ptr: jlong,
     v: jboolean,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.set_disable_active_migration(v != 0);
 }
 
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1enable_1dgram(
+    _env: JNIEnv,
+    _class: JClass,
+    config_ptr: jlong,
+    enabled: jboolean,
+    recv_queue_len: jlong,
+    send_queue_len: jlong,
+) {
+    let mut config = config_lock(config_ptr);
+    config.enable_dgram(enabled != 0, recv_queue_len as usize, send_queue_len as usize);
+}
+
 #[no_mangle]
 #[warn(unused_variables)]
 pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1cc_1algorithm_1name(
@@ -279,7 +481,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1set_1cc_1algorith
     config_ptr: jlong,
     name: JString,
 ) -> jint {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     let name_str: String = env.get_string(name).unwrap().into();
     match config.set_cc_algorithm_name(&name_str) {
         Ok(_) => 0 as jint,
@@ -295,7 +497,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1config_1enable_1hystart(
     config_ptr: jlong,
     v: jboolean,
 ) {
-    let config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     config.enable_hystart(v != 0);
 }
 
@@ -308,7 +510,7 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1accept(
     odcid_java: jbyteArray,
     config_ptr: jlong,
 ) -> jlong {
-    let mut config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     let scid: Vec<u8> = env.convert_byte_array(scid_java).unwrap();
     let odcid: Option<Vec<u8>> = if odcid_java.is_null() {
         None
@@ -319,8 +521,11 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1accept(
             _ => Some(buf),
         }
     };
-    match quiche::accept(&scid[..], odcid.as_ref().map(|id| &id[..]), &mut config) {
-        Ok(conn) => Box::into_raw(Pin::into_inner(conn)) as jlong,
+    let (result, bytes) = memory::measure(|| {
+        quiche::accept(&scid[..], odcid.as_ref().map(|id| &id[..]), &mut config)
+    });
+    match result {
+        Ok(conn) => new_conn_handle(Pin::into_inner(conn), bytes),
         Err(e) => e as jlong,
     }
 }
@@ -339,10 +544,13 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1connect(
     } else {
         Some(convert_to_string(&env, domain).unwrap())
     };
-    let mut config = unsafe { &mut *(config_ptr as *mut Config) };
+    let mut config = config_lock(config_ptr);
     let scid: Vec<u8> = env.convert_byte_array(conn_id).unwrap();
-    match quiche::connect(domain.as_ref().map(String::as_str), &scid, &mut config) {
-        Ok(conn) => Box::into_raw(Pin::into_inner(conn)) as jlong,
+    let (result, bytes) = memory::measure(|| {
+        quiche::connect(domain.as_ref().map(String::as_str), &scid, &mut config)
+    });
+    match result {
+        Ok(conn) => new_conn_handle(Pin::into_inner(conn), bytes),
         Err(e) => e as jlong,
     }
 }
@@ -358,18 +566,15 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1negotiate_1version(
 ) -> jint {
     let scid = env.convert_byte_array(java_scid).unwrap();
     let dcid = env.convert_byte_array(java_dcid).unwrap();
-    let buf_len = env.get_array_length(java_buf).unwrap() as usize;
-    let (ptr, _is_copy) = env.get_byte_array_elements(java_buf).unwrap();
-    let buf: &mut [u8] = unsafe { slice::from_raw_parts_mut(ptr as *mut u8, buf_len) };
-    let len = quiche::negotiate_version(&scid[..], &dcid[..], buf);
-    env.release_byte_array_elements(
-        java_buf,
-        unsafe { ptr.as_mut().unwrap() },
-        ReleaseMode::CopyBack,
-    )
-    .unwrap();
-    match len {
-        Ok(v) => v as jint,
+    let mut buf = match CriticalBytes::get(&env, java_buf) {
+        Some(buf) => buf,
+        None => return Error::BufferTooShort as jint,
+    };
+    match quiche::negotiate_version(&scid[..], &dcid[..], buf.as_mut_slice()) {
+        Ok(v) => {
+            buf.commit();
+            v as jint
+        }
         Err(e) => e as jint,
     }
 }
@@ -400,25 +605,23 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1retry(
     let dcid = env.convert_byte_array(java_dcid).unwrap();
     let new_scid = env.convert_byte_array(java_new_scid).unwrap();
     let token = env.convert_byte_array(java_token).unwrap();
-    let buf_len = env.get_array_length(java_buf).unwrap() as usize;
-    let (ptr, _is_copy) = env.get_byte_array_elements(java_buf).unwrap();
-    let buf: &mut [u8] = unsafe { slice::from_raw_parts_mut(ptr as *mut u8, buf_len) };
+    let mut buf = match CriticalBytes::get(&env, java_buf) {
+        Some(buf) => buf,
+        None => return Error::BufferTooShort as jint,
+    };
     let len = quiche::retry(
         &scid[..],
         &dcid[..],
         &new_scid[..],
         &token[..],
         version as u32,
-        buf,
+        buf.as_mut_slice(),
     );
-    env.release_byte_array_elements(
-        java_buf,
-        unsafe { ptr.as_mut().unwrap() },
-        ReleaseMode::CopyBack,
-    )
-    .unwrap();
     match len {
-        Ok(v) => v as jint,
+        Ok(v) => {
+            buf.commit();
+            v as jint
+        }
         Err(e) => e as jint,
     }
 }
@@ -431,10 +634,17 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1recv(
     ptr: jlong,
     java_buf: jbyteArray,
 ) -> jint {
-    let conn = unsafe { &mut *(ptr as *mut Connection) };
-    // internally executes GetByteArrayRegion
-    let mut buf = env.convert_byte_array(java_buf).unwrap();
-    match conn.recv(&mut buf) {
+    let handle = unsafe { &mut *(ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    let mut buf = match CriticalBytes::get(&env, java_buf) {
+        Some(buf) => buf,
+        None => return Error::BufferTooShort as jint,
+    };
+    // packets are decrypted in place, the change is committed so the array
+    // ends up the same whether or not the VM hands out a copy
+    buf.commit();
+    match conn.recv(buf.as_mut_slice()) {
         Ok(v) => v as jint,
         Err(e) => e as jint,
     }
@@ -448,18 +658,179 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1send(
     ptr: jlong,
     java_buf: jbyteArray,
 ) -> jint {
-    let conn = unsafe { &mut *(ptr as *mut Connection) };
-    let buf_len = env.get_array_length(java_buf).unwrap() as usize;
-    let (ptr, _is_copy) = env.get_byte_array_elements(java_buf).unwrap();
-    let buf: &mut [u8] = unsafe { slice::from_raw_parts_mut(ptr as *mut u8, buf_len) };
-    let sent_len = conn.send(buf);
-    env.release_byte_array_elements(
-        java_buf,
-        unsafe { ptr.as_mut().unwrap() },
-        ReleaseMode::CopyBack,
-    )
-    .unwrap();
-    match sent_len {
+    let handle = unsafe { &mut *(ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    let mut buf = match CriticalBytes::get(&env, java_buf) {
+        Some(buf) => buf,
+        None => return Error::BufferTooShort as jint,
+    };
+    match conn.send(buf.as_mut_slice()) {
+        Ok(v) => {
+            buf.commit();
+            v as jint
+        }
+        Err(e) => e as jint,
+    }
+}
+
+/// Elements of a Java `byte[]` accessed with `GetPrimitiveArrayCritical`.
+///
+/// HotSpot hands out the array in place (no copy, and with region pinning
+/// no GC lockout either), so the data path doesn't copy between the heap
+/// and native memory. The array is released on drop: changes are committed
+/// only after `commit` was called, read-only inputs and failed writes are
+/// released with `JNI_ABORT`. No other JNI function may be called while
+/// the array is held, so it has to be dropped before calling back into Java.
+struct CriticalBytes {
+    env: *mut jni::sys::JNIEnv,
+    array: jbyteArray,
+    ptr: *mut u8,
+    len: usize,
+    mode: jint,
+}
+
+impl CriticalBytes {
+    fn get(env: &JNIEnv, array: jbyteArray) -> Option<CriticalBytes> {
+        if array.is_null() {
+            return None;
+        }
+        let raw = env.get_native_interface();
+        unsafe {
+            let len = ((**raw).GetArrayLength?)(raw, array);
+            let ptr = ((**raw).GetPrimitiveArrayCritical?)(raw, array, std::ptr::null_mut());
+            if ptr.is_null() {
+                return None;
+            }
+            Some(CriticalBytes {
+                env: raw,
+                array,
+                ptr: ptr as *mut u8,
+                len: len.max(0) as usize,
+                mode: jni::sys::JNI_ABORT,
+            })
+        }
+    }
+
+    fn as_mut_slice(&mut self) -> &mut [u8] {
+        if 0 == self.len {
+            return &mut [];
+        }
+        unsafe { slice::from_raw_parts_mut(self.ptr, self.len) }
+    }
+
+    /// Copies changes back to the Java array on release, which is only
+    /// needed when the VM handed out a copy.
+    fn commit(&mut self) {
+        self.mode = 0;
+    }
+}
+
+impl Drop for CriticalBytes {
+    fn drop(&mut self) {
+        unsafe {
+            if let Some(release) = (**self.env).ReleasePrimitiveArrayCritical {
+                release(self.env, self.array, self.ptr as *mut std::ffi::c_void, self.mode);
+            }
+        }
+    }
+}
+
+// Resolves `len` bytes of a direct ByteBuffer starting at `offset`.
+fn direct_buffer_slice<'a>(env: &JNIEnv, buf: jobject, offset: jint, len: jint) -> Option<&'a mut [u8]> {
+    if offset < 0 || len < 0 {
+        return None;
+    }
+    let whole = env.get_direct_buffer_address(JByteBuffer::from(buf)).ok()?;
+    let (start, len) = (offset as usize, len as usize);
+    if whole.len() < start + len {
+        return None;
+    }
+    Some(unsafe { slice::from_raw_parts_mut(whole.as_mut_ptr().add(start), len) })
+}
+
+fn address_slice<'a>(addr: jlong, len: jint) -> &'a mut [u8] {
+    if len <= 0 {
+        return &mut [];
+    }
+    unsafe { slice::from_raw_parts_mut(addr as *mut u8, len as usize) }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1recv_1buffer(
+    env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+    java_buf: jobject,
+    offset: jint,
+    len: jint,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match direct_buffer_slice(&env, java_buf, offset, len) {
+        Some(buf) => match conn.recv(buf) {
+            Ok(v) => v as jint,
+            Err(e) => e as jint,
+        },
+        None => Error::BufferTooShort as jint,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1send_1buffer(
+    env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+    java_buf: jobject,
+    offset: jint,
+    len: jint,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match direct_buffer_slice(&env, java_buf, offset, len) {
+        Some(buf) => match conn.send(buf) {
+            Ok(v) => v as jint,
+            Err(e) => e as jint,
+        },
+        None => Error::BufferTooShort as jint,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1recv_1address(
+    _env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+    buf_addr: jlong,
+    len: jint,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match conn.recv(address_slice(buf_addr, len)) {
+        Ok(v) => v as jint,
+        Err(e) => e as jint,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1send_1address(
+    _env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+    buf_addr: jlong,
+    len: jint,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match conn.send(address_slice(buf_addr, len)) {
         Ok(v) => v as jint,
         Err(e) => e as jint,
     }
@@ -475,7 +846,9 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1close(
     error: jlong,
     reason: jbyteArray,
 ) -> jint {
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
     let reason_bytes = env.convert_byte_array(reason).unwrap();
     match conn.close(app != 0, error as u64, &reason_bytes[..]) {
         Ok(_) => 0 as jint,
@@ -490,7 +863,9 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1timeout_1as_1nanos(
     _class: JClass,
     conn_ptr: jlong,
 ) -> jlong {
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
     match conn.timeout() {
         Some(timeout) => timeout.as_nanos() as jlong,
         None => std::u64::MAX as jlong,
@@ -504,7 +879,9 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1timeout_1as_1millis
     _class: JClass,
     conn_ptr: jlong,
 ) -> jlong {
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
     match conn.timeout() {
         Some(timeout) => timeout.as_millis() as jlong,
         None => std::u64::MAX as jlong,
@@ -518,7 +895,9 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1on_1timeout(
     _class: JClass,
     conn_ptr: jlong,
 ) {
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
     conn.on_timeout();
 }
 
@@ -529,7 +908,9 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1is_1established(
     _class: JClass,
     conn_ptr: jlong,
 ) -> jboolean {
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
     conn.is_established() as jboolean
 }
 
@@ -540,10 +921,59 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1is_1in_1early_1data
     _class: JClass,
     conn_ptr: jlong,
 ) -> jboolean {
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
     conn.is_in_early_data() as jboolean
 }
 
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1is_1resumed(
+    _env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+) -> jboolean {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    conn.is_resumed() as jboolean
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1session(
+    env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+) -> jbyteArray {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match conn.session().map(|session| session.to_vec()) {
+        Some(session) => env.byte_array_from_slice(&session).unwrap(),
+        None => std::ptr::null_mut(),
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1set_1session(
+    env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+    session_java: jbyteArray,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    let session: Vec<u8> = env.convert_byte_array(session_java).unwrap();
+    match conn.set_session(&session[..]) {
+        Ok(_) => 0 as jint,
+        Err(e) => e as jint,
+    }
+}
+
 #[no_mangle]
 #[warn(unused_variables)]
 pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1is_1closed(
@@ -551,7 +981,9 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1is_1closed(
     _class: JClass,
     conn_ptr: jlong,
 ) -> jboolean {
-    let conn = unsafe { &*(conn_ptr as *mut Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &*handle.conn;
     conn.is_closed() as jboolean
 }
 
@@ -563,7 +995,9 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stats(
     conn_ptr: jlong,
     holder: jobject,
 ) {
-    let conn = unsafe { &*(conn_ptr as *mut Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &*handle.conn;
     let stats = conn.stats();
     env.call_method(
         holder,
@@ -616,7 +1050,10 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1free(
     _class: JClass,
     conn_ptr: jlong,
 ) {
-    unsafe { Box::from_raw(conn_ptr as *mut Connection) };
+    if conn_ptr == 0 {
+        return;
+    }
+    unsafe { Box::from_raw(conn_ptr as *mut ConnHandle) };
 }
 
 #[no_mangle]
@@ -628,12 +1065,19 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stream_1recv(
     stream_id: jlong,
     java_buf: jbyteArray,
 ) -> jint {
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
-    // internally executes GetByteArrayRegion
-    let mut buf = env.convert_byte_array(java_buf).unwrap();
-    match conn.stream_recv(stream_id as u64, &mut buf) {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    let mut buf = match CriticalBytes::get(&env, java_buf) {
+        Some(buf) => buf,
+        None => return Error::BufferTooShort as jint,
+    };
+    match conn.stream_recv(stream_id as u64, buf.as_mut_slice()) {
         // xxx(okachaiev): find a way to convey this information
-        Ok((out_len, _out_fin)) => out_len as i32,
+        Ok((out_len, _out_fin)) => {
+            buf.commit();
+            out_len as i32
+        }
         Err(e) => e as jint,
     }
 }
@@ -649,18 +1093,14 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stream_1send(
     java_buf: jbyteArray,
     fin: jboolean,
 ) -> jint {
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
-    let buf_len = env.get_array_length(java_buf).unwrap() as usize;
-    let (ptr, _is_copy) = env.get_byte_array_elements(java_buf).unwrap();
-    let buf: &mut [u8] = unsafe { slice::from_raw_parts_mut(ptr as *mut u8, buf_len) };
-    let sent_len = conn.stream_send(stream_id as u64, buf, fin != 0);
-    env.release_byte_array_elements(
-        java_buf,
-        unsafe { ptr.as_mut().unwrap() },
-        ReleaseMode::CopyBack,
-    )
-    .unwrap();
-    match sent_len {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    let mut buf = match CriticalBytes::get(&env, java_buf) {
+        Some(buf) => buf,
+        None => return Error::BufferTooShort as jint,
+    };
+    match conn.stream_send(stream_id as u64, buf.as_mut_slice(), fin != 0) {
         Ok(v) => v as jint,
         Err(e) => e as jint,
     }
@@ -668,36 +1108,91 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stream_1send(
 
 #[no_mangle]
 #[warn(unused_variables)]
-pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stream_1shutdown(
-    _env: JNIEnv,
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stream_1recv_1buffer(
+    env: JNIEnv,
     _class: JClass,
     conn_ptr: jlong,
     stream_id: jlong,
-    direction: jint,
-    err: jlong,
-) {
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
-    let dir = match direction {
-        0 => quiche::Shutdown::Read,
-        _ => quiche::Shutdown::Write,
-    };
-    match conn.stream_shutdown(stream_id as u64, dir, err as u64) {
-        Ok(_) => (),
-        Err(Error::Done) => (),
-        Err(e) => panic!(e),
+    java_buf: jobject,
+    offset: jint,
+    len: jint,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match direct_buffer_slice(&env, java_buf, offset, len) {
+        Some(buf) => match conn.stream_recv(stream_id as u64, buf) {
+            Ok((out_len, _out_fin)) => out_len as jint,
+            Err(e) => e as jint,
+        },
+        None => Error::BufferTooShort as jint,
+    }
+}
+
+// Resolves a gather list of direct ByteBuffers, `ranges` holds an
+// (offset, length) pair for each of them.
+fn direct_buffer_slices<'a>(env: &JNIEnv, bufs: jobjectArray, ranges: jintArray) -> Option<Vec<&'a mut [u8]>> {
+    let count = env.get_array_length(bufs).ok()? as usize;
+    let mut bounds = vec![0 as jint; count * 2];
+    env.get_int_array_region(ranges, 0, &mut bounds).ok()?;
+    let mut slices = Vec::with_capacity(count);
+    for i in 0..count {
+        let buf = env.get_object_array_element(bufs, i as jint).ok()?;
+        let slice = direct_buffer_slice(env, buf.into_inner(), bounds[i * 2], bounds[i * 2 + 1]);
+        env.delete_local_ref(buf).ok()?;
+        slices.push(slice?);
+    }
+    Some(slices)
+}
+
+// Writes a gather list with `send` as if it was a single buffer, `fin` goes
+// with the last one. Stops at the first partial write, so data is never
+// written out of order. Returns the total number of bytes written, or the
+// error if nothing was written.
+fn send_gather<E>(slices: &[&mut [u8]], fin: bool, mut send: impl FnMut(&[u8], bool) -> Result<usize, E>) -> Result<usize, E> {
+    if slices.is_empty() {
+        return if fin { send(&[], true) } else { Ok(0) };
+    }
+    let last = slices.len() - 1;
+    let mut total = 0;
+    for (i, buf) in slices.iter().enumerate() {
+        let fin = fin && i == last;
+        if buf.is_empty() && !fin {
+            continue;
+        }
+        match send(buf, fin) {
+            Ok(written) => {
+                total += written;
+                if written < buf.len() {
+                    break;
+                }
+            }
+            Err(e) if 0 == total => return Err(e),
+            Err(_) => break,
+        }
     }
+    Ok(total)
 }
 
 #[no_mangle]
 #[warn(unused_variables)]
-pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stream_1capacity(
-    _env: JNIEnv,
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stream_1send_1buffers(
+    env: JNIEnv,
     _class: JClass,
     conn_ptr: jlong,
     stream_id: jlong,
+    java_bufs: jobjectArray,
+    ranges: jintArray,
+    fin: jboolean,
 ) -> jint {
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
-    match conn.stream_capacity(stream_id as u64) {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    let slices = match direct_buffer_slices(&env, java_bufs, ranges) {
+        Some(slices) => slices,
+        None => return Error::BufferTooShort as jint,
+    };
+    match send_gather(&slices, fin != 0, |buf, fin| conn.stream_send(stream_id as u64, buf, fin)) {
         Ok(v) => v as jint,
         Err(e) => e as jint,
     }
@@ -705,62 +1200,299 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stream_1capacity(
 
 #[no_mangle]
 #[warn(unused_variables)]
-pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stream_1finished(
-    _env: JNIEnv,
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stream_1send_1buffer(
+    env: JNIEnv,
     _class: JClass,
     conn_ptr: jlong,
     stream_id: jlong,
-) -> jboolean {
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
-    conn.stream_finished(stream_id as u64) as jboolean
+    java_buf: jobject,
+    offset: jint,
+    len: jint,
+    fin: jboolean,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match direct_buffer_slice(&env, java_buf, offset, len) {
+        Some(buf) => match conn.stream_send(stream_id as u64, buf, fin != 0) {
+            Ok(v) => v as jint,
+            Err(e) => e as jint,
+        },
+        None => Error::BufferTooShort as jint,
+    }
 }
 
 #[no_mangle]
 #[warn(unused_variables)]
-pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1readable(
-    _env: JNIEnv,
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1dgram_1recv(
+    env: JNIEnv,
     _class: JClass,
     conn_ptr: jlong,
-) -> jlong {
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
-    Box::into_raw(Box::new(conn.readable())) as jlong
+    java_buf: jbyteArray,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    let mut buf = match CriticalBytes::get(&env, java_buf) {
+        Some(buf) => buf,
+        None => return Error::BufferTooShort as jint,
+    };
+    match conn.dgram_recv(buf.as_mut_slice()) {
+        Ok(v) => {
+            buf.commit();
+            v as jint
+        }
+        Err(e) => e as jint,
+    }
 }
 
 #[no_mangle]
 #[warn(unused_variables)]
-pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1writable(
-    _env: JNIEnv,
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1dgram_1send(
+    env: JNIEnv,
     _class: JClass,
     conn_ptr: jlong,
-) -> jlong {
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
-    Box::into_raw(Box::new(conn.writable())) as jlong
+    java_buf: jbyteArray,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    let mut buf = match CriticalBytes::get(&env, java_buf) {
+        Some(buf) => buf,
+        None => return Error::BufferTooShort as jint,
+    };
+    let buf = buf.as_mut_slice();
+    match conn.dgram_send(buf) {
+        Ok(_) => buf.len() as jint,
+        Err(e) => e as jint,
+    }
 }
 
 #[no_mangle]
 #[warn(unused_variables)]
-pub extern "system" fn Java_io_quiche4j_Native_quiche_1stream_1iter_1next(
-    _env: JNIEnv,
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1dgram_1recv_1buffer(
+    env: JNIEnv,
     _class: JClass,
-    stream_iter_ptr: jlong,
-) -> jlong {
-    let stream_iter = unsafe { &mut *(stream_iter_ptr as *mut StreamIter) };
-    match stream_iter.next() {
-        Some(stream_id) => stream_id as jlong,
-        None => Error::Done as jlong,
+    conn_ptr: jlong,
+    java_buf: jobject,
+    offset: jint,
+    len: jint,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match direct_buffer_slice(&env, java_buf, offset, len) {
+        Some(buf) => match conn.dgram_recv(buf) {
+            Ok(v) => v as jint,
+            Err(e) => e as jint,
+        },
+        None => Error::BufferTooShort as jint,
     }
 }
 
 #[no_mangle]
 #[warn(unused_variables)]
-pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1config_1new(
-    _env: JNIEnv,
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1dgram_1send_1buffer(
+    env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+    java_buf: jobject,
+    offset: jint,
+    len: jint,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match direct_buffer_slice(&env, java_buf, offset, len) {
+        Some(buf) => match conn.dgram_send(buf) {
+            Ok(_) => len as jint,
+            Err(e) => e as jint,
+        },
+        None => Error::BufferTooShort as jint,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1dgram_1recv_1address(
+    _env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+    buf_addr: jlong,
+    len: jint,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match conn.dgram_recv(address_slice(buf_addr, len)) {
+        Ok(v) => v as jint,
+        Err(e) => e as jint,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1dgram_1send_1address(
+    _env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+    buf_addr: jlong,
+    len: jint,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match conn.dgram_send(address_slice(buf_addr, len)) {
+        Ok(_) => len as jint,
+        Err(e) => e as jint,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1dgram_1max_1writable_1len(
+    _env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match conn.dgram_max_writable_len() {
+        Some(v) => v as jint,
+        None => Error::Done as jint,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stream_1shutdown(
+    _env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+    stream_id: jlong,
+    direction: jint,
+    err: jlong,
+) {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    let dir = match direction {
+        0 => quiche::Shutdown::Read,
+        _ => quiche::Shutdown::Write,
+    };
+    match conn.stream_shutdown(stream_id as u64, dir, err as u64) {
+        Ok(_) => (),
+        Err(Error::Done) => (),
+        Err(e) => panic!(e),
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stream_1capacity(
+    _env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+    stream_id: jlong,
+) -> jint {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match conn.stream_capacity(stream_id as u64) {
+        Ok(v) => v as jint,
+        Err(e) => e as jint,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1stream_1finished(
+    _env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+    stream_id: jlong,
+) -> jboolean {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    conn.stream_finished(stream_id as u64) as jboolean
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1readable(
+    _env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+) -> jlong {
+    // not accounted, the iterator is freed outside of connection calls
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    Box::into_raw(Box::new(handle.conn.readable())) as jlong
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1writable(
+    _env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+) -> jlong {
+    // not accounted, the iterator is freed outside of connection calls
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    Box::into_raw(Box::new(handle.conn.writable())) as jlong
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1stream_1iter_1next(
+    _env: JNIEnv,
+    _class: JClass,
+    stream_iter_ptr: jlong,
+) -> jlong {
+    let stream_iter = unsafe { &mut *(stream_iter_ptr as *mut StreamIter) };
+    match stream_iter.next() {
+        Some(stream_id) => stream_id as jlong,
+        None => Error::Done as jlong,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1stream_1iter_1free(
+    _env: JNIEnv,
+    _class: JClass,
+    stream_iter_ptr: jlong,
+) {
+    if stream_iter_ptr == 0 {
+        return;
+    }
+    unsafe { Box::from_raw(stream_iter_ptr as *mut StreamIter) };
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1config_1new(
+    _env: JNIEnv,
     _class: JClass,
 ) -> jlong {
     let h3_config = h3::Config::new().unwrap();
     Box::into_raw(Box::new(h3_config)) as jlong
 }
 
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1config_1free(
+    _env: JNIEnv,
+    _class: JClass,
+    h3_config_ptr: jlong,
+) {
+    if h3_config_ptr == 0 {
+        return;
+    }
+    unsafe { Box::from_raw(h3_config_ptr as *mut h3::Config) };
+}
+
 #[no_mangle]
 #[warn(unused_variables)]
 pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1conn_1new_1with_1transport(
@@ -769,7 +1501,9 @@ pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1conn_1new_
     conn_ptr: jlong,
     h3_config_ptr: jlong,
 ) -> jlong {
-    let mut conn = unsafe { &mut *(conn_ptr as *mut Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let mut conn = &mut *handle.conn;
     let h3_config = unsafe { &mut *(h3_config_ptr as *mut h3::Config) };
     let h3_conn = h3::Connection::with_transport(&mut conn, &h3_config).unwrap();
     Box::into_raw(Box::new(h3_conn)) as jlong
@@ -782,6 +1516,9 @@ pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1conn_1free
     _class: JClass,
     h3_conn_ptr: jlong,
 ) {
+    if h3_conn_ptr == 0 {
+        return;
+    }
     unsafe { Box::from_raw(h3_conn_ptr as *mut h3::Connection) };
 }
 
@@ -820,11 +1557,16 @@ pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1send_1requ
     conn_ptr: jlong,
     headers: jobjectArray,
     fin: jboolean,
-) {
+) -> jlong {
     let h3_conn = unsafe { &mut *(h3_ptr as *mut h3::Connection) };
-    let mut conn = unsafe { &mut *(conn_ptr as *mut Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let mut conn = &mut *handle.conn;
     let req = headers_from_java(&env, headers).unwrap();
-    h3_conn.send_request(&mut conn, &req, fin != 0).unwrap();
+    match h3_conn.send_request(&mut conn, &req, fin != 0) {
+        Ok(stream_id) => stream_id as jlong,
+        Err(e) => h3_error_code(e) as jlong,
+    }
 }
 
 #[no_mangle]
@@ -839,7 +1581,9 @@ pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1send_1resp
     fin: jboolean,
 ) -> jint {
     let h3_conn = unsafe { &mut *(h3_ptr as *mut h3::Connection) };
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
     let req = headers_from_java(&env, headers).unwrap();
     match h3_conn.send_response(conn, stream_id as u64, &req, fin != 0) {
         Ok(_) => 0 as jint,
@@ -859,14 +1603,200 @@ pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1send_1body
     fin: jboolean,
 ) -> jlong {
     let h3_conn = unsafe { &mut *(h3_ptr as *mut h3::Connection) };
-    let conn = unsafe { &mut *(conn_ptr as *mut Connection) };
-    let body: Vec<u8> = env.convert_byte_array(java_body).unwrap();
-    match h3_conn.send_body(conn, stream_id as u64, &body[..], fin != 0) {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    let mut body = match CriticalBytes::get(&env, java_body) {
+        Some(body) => body,
+        None => return h3_error_code(h3::Error::BufferTooShort) as jlong,
+    };
+    match h3_conn.send_body(conn, stream_id as u64, body.as_mut_slice(), fin != 0) {
+        Ok(v) => v as jlong,
+        Err(e) => h3_error_code(e) as jlong,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1send_1body_1buffers(
+    env: JNIEnv,
+    _class: JClass,
+    h3_ptr: jlong,
+    conn_ptr: jlong,
+    stream_id: jlong,
+    java_bufs: jobjectArray,
+    ranges: jintArray,
+    fin: jboolean,
+) -> jlong {
+    let h3_conn = unsafe { &mut *(h3_ptr as *mut h3::Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    let slices = match direct_buffer_slices(&env, java_bufs, ranges) {
+        Some(slices) => slices,
+        None => return h3_error_code(h3::Error::BufferTooShort) as jlong,
+    };
+    // every buffer goes out as a DATA frame of its own
+    match send_gather(&slices, fin != 0, |buf, fin| h3_conn.send_body(conn, stream_id as u64, buf, fin)) {
+        Ok(v) => v as jlong,
+        Err(e) => h3_error_code(e) as jlong,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1send_1body_1buffer(
+    env: JNIEnv,
+    _class: JClass,
+    h3_ptr: jlong,
+    conn_ptr: jlong,
+    stream_id: jlong,
+    java_body: jobject,
+    offset: jint,
+    len: jint,
+    fin: jboolean,
+) -> jlong {
+    let h3_conn = unsafe { &mut *(h3_ptr as *mut h3::Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match direct_buffer_slice(&env, java_body, offset, len) {
+        Some(body) => match h3_conn.send_body(conn, stream_id as u64, body, fin != 0) {
+            Ok(v) => v as jlong,
+            Err(e) => h3_error_code(e) as jlong,
+        },
+        None => h3_error_code(h3::Error::BufferTooShort) as jlong,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1send_1body_1address(
+    _env: JNIEnv,
+    _class: JClass,
+    h3_ptr: jlong,
+    conn_ptr: jlong,
+    stream_id: jlong,
+    body_addr: jlong,
+    len: jint,
+    fin: jboolean,
+) -> jlong {
+    let h3_conn = unsafe { &mut *(h3_ptr as *mut h3::Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    match h3_conn.send_body(conn, stream_id as u64, address_slice(body_addr, len), fin != 0) {
+        Ok(v) => v as jlong,
+        Err(e) => h3_error_code(e) as jlong,
+    }
+}
+
+// A response prepared once and replayed on many streams, so neither headers
+// nor body cross JNI again.
+struct CachedResponse {
+    headers: Vec<h3::Header>,
+    body: Vec<u8>,
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1response_1new(
+    env: JNIEnv,
+    _class: JClass,
+    headers: jobjectArray,
+    java_body: jbyteArray,
+) -> jlong {
+    let headers = match headers_from_java(&env, headers) {
+        Ok(headers) => headers,
+        Err(_) => return h3_error_code(h3::Error::InternalError) as jlong,
+    };
+    let body = match env.convert_byte_array(java_body) {
+        Ok(body) => body,
+        Err(_) => return h3_error_code(h3::Error::InternalError) as jlong,
+    };
+    Box::into_raw(Box::new(CachedResponse { headers, body })) as jlong
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1response_1free(
+    _env: JNIEnv,
+    _class: JClass,
+    response_ptr: jlong,
+) {
+    unsafe { Box::from_raw(response_ptr as *mut CachedResponse) };
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1send_1cached_1response(
+    _env: JNIEnv,
+    _class: JClass,
+    h3_ptr: jlong,
+    conn_ptr: jlong,
+    stream_id: jlong,
+    response_ptr: jlong,
+) -> jlong {
+    let h3_conn = unsafe { &mut *(h3_ptr as *mut h3::Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    let response = unsafe { &*(response_ptr as *const CachedResponse) };
+    let empty = response.body.is_empty();
+    if let Err(e) = h3_conn.send_response(conn, stream_id as u64, &response.headers, empty) {
+        return h3_error_code(e) as jlong;
+    }
+    if empty {
+        return 0;
+    }
+    // headers are out, the body might only partially fit
+    match h3_conn.send_body(conn, stream_id as u64, &response.body, true) {
+        Ok(v) => v as jlong,
+        Err(h3::Error::Done) => 0,
+        Err(e) => h3_error_code(e) as jlong,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1send_1cached_1body(
+    _env: JNIEnv,
+    _class: JClass,
+    h3_ptr: jlong,
+    conn_ptr: jlong,
+    stream_id: jlong,
+    response_ptr: jlong,
+    offset: jint,
+) -> jlong {
+    let h3_conn = unsafe { &mut *(h3_ptr as *mut h3::Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let conn = &mut *handle.conn;
+    let response = unsafe { &*(response_ptr as *const CachedResponse) };
+    if offset < 0 || response.body.len() < offset as usize {
+        return h3_error_code(h3::Error::BufferTooShort) as jlong;
+    }
+    match h3_conn.send_body(conn, stream_id as u64, &response.body[offset as usize..], true) {
         Ok(v) => v as jlong,
         Err(e) => h3_error_code(e) as jlong,
     }
 }
 
+// The method is resolved on the interface rather than on the class of the
+// listener, so that user implementations don't have to be registered for JNI
+// access when compiled with GraalVM native-image.
+fn call_listener(
+    env: &JNIEnv,
+    listener: jobject,
+    name: &str,
+    sig: &str,
+    args: &[JValue],
+) -> JNIResult<()> {
+    let method_id = env.get_method_id(HTTP3_EVENT_LISTENER_CLASS, name, sig)?;
+    env.call_method_unchecked(listener, method_id, JavaType::Primitive(Primitive::Void), args)?;
+    Ok(())
+}
+
 fn call_on_headers(
     env: &JNIEnv,
     listener: jobject,
@@ -889,7 +1819,8 @@ fn call_on_headers(
             .unwrap();
         java_headers.add(elem).unwrap();
     });
-    env.call_method(
+    call_listener(
+        env,
         listener,
         "onHeaders",
         "(JLjava/util/List;Z)V",
@@ -903,7 +1834,8 @@ fn call_on_headers(
 }
 
 fn call_on_data(env: &JNIEnv, handler: jobject, stream_id: u64) -> JNIResult<()> {
-    env.call_method(
+    call_listener(
+        env,
         handler,
         "onData",
         "(J)V",
@@ -913,7 +1845,8 @@ fn call_on_data(env: &JNIEnv, handler: jobject, stream_id: u64) -> JNIResult<()>
 }
 
 fn call_on_finished(env: &JNIEnv, handler: jobject, stream_id: u64) -> JNIResult<()> {
-    env.call_method(
+    call_listener(
+        env,
         handler,
         "onFinished",
         "(J)V",
@@ -932,7 +1865,9 @@ pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1conn_1poll
     listener: jobject,
 ) -> jlong {
     let h3_conn = unsafe { &mut *(h3_conn_ptr as *mut h3::Connection) };
-    let mut conn = unsafe { &mut *(conn_ptr as *mut Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let mut conn = &mut *handle.conn;
     match h3_conn.poll(&mut conn) {
         Ok((stream_id, h3::Event::Headers { list, has_body })) => {
             call_on_headers(&env, listener, stream_id, list, has_body).unwrap();
@@ -946,6 +1881,9 @@ pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1conn_1poll
             call_on_finished(&env, listener, stream_id).unwrap();
             stream_id as jlong
         }
+        // events added by newer quiche versions are not exposed yet
+        #[allow(unreachable_patterns)]
+        Ok((stream_id, _)) => stream_id as jlong,
         Err(e) => h3_error_code(e) as jlong,
     }
 }
@@ -961,18 +1899,63 @@ pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1recv_1body
     java_buf: jbyteArray,
 ) -> jint {
     let h3_conn = unsafe { &mut *(h3_conn_ptr as *mut h3::Connection) };
-    let mut conn = unsafe { &mut *(conn_ptr as *mut Connection) };
-    let buf_len = env.get_array_length(java_buf).unwrap() as usize;
-    let (ptr, _is_copy) = env.get_byte_array_elements(java_buf).unwrap();
-    let buf: &mut [u8] = unsafe { slice::from_raw_parts_mut(ptr as *mut u8, buf_len) };
-    let body_len = h3_conn.recv_body(&mut conn, stream_id as u64, buf);
-    env.release_byte_array_elements(
-        java_buf,
-        unsafe { ptr.as_mut().unwrap() },
-        ReleaseMode::CopyBack,
-    )
-    .unwrap();
-    match body_len {
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let mut conn = &mut *handle.conn;
+    let mut buf = match CriticalBytes::get(&env, java_buf) {
+        Some(buf) => buf,
+        None => return h3_error_code(h3::Error::BufferTooShort) as jint,
+    };
+    match h3_conn.recv_body(&mut conn, stream_id as u64, buf.as_mut_slice()) {
+        Ok(v) => {
+            buf.commit();
+            v as jint
+        }
+        Err(e) => h3_error_code(e) as jint,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1recv_1body_1buffer(
+    env: JNIEnv,
+    _class: JClass,
+    h3_conn_ptr: jlong,
+    conn_ptr: jlong,
+    stream_id: jlong,
+    java_buf: jobject,
+    offset: jint,
+    len: jint,
+) -> jint {
+    let h3_conn = unsafe { &mut *(h3_conn_ptr as *mut h3::Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let mut conn = &mut *handle.conn;
+    match direct_buffer_slice(&env, java_buf, offset, len) {
+        Some(buf) => match h3_conn.recv_body(&mut conn, stream_id as u64, buf) {
+            Ok(v) => v as jint,
+            Err(e) => h3_error_code(e) as jint,
+        },
+        None => h3_error_code(h3::Error::BufferTooShort) as jint,
+    }
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_http3_Http3Native_quiche_1h3_1recv_1body_1address(
+    _env: JNIEnv,
+    _class: JClass,
+    h3_conn_ptr: jlong,
+    conn_ptr: jlong,
+    stream_id: jlong,
+    buf_addr: jlong,
+    len: jint,
+) -> jint {
+    let h3_conn = unsafe { &mut *(h3_conn_ptr as *mut h3::Connection) };
+    let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+    let _scope = memory::Scope::enter(&handle.account);
+    let mut conn = &mut *handle.conn;
+    match h3_conn.recv_body(&mut conn, stream_id as u64, address_slice(buf_addr, len)) {
         Ok(v) => v as jint,
         Err(e) => h3_error_code(e) as jint,
     }
@@ -987,8 +1970,39 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1header_1from_1slice(
     dcid_len: jint,
     holder: jobject,
 ) {
-    let mut buf: Vec<u8> = env.convert_byte_array(java_buf).unwrap();
-    let hdr = Header::from_slice(&mut buf, dcid_len as usize).unwrap();
+    let hdr = {
+        let mut buf = CriticalBytes::get(&env, java_buf).unwrap();
+        Header::from_slice(buf.as_mut_slice(), dcid_len as usize).unwrap()
+    };
+    // the array is released, calling back into Java is allowed again
+    header_to_java(&env, hdr, holder);
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1header_1from_1buffer(
+    env: JNIEnv,
+    _class: JClass,
+    java_buf: jobject,
+    offset: jint,
+    len: jint,
+    dcid_len: jint,
+    holder: jobject,
+) -> jint {
+    let buf = match direct_buffer_slice(&env, java_buf, offset, len) {
+        Some(buf) => buf,
+        None => return Error::BufferTooShort as jint,
+    };
+    match Header::from_slice(buf, dcid_len as usize) {
+        Ok(hdr) => {
+            header_to_java(&env, hdr, holder);
+            0 as jint
+        }
+        Err(e) => e as jint,
+    }
+}
+
+fn header_to_java(env: &JNIEnv, hdr: Header, holder: jobject) {
     let ty_java = match hdr.ty {
         Type::Initial => 1,
         Type::Retry => 2,
@@ -1049,3 +2063,570 @@ pub extern "system" fn Java_io_quiche4j_Native_quiche_1header_1from_1slice(
         None => {}
     }
 }
+
+// UDP TRANSPORT
+//
+// Batched datagram I/O for Linux: recvmmsg/sendmmsg with optional UDP_GRO
+// (receive coalescing) and UDP_SEGMENT (send segmentation offload). Both
+// payloads and per-message metadata live in direct ByteBuffers owned by
+// Java code, so no copies happen between the kernel and the JVM heap.
+
+// Mirrors io.quiche4j.transport.DatagramBatch metadata layout
+#[repr(C)]
+#[allow(dead_code)]
+struct DatagramMeta {
+    len: i32,
+    segment_size: i32,
+    family: i32,
+    port: i32,
+    addr: [u8; 16],
+}
+
+#[cfg(target_os = "linux")]
+mod udp {
+    use super::DatagramMeta;
+    use libc::{c_int, c_void, sockaddr, sockaddr_in, sockaddr_in6, sockaddr_storage, socklen_t};
+    use std::mem;
+
+    pub const MAX_BATCH: usize = 64;
+
+    const UDP_SEGMENT: c_int = 103;
+    const UDP_GRO: c_int = 104;
+
+    // enough for a single cmsg carrying c_int, 8-byte aligned
+    type CmsgBuf = [u64; 4];
+
+    fn errno() -> i32 {
+        std::io::Error::last_os_error().raw_os_error().unwrap_or(libc::EIO)
+    }
+
+    fn would_block(err: i32) -> bool {
+        err == libc::EAGAIN || err == libc::EWOULDBLOCK || err == libc::EINTR
+    }
+
+    pub fn open(family: i32, addr: &[u8], port: u16, gro: bool) -> i32 {
+        let (storage, len) = match to_sockaddr(family, addr, port) {
+            Some(v) => v,
+            None => return -libc::EAFNOSUPPORT,
+        };
+        let domain = if family == 6 { libc::AF_INET6 } else { libc::AF_INET };
+        let fd = unsafe {
+            libc::socket(
+                domain,
+                libc::SOCK_DGRAM | libc::SOCK_NONBLOCK | libc::SOCK_CLOEXEC,
+                0,
+            )
+        };
+        if fd < 0 {
+            return -errno();
+        }
+        let rc = unsafe { libc::bind(fd, &storage as *const _ as *const sockaddr, len) };
+        if rc < 0 {
+            let err = errno();
+            unsafe { libc::close(fd) };
+            return -err;
+        }
+        if gro {
+            // best effort, kernels before 5.0 don't support it
+            let one: c_int = 1;
+            unsafe {
+                libc::setsockopt(
+                    fd,
+                    libc::SOL_UDP,
+                    UDP_GRO,
+                    &one as *const _ as *const c_void,
+                    mem::size_of::<c_int>() as socklen_t,
+                )
+            };
+        }
+        fd
+    }
+
+    pub fn gro_enabled(fd: i32) -> bool {
+        let mut v: c_int = 0;
+        let mut len = mem::size_of::<c_int>() as socklen_t;
+        let rc = unsafe {
+            libc::getsockopt(
+                fd,
+                libc::SOL_UDP,
+                UDP_GRO,
+                &mut v as *mut _ as *mut c_void,
+                &mut len,
+            )
+        };
+        rc == 0 && v != 0
+    }
+
+    pub fn local_port(fd: i32) -> i32 {
+        let mut storage: sockaddr_storage = unsafe { mem::zeroed() };
+        let mut len = mem::size_of::<sockaddr_storage>() as socklen_t;
+        let rc = unsafe {
+            libc::getsockname(fd, &mut storage as *mut _ as *mut sockaddr, &mut len)
+        };
+        if rc < 0 {
+            return -errno();
+        }
+        let mut meta: DatagramMeta = unsafe { mem::zeroed() };
+        from_sockaddr(&storage, &mut meta);
+        meta.port
+    }
+
+    pub fn poll(fd: i32, events: i16, timeout_millis: i32) -> i32 {
+        let mut pfd = libc::pollfd {
+            fd,
+            events,
+            revents: 0,
+        };
+        let rc = unsafe { libc::poll(&mut pfd, 1, timeout_millis) };
+        if rc < 0 {
+            let err = errno();
+            return if err == libc::EINTR { 0 } else { -err };
+        }
+        pfd.revents as i32
+    }
+
+    pub fn close(fd: i32) {
+        unsafe { libc::close(fd) };
+    }
+
+    fn to_sockaddr(family: i32, addr: &[u8], port: u16) -> Option<(sockaddr_storage, socklen_t)> {
+        let mut storage: sockaddr_storage = unsafe { mem::zeroed() };
+        match family {
+            4 => {
+                let sin = unsafe { &mut *(&mut storage as *mut _ as *mut sockaddr_in) };
+                sin.sin_family = libc::AF_INET as libc::sa_family_t;
+                sin.sin_port = port.to_be();
+                let mut octets = [0u8; 4];
+                octets.copy_from_slice(&addr[..4]);
+                sin.sin_addr.s_addr = u32::from_ne_bytes(octets);
+                Some((storage, mem::size_of::<sockaddr_in>() as socklen_t))
+            }
+            6 => {
+                let sin6 = unsafe { &mut *(&mut storage as *mut _ as *mut sockaddr_in6) };
+                sin6.sin6_family = libc::AF_INET6 as libc::sa_family_t;
+                sin6.sin6_port = port.to_be();
+                sin6.sin6_addr.s6_addr.copy_from_slice(&addr[..16]);
+                Some((storage, mem::size_of::<sockaddr_in6>() as socklen_t))
+            }
+            _ => None,
+        }
+    }
+
+    fn from_sockaddr(storage: &sockaddr_storage, meta: &mut DatagramMeta) {
+        match storage.ss_family as c_int {
+            libc::AF_INET => {
+                let sin = unsafe { &*(storage as *const _ as *const sockaddr_in) };
+                meta.family = 4;
+                meta.port = u16::from_be(sin.sin_port) as i32;
+                meta.addr = [0u8; 16];
+                meta.addr[..4].copy_from_slice(&sin.sin_addr.s_addr.to_ne_bytes());
+            }
+            libc::AF_INET6 => {
+                let sin6 = unsafe { &*(storage as *const _ as *const sockaddr_in6) };
+                meta.family = 6;
+                meta.port = u16::from_be(sin6.sin6_port) as i32;
+                meta.addr = sin6.sin6_addr.s6_addr;
+            }
+            _ => {
+                meta.family = 0;
+                meta.port = 0;
+            }
+        }
+    }
+
+    pub fn recv(fd: i32, data: &mut [u8], slot_size: usize, metas: &mut [DatagramMeta]) -> i32 {
+        let count = metas.len().min(MAX_BATCH).min(data.len() / slot_size);
+        let mut iovecs: [libc::iovec; MAX_BATCH] = unsafe { mem::zeroed() };
+        let mut names: [sockaddr_storage; MAX_BATCH] = unsafe { mem::zeroed() };
+        let mut cmsgs: [CmsgBuf; MAX_BATCH] = [[0u64; 4]; MAX_BATCH];
+        let mut hdrs: [libc::mmsghdr; MAX_BATCH] = unsafe { mem::zeroed() };
+        for i in 0..count {
+            iovecs[i].iov_base = data[i * slot_size..].as_mut_ptr() as *mut c_void;
+            iovecs[i].iov_len = slot_size;
+            let hdr = &mut hdrs[i].msg_hdr;
+            hdr.msg_name = &mut names[i] as *mut _ as *mut c_void;
+            hdr.msg_namelen = mem::size_of::<sockaddr_storage>() as socklen_t;
+            hdr.msg_iov = &mut iovecs[i];
+            hdr.msg_iovlen = 1;
+            hdr.msg_control = cmsgs[i].as_mut_ptr() as *mut c_void;
+            hdr.msg_controllen = mem::size_of::<CmsgBuf>() as _;
+        }
+        let n = unsafe {
+            libc::recvmmsg(
+                fd,
+                hdrs.as_mut_ptr(),
+                count as _,
+                0,
+                std::ptr::null_mut(),
+            )
+        };
+        if n < 0 {
+            let err = errno();
+            return if would_block(err) { 0 } else { -err };
+        }
+        for i in 0..n as usize {
+            let meta = &mut metas[i];
+            meta.len = hdrs[i].msg_len as i32;
+            meta.segment_size = meta.len;
+            from_sockaddr(&names[i], meta);
+            unsafe {
+                let hdr = &hdrs[i].msg_hdr;
+                let mut cmsg = libc::CMSG_FIRSTHDR(hdr);
+                while !cmsg.is_null() {
+                    if (*cmsg).cmsg_level == libc::SOL_UDP && (*cmsg).cmsg_type == UDP_GRO {
+                        let gso_size = *(libc::CMSG_DATA(cmsg) as *const c_int);
+                        meta.segment_size = gso_size as i32;
+                    }
+                    cmsg = libc::CMSG_NXTHDR(hdr, cmsg);
+                }
+            }
+        }
+        n
+    }
+
+    pub fn send(fd: i32, data: &mut [u8], slot_size: usize, metas: &[DatagramMeta]) -> i32 {
+        let count = metas.len().min(MAX_BATCH).min(data.len() / slot_size);
+        let mut iovecs: [libc::iovec; MAX_BATCH] = unsafe { mem::zeroed() };
+        let mut names: [sockaddr_storage; MAX_BATCH] = unsafe { mem::zeroed() };
+        let mut cmsgs: [CmsgBuf; MAX_BATCH] = [[0u64; 4]; MAX_BATCH];
+        let mut hdrs: [libc::mmsghdr; MAX_BATCH] = unsafe { mem::zeroed() };
+        for i in 0..count {
+            let meta = &metas[i];
+            let len = (meta.len.max(0) as usize).min(slot_size);
+            let (name, namelen) = match to_sockaddr(meta.family, &meta.addr, meta.port as u16) {
+                Some(v) => v,
+                None => return -libc::EAFNOSUPPORT,
+            };
+            names[i] = name;
+            iovecs[i].iov_base = data[i * slot_size..].as_mut_ptr() as *mut c_void;
+            iovecs[i].iov_len = len;
+            let hdr = &mut hdrs[i].msg_hdr;
+            hdr.msg_name = &mut names[i] as *mut _ as *mut c_void;
+            hdr.msg_namelen = namelen;
+            hdr.msg_iov = &mut iovecs[i];
+            hdr.msg_iovlen = 1;
+            if 0 < meta.segment_size && (meta.segment_size as usize) < len {
+                hdr.msg_control = cmsgs[i].as_mut_ptr() as *mut c_void;
+                unsafe {
+                    hdr.msg_controllen = libc::CMSG_SPACE(mem::size_of::<u16>() as u32) as _;
+                    let cmsg = libc::CMSG_FIRSTHDR(hdr);
+                    (*cmsg).cmsg_level = libc::SOL_UDP;
+                    (*cmsg).cmsg_type = UDP_SEGMENT;
+                    (*cmsg).cmsg_len = libc::CMSG_LEN(mem::size_of::<u16>() as u32) as _;
+                    *(libc::CMSG_DATA(cmsg) as *mut u16) = meta.segment_size as u16;
+                }
+            }
+        }
+        let n = unsafe { libc::sendmmsg(fd, hdrs.as_mut_ptr(), count as _, 0) };
+        if n < 0 {
+            let err = errno();
+            return if would_block(err) { 0 } else { -err };
+        }
+        n
+    }
+}
+
+#[cfg(not(target_os = "linux"))]
+mod udp {
+    use super::DatagramMeta;
+
+    // ENOTSUP-like error code, transport is only available on Linux
+    const UNSUPPORTED: i32 = -95;
+
+    pub fn open(_family: i32, _addr: &[u8], _port: u16, _gro: bool) -> i32 {
+        UNSUPPORTED
+    }
+
+    pub fn gro_enabled(_fd: i32) -> bool {
+        false
+    }
+
+    pub fn local_port(_fd: i32) -> i32 {
+        UNSUPPORTED
+    }
+
+    pub fn poll(_fd: i32, _events: i16, _timeout_millis: i32) -> i32 {
+        UNSUPPORTED
+    }
+
+    pub fn close(_fd: i32) {}
+
+    pub fn recv(_fd: i32, _data: &mut [u8], _slot_size: usize, _metas: &mut [DatagramMeta]) -> i32 {
+        UNSUPPORTED
+    }
+
+    pub fn send(_fd: i32, _data: &mut [u8], _slot_size: usize, _metas: &[DatagramMeta]) -> i32 {
+        UNSUPPORTED
+    }
+}
+
+fn datagram_metas<'a>(env: &JNIEnv<'a>, meta: jobject, count: jint) -> Option<&'a mut [DatagramMeta]> {
+    let buf = env.get_direct_buffer_address(JByteBuffer::from(meta)).ok()?;
+    let capacity = buf.len() / std::mem::size_of::<DatagramMeta>();
+    let count = (count.max(0) as usize).min(capacity);
+    Some(unsafe { slice::from_raw_parts_mut(buf.as_mut_ptr() as *mut DatagramMeta, count) })
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_transport_TransportNative_udp_1is_1supported(
+    _env: JNIEnv,
+    _class: JClass,
+) -> jboolean {
+    cfg!(target_os = "linux") as jboolean
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_transport_TransportNative_udp_1open(
+    env: JNIEnv,
+    _class: JClass,
+    family: jint,
+    java_addr: jbyteArray,
+    port: jint,
+    gro: jboolean,
+) -> jint {
+    let addr: Vec<u8> = env.convert_byte_array(java_addr).unwrap();
+    let expected = if family == 6 { 16 } else { 4 };
+    if addr.len() < expected {
+        return -(libc::EINVAL as jint);
+    }
+    udp::open(family, &addr[..], port as u16, gro != 0)
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_transport_TransportNative_udp_1gro_1enabled(
+    _env: JNIEnv,
+    _class: JClass,
+    fd: jint,
+) -> jboolean {
+    udp::gro_enabled(fd) as jboolean
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_transport_TransportNative_udp_1local_1port(
+    _env: JNIEnv,
+    _class: JClass,
+    fd: jint,
+) -> jint {
+    udp::local_port(fd)
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_transport_TransportNative_udp_1poll(
+    _env: JNIEnv,
+    _class: JClass,
+    fd: jint,
+    events: jint,
+    timeout_millis: jint,
+) -> jint {
+    udp::poll(fd, events as i16, timeout_millis)
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_transport_TransportNative_udp_1recv(
+    env: JNIEnv,
+    _class: JClass,
+    fd: jint,
+    java_data: jobject,
+    slot_size: jint,
+    java_meta: jobject,
+    count: jint,
+) -> jint {
+    if slot_size <= 0 {
+        return -(libc::EINVAL as jint);
+    }
+    let data = match env.get_direct_buffer_address(JByteBuffer::from(java_data)) {
+        Ok(v) => v,
+        Err(_) => return -(libc::EINVAL as jint),
+    };
+    let metas = match datagram_metas(&env, java_meta, count) {
+        Some(v) => v,
+        None => return -(libc::EINVAL as jint),
+    };
+    udp::recv(fd, data, slot_size as usize, metas)
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_transport_TransportNative_udp_1send(
+    env: JNIEnv,
+    _class: JClass,
+    fd: jint,
+    java_data: jobject,
+    slot_size: jint,
+    java_meta: jobject,
+    count: jint,
+) -> jint {
+    if slot_size <= 0 {
+        return -(libc::EINVAL as jint);
+    }
+    let data = match env.get_direct_buffer_address(JByteBuffer::from(java_data)) {
+        Ok(v) => v,
+        Err(_) => return -(libc::EINVAL as jint),
+    };
+    let metas = match datagram_metas(&env, java_meta, count) {
+        Some(v) => v,
+        None => return -(libc::EINVAL as jint),
+    };
+    udp::send(fd, data, slot_size as usize, metas)
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_transport_TransportNative_udp_1close(
+    _env: JNIEnv,
+    _class: JClass,
+    fd: jint,
+) {
+    udp::close(fd);
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1memory_1allocated(
+    _env: JNIEnv,
+    _class: JClass,
+) -> jlong {
+    memory::allocated() as jlong
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1memory_1peak(
+    _env: JNIEnv,
+    _class: JClass,
+) -> jlong {
+    memory::peak() as jlong
+}
+
+#[no_mangle]
+#[warn(unused_variables)]
+pub extern "system" fn Java_io_quiche4j_Native_quiche_1conn_1memory_1usage(
+    _env: JNIEnv,
+    _class: JClass,
+    conn_ptr: jlong,
+) -> jlong {
+    let handle = unsafe { &*(conn_ptr as *mut ConnHandle) };
+    handle.account.bytes() as jlong
+}
+
+/// C ABI surface for `java.lang.foreign` downcalls (see `quiche4j-panama`).
+///
+/// Mirrors the per-packet JNI calls taking memory addresses: connection and
+/// HTTP/3 handles are the same pointers, so a connection can be created
+/// through JNI and driven through either interface. Buffers might point into
+/// the Java heap (critical downcalls), they are only valid during the call.
+pub mod ffi {
+    use super::{address_slice, h3, h3_error_code, memory, ConnHandle};
+
+    #[no_mangle]
+    pub extern "C" fn quiche4j_conn_recv(conn_ptr: i64, buf: *mut u8, len: i32) -> i32 {
+        let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+        let _scope = memory::Scope::enter(&handle.account);
+        let conn = &mut *handle.conn;
+        match conn.recv(address_slice(buf as i64, len)) {
+            Ok(v) => v as i32,
+            Err(e) => e as i32,
+        }
+    }
+
+    #[no_mangle]
+    pub extern "C" fn quiche4j_conn_send(conn_ptr: i64, buf: *mut u8, len: i32) -> i32 {
+        let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+        let _scope = memory::Scope::enter(&handle.account);
+        let conn = &mut *handle.conn;
+        match conn.send(address_slice(buf as i64, len)) {
+            Ok(v) => v as i32,
+            Err(e) => e as i32,
+        }
+    }
+
+    #[no_mangle]
+    pub extern "C" fn quiche4j_conn_stream_recv(conn_ptr: i64, stream_id: i64, buf: *mut u8, len: i32) -> i32 {
+        let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+        let _scope = memory::Scope::enter(&handle.account);
+        let conn = &mut *handle.conn;
+        match conn.stream_recv(stream_id as u64, address_slice(buf as i64, len)) {
+            Ok((out_len, _out_fin)) => out_len as i32,
+            Err(e) => e as i32,
+        }
+    }
+
+    #[no_mangle]
+    pub extern "C" fn quiche4j_conn_stream_send(
+        conn_ptr: i64,
+        stream_id: i64,
+        buf: *const u8,
+        len: i32,
+        fin: bool,
+    ) -> i32 {
+        let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+        let _scope = memory::Scope::enter(&handle.account);
+        let conn = &mut *handle.conn;
+        match conn.stream_send(stream_id as u64, address_slice(buf as i64, len), fin) {
+            Ok(v) => v as i32,
+            Err(e) => e as i32,
+        }
+    }
+
+    #[no_mangle]
+    pub extern "C" fn quiche4j_conn_timeout_as_nanos(conn_ptr: i64) -> i64 {
+        let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+        let _scope = memory::Scope::enter(&handle.account);
+        let conn = &mut *handle.conn;
+        match conn.timeout() {
+            Some(timeout) => timeout.as_nanos() as i64,
+            None => std::u64::MAX as i64,
+        }
+    }
+
+    #[no_mangle]
+    pub extern "C" fn quiche4j_conn_on_timeout(conn_ptr: i64) {
+        let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+        let _scope = memory::Scope::enter(&handle.account);
+        let conn = &mut *handle.conn;
+        conn.on_timeout();
+    }
+
+    #[no_mangle]
+    pub extern "C" fn quiche4j_h3_recv_body(
+        h3_ptr: i64,
+        conn_ptr: i64,
+        stream_id: i64,
+        buf: *mut u8,
+        len: i32,
+    ) -> i32 {
+        let h3_conn = unsafe { &mut *(h3_ptr as *mut h3::Connection) };
+        let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+        let _scope = memory::Scope::enter(&handle.account);
+        let conn = &mut *handle.conn;
+        match h3_conn.recv_body(conn, stream_id as u64, address_slice(buf as i64, len)) {
+            Ok(v) => v as i32,
+            Err(e) => h3_error_code(e),
+        }
+    }
+
+    #[no_mangle]
+    pub extern "C" fn quiche4j_h3_send_body(
+        h3_ptr: i64,
+        conn_ptr: i64,
+        stream_id: i64,
+        buf: *const u8,
+        len: i32,
+        fin: bool,
+    ) -> i64 {
+        let h3_conn = unsafe { &mut *(h3_ptr as *mut h3::Connection) };
+        let handle = unsafe { &mut *(conn_ptr as *mut ConnHandle) };
+        let _scope = memory::Scope::enter(&handle.account);
+        let conn = &mut *handle.conn;
+        match h3_conn.send_body(conn, stream_id as u64, address_slice(buf as i64, len), fin) {
+            Ok(v) => v as i64,
+            Err(e) => h3_error_code(e) as i64,
+        }
+    }
+}
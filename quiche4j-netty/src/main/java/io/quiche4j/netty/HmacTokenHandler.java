@@ -0,0 +1,108 @@
+package io.quiche4j.netty;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.quiche4j.Quiche;
+
+/**
+ * {@link QuicTokenHandler} which authenticates tokens with HMAC-SHA256.
+ *
+ * <p>The token is {@code timestamp | odcid length | odcid | mac}, where
+ * {@code mac} covers the rest of the token as well as the peer's address
+ * and port. Tokens are accepted for a limited time after they were minted.
+ */
+public final class HmacTokenHandler implements QuicTokenHandler {
+
+    /**
+     * The default time a token stays valid.
+     */
+    public static final long DEFAULT_LIFETIME_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MAC_LEN = 16;
+    private static final int HEADER_LEN = Long.BYTES + 1;
+
+    private final SecretKeySpec key;
+    private final long lifetimeMillis;
+
+    /**
+     * Creates a handler with a random key and {@link #DEFAULT_LIFETIME_MILLIS}.
+     */
+    public HmacTokenHandler() {
+        this(randomKey(), DEFAULT_LIFETIME_MILLIS);
+    }
+
+    /**
+     * Creates a handler with the given key, e.g. to share tokens between
+     * multiple server instances.
+     */
+    public HmacTokenHandler(byte[] key, long lifetimeMillis) {
+        if (lifetimeMillis <= 0)
+            throw new IllegalArgumentException("Token lifetime should be positive");
+        this.key = new SecretKeySpec(key, ALGORITHM);
+        this.lifetimeMillis = lifetimeMillis;
+    }
+
+    private static byte[] randomKey() {
+        final byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    @Override
+    public byte[] mint(byte[] originalDestinationConnId, InetSocketAddress address) {
+        final int odcidLen = originalDestinationConnId.length;
+        final ByteBuffer token = ByteBuffer.allocate(HEADER_LEN + odcidLen + MAC_LEN);
+        token.putLong(System.currentTimeMillis());
+        token.put((byte) odcidLen);
+        token.put(originalDestinationConnId);
+        token.put(mac(token.array(), HEADER_LEN + odcidLen, address), 0, MAC_LEN);
+        return token.array();
+    }
+
+    @Override
+    public byte[] validate(byte[] token, InetSocketAddress address) {
+        if (token.length < HEADER_LEN + MAC_LEN)
+            return null;
+        final ByteBuffer buf = ByteBuffer.wrap(token);
+        final long timestamp = buf.getLong();
+        final int odcidLen = buf.get() & 0xff;
+        if (odcidLen > Quiche.MAX_CONN_ID_LEN || token.length != HEADER_LEN + odcidLen + MAC_LEN)
+            return null;
+
+        final byte[] expected = Arrays.copyOf(mac(token, HEADER_LEN + odcidLen, address), MAC_LEN);
+        final byte[] actual = Arrays.copyOfRange(token, HEADER_LEN + odcidLen, token.length);
+        if (!MessageDigest.isEqual(expected, actual))
+            return null;
+
+        final long age = System.currentTimeMillis() - timestamp;
+        if (age < 0 || age > lifetimeMillis)
+            return null;
+        return Arrays.copyOfRange(token, HEADER_LEN, HEADER_LEN + odcidLen);
+    }
+
+    private byte[] mac(byte[] token, int len, InetSocketAddress address) {
+        try {
+            final Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            mac.update(token, 0, len);
+            mac.update(address.getAddress().getAddress());
+            mac.update((byte) (address.getPort() >> 8));
+            mac.update((byte) address.getPort());
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 is required to be supported by every JRE
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package io.quiche4j.netty;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Runs each request on its own thread with blocking access to the request
+ * and response bodies, see {@link Http3Exchange}.
+ *
+ * <p>By default requests are executed on virtual threads when the runtime
+ * supports them (JDK 21+), falling back to a cached thread pool otherwise.
+ * A blocked request parks its thread, so the number of in-flight requests is
+ * bounded by memory rather than by the number of threads.
+ *
+ * <p>When the handler throws, the client gets a 500 response (or a stream
+ * reset if the response was already started) and the exception is fired
+ * through the stream channel's pipeline, where netty logs it unless handled.
+ *
+ * <p>The handler is passed to {@link Http3ServerCodec} as its stream handler:
+ * <pre>
+ *     new Http3ServerCodec(config, h3Config, new Http3BlockingHandler(exchange -&gt; {
+ *         final byte[] body = "Hello!".getBytes();
+ *         exchange.sendResponseHeaders(headers, false);
+ *         try (OutputStream out = exchange.responseBody()) {
+ *             out.write(body);
+ *         }
+ *     }));
+ * </pre>
+ */
+public final class Http3BlockingHandler extends ChannelInitializer<Http3StreamChannel> {
+
+    private final Http3ExchangeHandler handler;
+    private final Executor executor;
+
+    public Http3BlockingHandler(Http3ExchangeHandler handler) {
+        this(handler, defaultExecutor());
+    }
+
+    public Http3BlockingHandler(Http3ExchangeHandler handler, Executor executor) {
+        this.handler = handler;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns a virtual-thread-per-task executor when available, or a cached
+     * pool of daemon threads otherwise.
+     */
+    public static Executor defaultExecutor() {
+        try {
+            final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (Executor) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                final Thread thread = new Thread(task, "quiche4j-exchange");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    protected void initChannel(Http3StreamChannel ch) {
+        // the body is read on demand of the request thread
+        ch.config().setAutoRead(false);
+        ch.pipeline().addLast(new ExchangeBridge());
+    }
+
+    /**
+     * Moves messages between the stream channel and its {@link Http3Exchange}.
+     */
+    private final class ExchangeBridge extends ChannelInboundHandlerAdapter {
+
+        private Http3Exchange exchange;
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            ctx.read();
+            ctx.fireChannelActive();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof Http3HeadersFrame) {
+                final Http3HeadersFrame frame = (Http3HeadersFrame) msg;
+                if (null != exchange) {
+                    // trailers are not exposed
+                    if (frame.isEndStream())
+                        exchange.onEnd();
+                    return;
+                }
+                final Http3Exchange exchange = new Http3Exchange((Http3StreamChannel) ctx.channel(), frame.headers());
+                this.exchange = exchange;
+                if (frame.isEndStream())
+                    exchange.onEnd();
+                try {
+                    executor.execute(() -> exchange.run(handler));
+                } catch (RejectedExecutionException e) {
+                    ctx.close();
+                }
+            } else if (msg instanceof Http3DataFrame && null != exchange) {
+                final Http3DataFrame frame = (Http3DataFrame) msg;
+                final boolean endStream = frame.isEndStream();
+                exchange.onData(frame.content());
+                if (endStream)
+                    exchange.onEnd();
+            } else {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+            if (null == exchange || exchange.wantsMore())
+                ctx.read();
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            if (null != exchange)
+                exchange.onWritabilityChanged();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            if (null != exchange)
+                exchange.onClosed();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            if (null != exchange)
+                exchange.onFailure(cause);
+            ctx.close();
+            // failures of the exchange handler included, logged by the tail
+            // of the pipeline unless handled
+            ctx.fireExceptionCaught(cause);
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package io.quiche4j.netty;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.List;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.quiche4j.Config;
+import io.quiche4j.Connection;
+import io.quiche4j.ConnectionFailureException;
+import io.quiche4j.Quiche;
+import io.quiche4j.http3.Http3Config;
+import io.quiche4j.http3.Http3Header;
+
+/**
+ * Client side HTTP/3 codec, driving a single connection to {@code remote}.
+ *
+ * <p>The connection is initiated once the datagram channel becomes active.
+ * Requests are sent with {@link #newRequest}, each request stream is exposed
+ * as {@link Http3StreamChannel} with the given handler in its pipeline. The
+ * datagram channel is closed when the QUIC connection is closed.
+ *
+ * <p>Example:
+ * <pre>
+ *     final Http3ClientCodec codec = new Http3ClientCodec(config, h3Config, remote, "quic.tech");
+ *     final Channel channel = new Bootstrap()
+ *         .group(group)
+ *         .channel(NioDatagramChannel.class)
+ *         .handler(codec)
+ *         .bind(0).sync().channel();
+ *
+ *     codec.handshakeFuture().sync();
+ *     codec.newRequest(headers, true, new ResponseHandler()).sync();
+ * </pre>
+ */
+public final class Http3ClientCodec extends Http3Codec {
+
+    private final InetSocketAddress remote;
+    private final String serverName;
+    private ChannelHandlerContext ctx;
+    private Promise<Void> handshakePromise;
+    private QuicConnectionHandle handle;
+
+    public Http3ClientCodec(Config config, Http3Config h3Config, InetSocketAddress remote, String serverName) {
+        this(config, h3Config, remote, serverName, DEFAULT_MAX_DATAGRAM_SIZE);
+    }
+
+    public Http3ClientCodec(Config config, Http3Config h3Config, InetSocketAddress remote, String serverName,
+            int maxDatagramSize) {
+        super(config, h3Config, maxDatagramSize);
+        this.remote = remote;
+        this.serverName = serverName;
+    }
+
+    @Override
+    public boolean isServer() {
+        return false;
+    }
+
+    /**
+     * Returns a future completed once the HTTP/3 connection is established.
+     *
+     * <p>When the config has a {@link io.quiche4j.SessionCache} with a session
+     * for the server and early data is enabled, the future is completed as
+     * soon as requests can be sent in 0-RTT.
+     *
+     * <p>Only valid after the codec is added to a pipeline.
+     */
+    public final Future<Void> handshakeFuture() {
+        return this.handshakePromise;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        super.handlerAdded(ctx);
+        this.ctx = ctx;
+        this.handshakePromise = ctx.executor().newPromise();
+        if (ctx.channel().isActive())
+            connect();
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        connect();
+        ctx.fireChannelActive();
+    }
+
+    private void connect() {
+        if (null != handle)
+            return;
+        final Connection conn;
+        try {
+            conn = Quiche.connect(serverName, Quiche.newConnectionId(), config);
+        } catch (ConnectionFailureException e) {
+            handshakePromise.tryFailure(e);
+            ctx.close();
+            return;
+        }
+        handle = new QuicConnectionHandle(this, ctx, conn, h3Config, remote, null);
+        handle.flushNow();
+    }
+
+    @Override
+    protected void onDatagram(ChannelHandlerContext ctx, DatagramPacket packet) {
+        if (null == handle)
+            return;
+        // packets from anywhere else are not ours
+        if (!remote.equals(packet.sender()))
+            return;
+        handle.recv(packet.content(), packet.sender());
+    }
+
+    @Override
+    void onHttp3Created(QuicConnectionHandle handle) {
+        // requests can be sent from now on, in 0-RTT if the session is resumed
+        handshakePromise.trySuccess(null);
+    }
+
+    @Override
+    void onConnectionClosed(QuicConnectionHandle handle) {
+        handshakePromise.tryFailure(new ClosedChannelException());
+        ctx.close();
+    }
+
+    @Override
+    protected void closeAll() {
+        if (null != handle)
+            handle.teardown();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        if (null != handle && !handle.isClosed()) {
+            // let the peer know, the rest is torn down by channelInactive
+            handle.close(0L, "");
+        }
+        ctx.close(promise);
+    }
+
+    /**
+     * Sends a request and creates a stream channel for the response.
+     *
+     * <p>When {@code endStream} is {@code false} the request body is written
+     * to the returned channel.
+     */
+    public final Future<Http3StreamChannel> newRequest(List<Http3Header> headers, boolean endStream,
+            ChannelHandler handler) {
+        final Promise<Http3StreamChannel> promise = ctx.executor().newPromise();
+        if (ctx.executor().inEventLoop()) {
+            newRequest0(headers, endStream, handler, promise);
+        } else {
+            ctx.executor().execute(() -> newRequest0(headers, endStream, handler, promise));
+        }
+        return promise;
+    }
+
+    private void newRequest0(List<Http3Header> headers, boolean endStream, ChannelHandler handler,
+            Promise<Http3StreamChannel> promise) {
+        if (null == handle || handle.isClosed() || null == handle.http3()) {
+            promise.setFailure(new IllegalStateException("HTTP/3 connection is not established"));
+            return;
+        }
+        final long streamId = handle.http3().sendRequest(headers, endStream);
+        if (streamId < 0) {
+            promise.setFailure(new Http3StreamException(streamId, streamId));
+            return;
+        }
+        final Http3StreamChannel child = handle.newStream(streamId, handler, endStream);
+        handle.markDirty();
+        flushIfIdle();
+        promise.setSuccess(child);
+    }
+
+}
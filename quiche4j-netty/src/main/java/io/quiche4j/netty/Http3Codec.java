@@ -0,0 +1,157 @@
+package io.quiche4j.netty;
+
+import java.util.ArrayList;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.socket.DatagramPacket;
+import io.quiche4j.Config;
+import io.quiche4j.http3.Http3Config;
+
+/**
+ * Base class for HTTP/3 codecs installed into the pipeline of a datagram
+ * channel (e.g. {@code NioDatagramChannel} or {@code EpollDatagramChannel}).
+ *
+ * <p>The codec consumes inbound {@link DatagramPacket}s and writes packets
+ * produced by quiche back to the channel. Packets generated while handling a
+ * batch of reads are flushed once, on {@code channelReadComplete}. Connection
+ * timers are scheduled on the channel's event loop, so there is no need for a
+ * separate timer thread.
+ *
+ * <p>Request streams are exposed as {@link Http3StreamChannel}s.
+ */
+public abstract class Http3Codec extends ChannelDuplexHandler {
+
+    /**
+     * The default maximum size of an outgoing UDP payload.
+     */
+    public static final int DEFAULT_MAX_DATAGRAM_SIZE = 1350;
+
+    protected final Config config;
+    protected final Http3Config h3Config;
+    private final int maxDatagramSize;
+    private ArrayList<QuicConnectionHandle> dirty;
+    private ArrayList<QuicConnectionHandle> flushing;
+    private ChannelHandlerContext ctx;
+    private boolean reading;
+
+    protected Http3Codec(Config config, Http3Config h3Config, int maxDatagramSize) {
+        if (maxDatagramSize <= 0)
+            throw new IllegalArgumentException("Max datagram size should be positive");
+        this.config = config;
+        this.h3Config = h3Config;
+        this.maxDatagramSize = maxDatagramSize;
+        this.dirty = new ArrayList<>();
+        this.flushing = new ArrayList<>();
+        this.reading = false;
+    }
+
+    /**
+     * Returns {@code true} for the server side codec.
+     */
+    public abstract boolean isServer();
+
+    public final int maxDatagramSize() {
+        return this.maxDatagramSize;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof DatagramPacket)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        final DatagramPacket packet = (DatagramPacket) msg;
+        reading = true;
+        try {
+            onDatagram(ctx, packet);
+        } finally {
+            packet.release();
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        reading = false;
+        flushDirty();
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        closeAll();
+        ctx.fireChannelInactive();
+    }
+
+    /**
+     * Handles a single datagram received by the channel. The packet is
+     * released by the caller.
+     */
+    protected abstract void onDatagram(ChannelHandlerContext ctx, DatagramPacket packet);
+
+    /**
+     * Tears down all connections owned by the codec.
+     */
+    protected abstract void closeAll();
+
+    /**
+     * Handler added to the pipeline of new peer-initiated streams.
+     */
+    ChannelHandler streamHandler() {
+        return null;
+    }
+
+    /**
+     * Called once the HTTP/3 connection is created, which is possibly before
+     * the handshake is complete when early data is used.
+     */
+    void onHttp3Created(QuicConnectionHandle handle) {
+    }
+
+    /**
+     * Called once the TLS handshake is complete.
+     */
+    void onHandshakeComplete(QuicConnectionHandle handle) {
+    }
+
+    void onConnectionClosed(QuicConnectionHandle handle) {
+    }
+
+    final void markDirty(QuicConnectionHandle handle) {
+        dirty.add(handle);
+    }
+
+    /**
+     * Flushes connections with pending packets unless the codec is in the
+     * middle of a read batch, which is flushed on its completion anyway.
+     */
+    final void flushIfIdle() {
+        if (!reading)
+            flushDirty();
+    }
+
+    final void flushDirty() {
+        if (dirty.isEmpty())
+            return;
+        // swap the lists, connections closed during the flush might be
+        // marked dirty again
+        final ArrayList<QuicConnectionHandle> handles = dirty;
+        dirty = flushing;
+        flushing = handles;
+        for (int i = 0; i < handles.size(); i++) {
+            handles.get(i).flushPackets();
+        }
+        ctx.flush();
+        for (int i = 0; i < handles.size(); i++) {
+            handles.get(i).afterFlush();
+        }
+        handles.clear();
+    }
+
+}
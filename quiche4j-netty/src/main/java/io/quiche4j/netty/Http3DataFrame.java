@@ -0,0 +1,93 @@
+package io.quiche4j.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.buffer.Unpooled;
+
+/**
+ * A chunk of request or response body exchanged over {@link Http3StreamChannel}.
+ *
+ * <p>Inbound frames carry pooled direct buffers filled by quiche, the receiver
+ * is responsible for releasing them. End of the peer's body is signaled by a
+ * frame with {@link #isEndStream} set (its content might be empty).
+ *
+ * <p>Plain {@link ByteBuf} messages might be written instead of frames when
+ * the stream is not finished yet.
+ */
+public final class Http3DataFrame extends DefaultByteBufHolder {
+
+    private final boolean endStream;
+
+    public Http3DataFrame(ByteBuf content) {
+        this(content, false);
+    }
+
+    public Http3DataFrame(ByteBuf content, boolean endStream) {
+        super(content);
+        this.endStream = endStream;
+    }
+
+    /**
+     * Creates an empty frame which finishes the stream.
+     */
+    public static Http3DataFrame endOfStream() {
+        return new Http3DataFrame(Unpooled.EMPTY_BUFFER, true);
+    }
+
+    /**
+     * Returns {@code true} if this is the last frame of the stream.
+     */
+    public final boolean isEndStream() {
+        return this.endStream;
+    }
+
+    @Override
+    public Http3DataFrame replace(ByteBuf content) {
+        return new Http3DataFrame(content, endStream);
+    }
+
+    @Override
+    public Http3DataFrame copy() {
+        return replace(content().copy());
+    }
+
+    @Override
+    public Http3DataFrame duplicate() {
+        return replace(content().duplicate());
+    }
+
+    @Override
+    public Http3DataFrame retainedDuplicate() {
+        return replace(content().retainedDuplicate());
+    }
+
+    @Override
+    public Http3DataFrame retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public Http3DataFrame retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public Http3DataFrame touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public Http3DataFrame touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "Http3DataFrame(content=" + content() + ", endStream=" + endStream + ")";
+    }
+
+}
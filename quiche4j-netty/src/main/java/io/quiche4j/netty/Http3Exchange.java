@@ -0,0 +1,421 @@
+package io.quiche4j.netty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.quiche4j.http3.Http3Header;
+
+/**
+ * A single request/response exchange handled by {@link Http3ExchangeHandler}.
+ *
+ * <p>Request and response bodies are exposed as blocking streams. A thread
+ * blocked on them is parked until the event loop delivers more data or the
+ * stream gets writable again. The underlying connection is only ever touched
+ * by the event loop, the exchange merely submits messages to the stream
+ * channel.
+ *
+ * <p>The exchange is not thread-safe, it's expected to be used by the
+ * thread running the handler.
+ */
+public final class Http3Exchange {
+
+    private static final int READ_HIGH_WATER_MARK = 65536;
+    private static final int READ_LOW_WATER_MARK = READ_HIGH_WATER_MARK / 2;
+    private static final int WRITE_CHUNK_SIZE = 16384;
+
+    private static final List<Http3Header> INTERNAL_ERROR = Arrays.asList(new Http3Header(":status", "500"));
+
+    private final Http3StreamChannel channel;
+    private final List<Http3Header> requestHeaders;
+    private final RequestBody requestBody;
+    private final ResponseBody responseBody;
+    private final ChannelFutureListener failureListener;
+
+    // shared with the event loop
+    private final ConcurrentLinkedQueue<ByteBuf> chunks;
+    private final AtomicInteger queued;
+    private final AtomicBoolean paused;
+    private volatile boolean eof;
+    private volatile boolean discarded;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    private volatile Thread reader;
+    private volatile Thread writer;
+
+    private boolean headersSent;
+    private boolean finished;
+
+    Http3Exchange(Http3StreamChannel channel, List<Http3Header> requestHeaders) {
+        this.channel = channel;
+        this.requestHeaders = requestHeaders;
+        this.requestBody = new RequestBody();
+        this.responseBody = new ResponseBody();
+        this.failureListener = future -> {
+            if (!future.isSuccess())
+                onFailure(future.cause());
+        };
+        this.chunks = new ConcurrentLinkedQueue<>();
+        this.queued = new AtomicInteger();
+        this.paused = new AtomicBoolean();
+        this.eof = false;
+        this.discarded = false;
+        this.closed = false;
+        this.headersSent = false;
+        this.finished = false;
+    }
+
+    public final List<Http3Header> requestHeaders() {
+        return this.requestHeaders;
+    }
+
+    /**
+     * Returns the value of the first request header with the given name,
+     * or {@code null} if there's none.
+     */
+    public final String requestHeader(String name) {
+        for (Http3Header header : requestHeaders) {
+            if (header.name().equalsIgnoreCase(name))
+                return header.value();
+        }
+        return null;
+    }
+
+    public final SocketAddress remoteAddress() {
+        return channel.remoteAddress();
+    }
+
+    public final long streamId() {
+        return channel.streamId();
+    }
+
+    /**
+     * Returns {@code true} if the request was received in 0-RTT, see
+     * {@link Http3StreamChannel#isEarlyData}.
+     */
+    public final boolean isEarlyData() {
+        return channel.isEarlyData();
+    }
+
+    /**
+     * Returns the request body. Reads block until data is received.
+     */
+    public final InputStream requestBody() {
+        return this.requestBody;
+    }
+
+    /**
+     * Returns the response body. Must be called after {@link #sendResponseHeaders},
+     * closing the stream finishes the response.
+     */
+    public final OutputStream responseBody() {
+        if (!headersSent)
+            throw new IllegalStateException("Response headers are not sent");
+        return this.responseBody;
+    }
+
+    /**
+     * Sends response headers. When {@code endStream} is {@code true} the
+     * response has no body.
+     */
+    public final void sendResponseHeaders(List<Http3Header> headers, boolean endStream) throws IOException {
+        if (headersSent)
+            throw new IllegalStateException("Response headers are already sent");
+        checkWritable();
+        headersSent = true;
+        final ChannelFuture future = channel.writeAndFlush(new Http3HeadersFrame(headers, endStream));
+        future.addListener(failureListener);
+        if (endStream)
+            finish(future);
+    }
+
+    /**
+     * Finishes the response and releases the unread part of the request body.
+     */
+    public final void close() throws IOException {
+        try {
+            if (!headersSent) {
+                // the handler didn't respond at all
+                sendResponseHeaders(INTERNAL_ERROR, true);
+            } else {
+                responseBody.close();
+            }
+        } finally {
+            requestBody.close();
+        }
+    }
+
+    final void run(Http3ExchangeHandler handler) {
+        try {
+            handler.handle(this);
+            close();
+        } catch (Throwable t) {
+            abort();
+            // queued after the response written by abort, the pipeline
+            // might close the stream
+            channel.eventLoop().execute(() -> channel.pipeline().fireExceptionCaught(t));
+        }
+    }
+
+    private void abort() {
+        requestBody.close();
+        if (!headersSent && !closed) {
+            headersSent = true;
+            finish(channel.writeAndFlush(new Http3HeadersFrame(INTERNAL_ERROR, true)));
+        } else if (!finished) {
+            // part of the response is already sent, reset the stream so
+            // the peer doesn't take it for a complete one
+            finished = true;
+            channel.reset(QuicConnectionHandle.H3_INTERNAL_ERROR);
+        }
+    }
+
+    private void finish(ChannelFuture future) {
+        finished = true;
+        // closing the channel stops reading the rest of the request, if any
+        future.addListener(ChannelFutureListener.CLOSE);
+    }
+
+    private void checkWritable() throws IOException {
+        if (null != failure)
+            throw new IOException(failure);
+        if (closed)
+            throw new ClosedChannelException();
+        if (finished)
+            throw new IOException("Response is finished");
+    }
+
+    private void awaitWritable() throws IOException {
+        while (!channel.isWritable()) {
+            checkWritable();
+            writer = Thread.currentThread();
+            if (!channel.isWritable() && !closed)
+                LockSupport.park(this);
+            writer = null;
+        }
+        checkWritable();
+    }
+
+    // event loop side
+
+    final void onData(ByteBuf content) {
+        if (discarded || !content.isReadable()) {
+            content.release();
+            return;
+        }
+        queued.addAndGet(content.readableBytes());
+        chunks.add(content);
+        if (discarded) {
+            // raced with the request body being closed
+            releaseChunks();
+            return;
+        }
+        wakeUp(reader);
+    }
+
+    final void onEnd() {
+        eof = true;
+        wakeUp(reader);
+    }
+
+    final void onWritabilityChanged() {
+        wakeUp(writer);
+    }
+
+    final void onClosed() {
+        closed = true;
+        wakeUp(reader);
+        wakeUp(writer);
+    }
+
+    final void onFailure(Throwable cause) {
+        if (null == failure)
+            failure = cause;
+        wakeUp(reader);
+        wakeUp(writer);
+    }
+
+    /**
+     * Returns {@code true} if the event loop should keep reading the request body.
+     */
+    final boolean wantsMore() {
+        if (eof || discarded || closed)
+            return false;
+        if (queued.get() < READ_HIGH_WATER_MARK)
+            return true;
+        paused.set(true);
+        // the reader might have drained the queue in the meantime
+        return queued.get() < READ_LOW_WATER_MARK && paused.compareAndSet(true, false);
+    }
+
+    private void releaseChunks() {
+        ByteBuf buf;
+        while (null != (buf = chunks.poll())) {
+            buf.release();
+        }
+    }
+
+    private static void wakeUp(Thread thread) {
+        if (null != thread)
+            LockSupport.unpark(thread);
+    }
+
+    private final class RequestBody extends InputStream {
+
+        private ByteBuf current;
+
+        @Override
+        public int read() throws IOException {
+            final ByteBuf buf = await();
+            return null == buf ? -1 : buf.readUnsignedByte();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (off < 0 || len < 0 || len > b.length - off)
+                throw new IndexOutOfBoundsException();
+            if (0 == len)
+                return 0;
+            final ByteBuf buf = await();
+            if (null == buf)
+                return -1;
+            final int n = Math.min(len, buf.readableBytes());
+            buf.readBytes(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            final ByteBuf buf = current;
+            return null == buf ? 0 : buf.readableBytes();
+        }
+
+        /**
+         * Returns a readable chunk or {@code null} at the end of the body.
+         */
+        private ByteBuf await() throws IOException {
+            if (discarded)
+                throw new IOException("Request body is closed");
+            while (true) {
+                if (null != current) {
+                    if (current.isReadable())
+                        return current;
+                    current.release();
+                    current = null;
+                }
+                final ByteBuf next = chunks.poll();
+                if (null != next) {
+                    current = next;
+                    final int remaining = queued.addAndGet(-next.readableBytes());
+                    if (remaining < READ_LOW_WATER_MARK && paused.compareAndSet(true, false))
+                        channel.read();
+                    continue;
+                }
+                if (eof)
+                    return null;
+                if (null != failure)
+                    throw new IOException(failure);
+                if (closed)
+                    throw new ClosedChannelException();
+                reader = Thread.currentThread();
+                if (chunks.isEmpty() && !eof && !closed)
+                    LockSupport.park(this);
+                reader = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (discarded)
+                return;
+            discarded = true;
+            if (null != current) {
+                current.release();
+                current = null;
+            }
+            releaseChunks();
+        }
+    }
+
+    private final class ResponseBody extends OutputStream {
+
+        private byte[] chunk;
+        private int length;
+
+        ResponseBody() {
+            // allocated on the first write, most of the exchanges are
+            // parked with no pending output
+            this.chunk = null;
+            this.length = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkWritable();
+            if (null != chunk && chunk.length == length)
+                send(false);
+            if (null == chunk)
+                chunk = new byte[WRITE_CHUNK_SIZE];
+            chunk[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (off < 0 || len < 0 || len > b.length - off)
+                throw new IndexOutOfBoundsException();
+            checkWritable();
+            while (0 < len) {
+                if (null != chunk && chunk.length == length)
+                    send(false);
+                if (null == chunk)
+                    chunk = new byte[WRITE_CHUNK_SIZE];
+                final int n = Math.min(len, chunk.length - length);
+                System.arraycopy(b, off, chunk, length, n);
+                length += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            checkWritable();
+            if (0 < length)
+                send(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (finished)
+                return;
+            send(true);
+        }
+
+        private void send(boolean endStream) throws IOException {
+            awaitWritable();
+            // heap chunk is handed over to the event loop, which copies it into
+            // its own pooled direct buffer; allocating pooled buffers here would
+            // create an allocator cache per (virtual) thread
+            final ByteBuf content = 0 == length ? Unpooled.EMPTY_BUFFER : Unpooled.wrappedBuffer(chunk, 0, length);
+            final ChannelFuture future = channel.writeAndFlush(new Http3DataFrame(content, endStream));
+            future.addListener(failureListener);
+            if (endStream)
+                finish(future);
+            chunk = null;
+            length = 0;
+        }
+    }
+
+}
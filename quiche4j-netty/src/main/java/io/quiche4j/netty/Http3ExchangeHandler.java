@@ -0,0 +1,19 @@
+package io.quiche4j.netty;
+
+/**
+ * Blocking request handler used with {@link Http3BlockingHandler}.
+ *
+ * <p>Each request is handled on its own thread (a virtual thread when
+ * running on JDK 21+), so the handler is free to block on the request and
+ * response bodies.
+ */
+@FunctionalInterface
+public interface Http3ExchangeHandler {
+
+    /**
+     * Handles a single request. The response is finished once the method
+     * returns (or throws), if the handler didn't finish it on its own.
+     */
+    void handle(Http3Exchange exchange) throws Exception;
+
+}
@@ -0,0 +1,39 @@
+package io.quiche4j.netty;
+
+import java.util.List;
+
+import io.quiche4j.http3.Http3Header;
+
+/**
+ * Request or response headers exchanged over {@link Http3StreamChannel}.
+ *
+ * <p>When written, the frame is sent as a response on the server side.
+ * On the client side request headers are sent by {@link Http3ClientCodec#newRequest}.
+ */
+public final class Http3HeadersFrame {
+
+    private final List<Http3Header> headers;
+    private final boolean endStream;
+
+    public Http3HeadersFrame(List<Http3Header> headers, boolean endStream) {
+        this.headers = headers;
+        this.endStream = endStream;
+    }
+
+    public final List<Http3Header> headers() {
+        return this.headers;
+    }
+
+    /**
+     * Returns {@code true} if no body follows the headers.
+     */
+    public final boolean isEndStream() {
+        return this.endStream;
+    }
+
+    @Override
+    public final String toString() {
+        return "Http3HeadersFrame(headers=" + headers + ", endStream=" + endStream + ")";
+    }
+
+}
@@ -0,0 +1,300 @@
+package io.quiche4j.netty;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.socket.DatagramPacket;
+import io.quiche4j.Config;
+import io.quiche4j.Connection;
+import io.quiche4j.ConnectionFailureException;
+import io.quiche4j.PacketHeader;
+import io.quiche4j.PacketType;
+import io.quiche4j.Quiche;
+import io.quiche4j.http3.Http3Config;
+import io.quiche4j.server.AdmissionController;
+import io.quiche4j.server.IngressFilter;
+import io.quiche4j.server.MemoryBudget;
+import io.quiche4j.server.ReplayFilter;
+
+/**
+ * Server side HTTP/3 codec.
+ *
+ * <p>Datagrams are demultiplexed to connections by destination connection ID.
+ * New connections are validated with a stateless retry, using the given
+ * {@link QuicTokenHandler} ({@link HmacTokenHandler} by default). With an
+ * {@link AdmissionController} installed the retry is only forced once the
+ * number of handshakes in progress reaches its cap, and Initial packets over
+ * the per-source rate are dropped.
+ *
+ * <p>Each request stream opened by a client is exposed as a new
+ * {@link Http3StreamChannel} with {@code streamHandler} added to its pipeline,
+ * the handler should be {@link ChannelHandler.Sharable} (e.g. a
+ * {@link io.netty.channel.ChannelInitializer}).
+ *
+ * <p>Example:
+ * <pre>
+ *     new Bootstrap()
+ *         .group(group)
+ *         .channel(NioDatagramChannel.class)
+ *         .handler(new Http3ServerCodec(config, h3Config, new ChannelInitializer&lt;Http3StreamChannel&gt;() {
+ *             protected void initChannel(Http3StreamChannel ch) {
+ *                 ch.pipeline().addLast(new RequestHandler());
+ *             }
+ *         }))
+ *         .bind(4433);
+ * </pre>
+ */
+public final class Http3ServerCodec extends Http3Codec {
+
+    private final ChannelHandler streamHandler;
+    private final QuicTokenHandler tokenHandler;
+    private final byte[] connIdSeed;
+    private final HashMap<ByteBuffer, QuicConnectionHandle> connections;
+    private IngressFilter ingressFilter;
+    private AdmissionController admission;
+    private MemoryBudget memoryBudget;
+    private Config constrainedConfig;
+    private ReplayFilter replayFilter;
+
+    public Http3ServerCodec(Config config, Http3Config h3Config, ChannelHandler streamHandler) {
+        this(config, h3Config, streamHandler, new HmacTokenHandler(), DEFAULT_MAX_DATAGRAM_SIZE);
+    }
+
+    public Http3ServerCodec(Config config, Http3Config h3Config, ChannelHandler streamHandler,
+            QuicTokenHandler tokenHandler, int maxDatagramSize) {
+        super(config, h3Config, maxDatagramSize);
+        this.streamHandler = streamHandler;
+        this.tokenHandler = tokenHandler;
+        this.connIdSeed = Quiche.newConnectionIdSeed();
+        this.connections = new HashMap<>();
+        this.ingressFilter = null;
+        this.admission = null;
+        this.memoryBudget = null;
+        this.constrainedConfig = null;
+        this.replayFilter = null;
+    }
+
+    /**
+     * Installs a filter consulted for every received datagram before it's
+     * parsed, and before stateless packets are sent to unvalidated addresses,
+     * e.g. {@link io.quiche4j.server.SourceRateLimiter}.
+     *
+     * <p>Should be called before the codec is added to a pipeline.
+     */
+    public final Http3ServerCodec withIngressFilter(IngressFilter ingressFilter) {
+        this.ingressFilter = ingressFilter;
+        return this;
+    }
+
+    /**
+     * Limits the rate of new connections and the number of handshakes in
+     * progress, see {@link AdmissionController}. Clients are accepted without
+     * a stateless retry while there's capacity for more handshakes.
+     *
+     * <p>Should be called before the codec is added to a pipeline.
+     */
+    public final Http3ServerCodec withAdmissionController(AdmissionController admission) {
+        this.admission = admission;
+        return this;
+    }
+
+    /**
+     * Limits memory used by connections. New connections are accepted with
+     * {@code constrainedConfig} (e.g. with smaller flow control windows) when
+     * the usage is above the soft limit and refused above the hard one.
+     *
+     * <p>Should be called before the codec is added to a pipeline.
+     */
+    public final Http3ServerCodec withMemoryBudget(MemoryBudget budget, Config constrainedConfig) {
+        this.memoryBudget = budget;
+        this.constrainedConfig = constrainedConfig;
+        return this;
+    }
+
+    /**
+     * Refuses connections replaying the Initial flight of an earlier one, see
+     * {@link ReplayFilter}. Should be used whenever early data is enabled.
+     * Requests received in 0-RTT are marked with
+     * {@link Http3StreamChannel#isEarlyData}.
+     *
+     * <p>Should be called before the codec is added to a pipeline.
+     */
+    public final Http3ServerCodec withReplayFilter(ReplayFilter replayFilter) {
+        this.replayFilter = replayFilter;
+        return this;
+    }
+
+    @Override
+    public boolean isServer() {
+        return true;
+    }
+
+    @Override
+    ChannelHandler streamHandler() {
+        return this.streamHandler;
+    }
+
+    /**
+     * Returns the number of connections currently served.
+     */
+    public final int connectionCount() {
+        return connections.size();
+    }
+
+    @Override
+    protected void onDatagram(ChannelHandlerContext ctx, DatagramPacket packet) {
+        final ByteBuf content = packet.content();
+        final InetSocketAddress sender = packet.sender();
+        if (null != ingressFilter && !ingressFilter.onReceive(sender, content.readableBytes()))
+            return;
+
+        final PacketHeader hdr = parseHeader(ctx, content);
+        if (null == hdr)
+            return;
+
+        final byte[] dcid = hdr.destinationConnectionId();
+        QuicConnectionHandle handle = connections.get(ByteBuffer.wrap(dcid));
+        if (null == handle) {
+            handle = accept(ctx, hdr, sender);
+            if (null == handle)
+                return;
+        }
+        handle.recv(content, sender);
+    }
+
+    private static PacketHeader parseHeader(ChannelHandlerContext ctx, ByteBuf content) {
+        final int len = content.readableBytes();
+        if (content.isDirect() && 1 == content.nioBufferCount())
+            return PacketHeader.parse(content.nioBuffer(content.readerIndex(), len), Quiche.MAX_CONN_ID_LEN);
+        final ByteBuf copy = ctx.alloc().directBuffer(len);
+        try {
+            copy.writeBytes(content, content.readerIndex(), len);
+            return PacketHeader.parse(copy.nioBuffer(copy.readerIndex(), len), Quiche.MAX_CONN_ID_LEN);
+        } finally {
+            copy.release();
+        }
+    }
+
+    private QuicConnectionHandle accept(ChannelHandlerContext ctx, PacketHeader hdr, InetSocketAddress sender) {
+        if (PacketType.INITIAL != hdr.packetType())
+            return null;
+
+        final AdmissionController.Decision decision = null == admission ? AdmissionController.Decision.RETRY
+                : admission.admit(sender.getAddress(), null != hdr.token());
+        // shed the flood before doing any work for it
+        if (AdmissionController.Decision.DROP == decision)
+            return null;
+
+        final Config selected = null == memoryBudget ? config : memoryBudget.select(config, constrainedConfig);
+        // over budget, the client will retransmit or give up
+        if (null == selected)
+            return null;
+
+        if (!Quiche.versionIsSupported(hdr.version())) {
+            final ByteBuf out = ctx.alloc().directBuffer(maxDatagramSize());
+            final int len = Quiche.negotiateVersion(hdr.sourceConnectionId(), hdr.destinationConnectionId(),
+                    out.nioBuffer(0, out.capacity()));
+            writeAndFlush(ctx, out, len, sender);
+            return null;
+        }
+
+        if (null == hdr.token() && AdmissionController.Decision.ACCEPT == decision) {
+            // the connection ID is derived from the client's one, so that
+            // retransmitted Initials find the connection accepted before
+            final byte[] connId = Quiche.signConnectionId(connIdSeed, hdr.destinationConnectionId());
+            final QuicConnectionHandle existing = connections.get(ByteBuffer.wrap(connId));
+            if (null != existing)
+                return existing;
+            return newConnection(ctx, connId, hdr.destinationConnectionId(), false, selected, sender);
+        }
+
+        if (null == hdr.token()) {
+            final byte[] connId = Quiche.signConnectionId(connIdSeed, hdr.destinationConnectionId());
+            final byte[] token = tokenHandler.mint(hdr.destinationConnectionId(), sender);
+            final ByteBuf out = ctx.alloc().directBuffer(maxDatagramSize());
+            final int len = Quiche.retry(hdr.sourceConnectionId(), hdr.destinationConnectionId(), connId, token,
+                    hdr.version(), out.nioBuffer(0, out.capacity()));
+            writeAndFlush(ctx, out, len, sender);
+            return null;
+        }
+
+        final byte[] odcid = tokenHandler.validate(hdr.token(), sender);
+        if (null == odcid)
+            return null;
+        // the token proves the client owns the address
+        if (null != ingressFilter)
+            ingressFilter.onValidated(sender);
+
+        // the client echoes the connection ID chosen on retry
+        final byte[] connId = hdr.destinationConnectionId();
+        if (Quiche.MAX_CONN_ID_LEN != connId.length)
+            return null;
+
+        return newConnection(ctx, connId, odcid, true, selected, sender);
+    }
+
+    private QuicConnectionHandle newConnection(ChannelHandlerContext ctx, byte[] connId, byte[] odcid,
+            boolean retried, Config selected, InetSocketAddress sender) {
+        // the same original ID means the same Initial (and 0-RTT) flight
+        if (null != replayFilter && !replayFilter.add(odcid))
+            return null;
+        final Connection conn;
+        try {
+            conn = Quiche.accept(connId, retried ? odcid : null, selected);
+        } catch (ConnectionFailureException e) {
+            return null;
+        }
+        final QuicConnectionHandle handle = new QuicConnectionHandle(this, ctx, conn, h3Config, sender, connId);
+        connections.put(ByteBuffer.wrap(connId), handle);
+        if (null != admission)
+            admission.handshakeStarted();
+        return handle;
+    }
+
+    /**
+     * Sends a stateless packet written directly into {@code out}, or releases
+     * the buffer if writing failed.
+     */
+    private void writeAndFlush(ChannelHandlerContext ctx, ByteBuf out, int len, InetSocketAddress recipient) {
+        // the recipient is not validated, don't let it use us as an amplifier
+        if (len <= 0 || (null != ingressFilter && !ingressFilter.onStatelessSend(recipient, len))) {
+            out.release();
+            return;
+        }
+        out.writerIndex(len);
+        ctx.writeAndFlush(new DatagramPacket(out, recipient), ctx.voidPromise());
+    }
+
+    @Override
+    void onHandshakeComplete(QuicConnectionHandle handle) {
+        // only a complete handshake proves the address, early data doesn't
+        if (null != ingressFilter)
+            ingressFilter.onValidated(handle.remoteAddress());
+        if (null != admission)
+            admission.handshakeFinished();
+    }
+
+    @Override
+    void onConnectionClosed(QuicConnectionHandle handle) {
+        final ByteBuffer key = ByteBuffer.wrap(handle.connectionId());
+        if (handle == connections.get(key))
+            connections.remove(key);
+        // closed before the handshake was over
+        if (null != admission && !handle.isEstablished())
+            admission.handshakeFinished();
+    }
+
+    @Override
+    protected void closeAll() {
+        for (QuicConnectionHandle handle : new ArrayList<>(connections.values())) {
+            handle.teardown();
+        }
+        connections.clear();
+    }
+
+}
@@ -0,0 +1,358 @@
+package io.quiche4j.netty;
+
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.ChannelInputShutdownReadComplete;
+import io.netty.util.ReferenceCountUtil;
+import io.quiche4j.http3.Http3;
+
+/**
+ * A child channel representing a single HTTP/3 request stream.
+ *
+ * <p>Inbound messages are {@link Http3HeadersFrame} followed by zero or more
+ * {@link Http3DataFrame}s, the last one has {@link Http3DataFrame#isEndStream}
+ * set. Outbound the channel accepts {@link Http3HeadersFrame} (server side
+ * only), {@link Http3DataFrame} and {@link ByteBuf}.
+ *
+ * <p>Writes that don't fit into the stream's flow control window stay in the
+ * outbound buffer and are resumed once quiche reports the stream as writable,
+ * so {@link Channel#isWritable} reflects the peer's back-pressure.
+ *
+ * <p>The channel is registered on the event loop of the parent datagram
+ * channel and closes itself once both directions of the stream are finished.
+ */
+public final class Http3StreamChannel extends AbstractChannel {
+
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+    private static final int READ_CHUNK_SIZE = 16384;
+
+    private final QuicConnectionHandle handle;
+    private final long streamId;
+    private final boolean earlyData;
+    private final ChannelConfig config;
+    private final ArrayDeque<Object> inbound;
+    private boolean open;
+    private boolean readPending;
+    private boolean readCompletePending;
+    private boolean writePending;
+    private boolean inputShutdown;
+    private boolean outputShutdown;
+
+    // managed by QuicConnectionHandle
+    boolean touched;
+
+    Http3StreamChannel(Channel parent, QuicConnectionHandle handle, long streamId, boolean outputShutdown,
+            boolean earlyData) {
+        super(parent);
+        this.handle = handle;
+        this.streamId = streamId;
+        this.earlyData = earlyData;
+        this.config = new DefaultChannelConfig(this);
+        this.inbound = new ArrayDeque<>();
+        this.open = true;
+        this.readPending = false;
+        this.readCompletePending = false;
+        this.writePending = false;
+        this.inputShutdown = false;
+        this.outputShutdown = outputShutdown;
+        this.touched = false;
+    }
+
+    /**
+     * Returns HTTP/3 stream ID.
+     */
+    public final long streamId() {
+        return this.streamId;
+    }
+
+    /**
+     * Returns {@code true} if the stream was opened in 0-RTT, before the
+     * handshake completed.
+     *
+     * <p>Early data might be replayed by an attacker (see
+     * {@link io.quiche4j.server.ReplayFilter} for protection against that),
+     * servers should only act on idempotent requests received this way and
+     * respond with {@code 425 Too Early} to the rest.
+     */
+    public final boolean isEarlyData() {
+        return this.earlyData;
+    }
+
+    @Override
+    public ChannelConfig config() {
+        return this.config;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    @Override
+    public boolean isActive() {
+        return this.open;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected AbstractUnsafe newUnsafe() {
+        return new StreamUnsafe();
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop == parent().eventLoop();
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return parent().localAddress();
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return handle.remoteAddress();
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (!open)
+            return;
+        open = false;
+        handle.shutdownStream(streamId, outputShutdown, inputShutdown);
+        handle.removeStream(this);
+        writePending = false;
+        while (!inbound.isEmpty()) {
+            ReferenceCountUtil.release(inbound.poll());
+        }
+        handle.codec().flushIfIdle();
+    }
+
+    @Override
+    protected void doBeginRead() throws Exception {
+        if (inbound.isEmpty()) {
+            readPending = true;
+            return;
+        }
+        while (!inbound.isEmpty()) {
+            pipeline().fireChannelRead(inbound.poll());
+        }
+        pipeline().fireChannelReadComplete();
+        if (config.isAutoRead())
+            readPending = true;
+        closeIfFinished();
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        while (true) {
+            final Object msg = in.current();
+            if (null == msg)
+                break;
+
+            if (outputShutdown) {
+                in.remove(new Http3StreamException(streamId, Http3.ErrorCode.FRAME_UNEXPECTED));
+                continue;
+            }
+
+            if (msg instanceof Http3HeadersFrame) {
+                if (!handle.codec().isServer()) {
+                    in.remove(new UnsupportedOperationException(
+                            "Request headers are sent by Http3ClientCodec#newRequest"));
+                    continue;
+                }
+                final Http3HeadersFrame frame = (Http3HeadersFrame) msg;
+                final long code = handle.sendHeaders(streamId, frame.headers(), frame.isEndStream());
+                if (Http3.ErrorCode.STREAM_BLOCKED == code) {
+                    blocked();
+                    break;
+                }
+                if (code < 0) {
+                    in.remove(new Http3StreamException(streamId, code));
+                    continue;
+                }
+                outputShutdown = frame.isEndStream();
+                in.remove();
+            } else if (msg instanceof Http3DataFrame || msg instanceof ByteBuf) {
+                final ByteBuf body;
+                final boolean fin;
+                if (msg instanceof Http3DataFrame) {
+                    body = ((Http3DataFrame) msg).content();
+                    fin = ((Http3DataFrame) msg).isEndStream();
+                } else {
+                    body = (ByteBuf) msg;
+                    fin = false;
+                }
+                if (!fin && !body.isReadable()) {
+                    in.remove();
+                    continue;
+                }
+                final long written = handle.sendBody(streamId, body, fin);
+                if (Http3.ErrorCode.DONE == written) {
+                    blocked();
+                    break;
+                }
+                if (written < 0) {
+                    in.remove(new Http3StreamException(streamId, written));
+                    continue;
+                }
+                body.skipBytes((int) written);
+                in.progress(written);
+                if (body.isReadable()) {
+                    // partially written, the rest waits for the stream
+                    // to become writable again
+                    blocked();
+                    break;
+                }
+                outputShutdown = fin;
+                in.remove();
+            } else {
+                in.remove(new UnsupportedOperationException(
+                        "Unsupported message type: " + msg.getClass().getName()));
+            }
+        }
+
+        handle.markDirty();
+        handle.codec().flushIfIdle();
+        if (outputShutdown)
+            eventLoop().execute(this::closeIfFinished);
+    }
+
+    private void blocked() {
+        if (!writePending) {
+            writePending = true;
+            handle.writeBlocked();
+        }
+    }
+
+    /**
+     * Resets the stream with the given application error code and closes the
+     * channel, data not written yet is discarded. Can be called from any
+     * thread.
+     */
+    final void reset(long errorCode) {
+        if (!eventLoop().inEventLoop()) {
+            eventLoop().execute(() -> reset(errorCode));
+            return;
+        }
+        if (!open)
+            return;
+        if (!outputShutdown) {
+            outputShutdown = true;
+            handle.resetStream(streamId, errorCode);
+        }
+        unsafe().close(unsafe().voidPromise());
+    }
+
+    final boolean isWritePending() {
+        return this.writePending;
+    }
+
+    /**
+     * Called by the connection when quiche reports the stream as writable.
+     */
+    final void resumeWrite() {
+        if (!writePending)
+            return;
+        writePending = false;
+        handle.writeResumed();
+        ((StreamUnsafe) unsafe()).forceFlush();
+    }
+
+    final void onHeaders(Http3HeadersFrame frame) {
+        deliver(frame);
+    }
+
+    final void onData() {
+        while (open) {
+            final ByteBuf buf = config.getAllocator().directBuffer(READ_CHUNK_SIZE);
+            final int len = handle.recvBody(streamId, buf);
+            if (len <= 0) {
+                buf.release();
+                break;
+            }
+            buf.writerIndex(buf.writerIndex() + len);
+            deliver(new Http3DataFrame(buf, false));
+        }
+    }
+
+    final void onFinished() {
+        if (inputShutdown)
+            return;
+        inputShutdown = true;
+        deliver(Http3DataFrame.endOfStream());
+    }
+
+    /**
+     * Fires read completion for the messages delivered while the
+     * connection was processing events.
+     */
+    final void readComplete() {
+        touched = false;
+        if (readCompletePending) {
+            readCompletePending = false;
+            if (!config.isAutoRead())
+                readPending = false;
+            pipeline().fireChannelReadComplete();
+            if (inputShutdown)
+                pipeline().fireUserEventTriggered(ChannelInputShutdownReadComplete.INSTANCE);
+        }
+        closeIfFinished();
+    }
+
+    private void deliver(Object msg) {
+        if (!open) {
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        if (readPending && inbound.isEmpty()) {
+            readCompletePending = true;
+            pipeline().fireChannelRead(msg);
+        } else {
+            // application is not reading, keep the message until read()
+            inbound.add(msg);
+        }
+    }
+
+    private void closeIfFinished() {
+        if (open && inputShutdown && outputShutdown && inbound.isEmpty())
+            unsafe().close(unsafe().voidPromise());
+    }
+
+    private final class StreamUnsafe extends AbstractUnsafe {
+
+        @Override
+        public void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+            promise.setFailure(new UnsupportedOperationException());
+        }
+
+        void forceFlush() {
+            flush0();
+        }
+    }
+
+}
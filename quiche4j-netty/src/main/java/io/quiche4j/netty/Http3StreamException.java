@@ -0,0 +1,31 @@
+package io.quiche4j.netty;
+
+import java.io.IOException;
+
+import io.quiche4j.http3.Http3;
+
+/**
+ * Represents an HTTP/3 error reported for a stream operation.
+ */
+public final class Http3StreamException extends IOException {
+
+    private static final long serialVersionUID = -3102719472917413455L;
+
+    /**
+     * Error code, see {@link Http3.ErrorCode}
+     */
+    private final long errorCode;
+
+    public Http3StreamException(long streamId, long errorCode) {
+        super("Stream " + streamId + " failed with error code " + errorCode);
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * Returns error code associated with the failure scenario
+     */
+    public final long errorCode() {
+        return this.errorCode;
+    }
+
+}
@@ -0,0 +1,467 @@
+package io.quiche4j.netty;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.quiche4j.Connection;
+import io.quiche4j.NativeBackend;
+import io.quiche4j.Quiche;
+import io.quiche4j.http3.Http3;
+import io.quiche4j.http3.Http3Config;
+import io.quiche4j.http3.Http3Connection;
+import io.quiche4j.http3.Http3EventListener;
+import io.quiche4j.http3.Http3Header;
+
+/**
+ * State of a single QUIC connection served by {@link Http3Codec}.
+ *
+ * <p>All methods are expected to be called from the event loop of the
+ * datagram channel, which is the only owner of the underlying
+ * {@link Connection}.
+ *
+ * <p>Packets are moved between quiche and pooled direct {@link ByteBuf}s
+ * by memory address, without intermediate {@code byte[]} copies.
+ */
+final class QuicConnectionHandle {
+
+    private static final NativeBackend BACKEND = NativeBackend.current();
+
+    /**
+     * H3_INTERNAL_ERROR, the application error code of streams reset locally.
+     */
+    static final long H3_INTERNAL_ERROR = 0x102;
+
+    private final Http3Codec codec;
+    private final ChannelHandlerContext ctx;
+    private final Connection conn;
+    private final Http3Config h3Config;
+    private final byte[] connId;
+    private final HashMap<Long, Http3StreamChannel> streams;
+    private final ArrayList<Http3StreamChannel> touched;
+    private final Http3EventListener listener;
+    private final Runnable timeoutTask;
+    private InetSocketAddress remote;
+    private Http3Connection h3;
+    private ScheduledFuture<?> timer;
+    private long timerDeadline;
+    private int blockedWriters;
+    private boolean dirty;
+    private boolean established;
+    private boolean closed;
+
+    QuicConnectionHandle(Http3Codec codec, ChannelHandlerContext ctx, Connection conn, Http3Config h3Config,
+            InetSocketAddress remote, byte[] connId) {
+        this.codec = codec;
+        this.ctx = ctx;
+        this.conn = conn;
+        this.h3Config = h3Config;
+        this.remote = remote;
+        this.connId = connId;
+        this.streams = new HashMap<>();
+        this.touched = new ArrayList<>();
+        this.listener = new EventListener();
+        this.timeoutTask = this::onTimeout;
+        this.blockedWriters = 0;
+        this.dirty = false;
+        this.established = false;
+        this.closed = false;
+    }
+
+    final Http3Codec codec() {
+        return this.codec;
+    }
+
+    final Connection connection() {
+        return this.conn;
+    }
+
+    final Http3Connection http3() {
+        return this.h3;
+    }
+
+    final byte[] connectionId() {
+        return this.connId;
+    }
+
+    final InetSocketAddress remoteAddress() {
+        return this.remote;
+    }
+
+    final boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Returns {@code true} once the TLS handshake is complete, which is not
+     * the case while serving early data.
+     */
+    final boolean isEstablished() {
+        return this.established;
+    }
+
+    /**
+     * Feeds a datagram received from {@code sender} into the connection and
+     * dispatches HTTP/3 events. Produced packets are written on the next
+     * {@link #flushPackets}.
+     */
+    final void recv(ByteBuf content, InetSocketAddress sender) {
+        if (closed)
+            return;
+        this.remote = sender;
+        final int len = content.readableBytes();
+        if (content.hasMemoryAddress()) {
+            BACKEND.connRecvAddress(conn.getPointer(), content.memoryAddress() + content.readerIndex(), len);
+        } else if (content.isDirect() && 1 == content.nioBufferCount()) {
+            conn.recv(content.nioBuffer(content.readerIndex(), len));
+        } else {
+            final ByteBuf copy = ctx.alloc().directBuffer(len);
+            try {
+                copy.writeBytes(content, content.readerIndex(), len);
+                if (copy.hasMemoryAddress()) {
+                    BACKEND.connRecvAddress(conn.getPointer(), copy.memoryAddress() + copy.readerIndex(), len);
+                } else {
+                    conn.recv(copy.nioBuffer(copy.readerIndex(), len));
+                }
+            } finally {
+                copy.release();
+            }
+        }
+        // errors are reflected in the connection state, which is checked
+        // once the packets are flushed
+        process();
+    }
+
+    /**
+     * Creates the HTTP/3 connection once the handshake allows it, notifies
+     * the codec when the handshake is complete, resumes blocked writers and
+     * dispatches events to stream channels.
+     */
+    final void process() {
+        if (closed)
+            return;
+        markDirty();
+        if (null == h3) {
+            // requests can be sent (and served) in 0-RTT on resumed connections
+            if (!conn.isEstablished() && !conn.isInEarlyData())
+                return;
+            h3 = Http3Connection.withTransport(conn, h3Config);
+            codec.onHttp3Created(this);
+        }
+        // not on h3 creation, early data doesn't prove the handshake (and the
+        // peer's address) yet
+        if (!established && conn.isEstablished()) {
+            established = true;
+            codec.onHandshakeComplete(this);
+        }
+
+        if (0 < blockedWriters) {
+            for (long streamId : conn.writable()) {
+                final Http3StreamChannel child = streams.get(streamId);
+                if (null != child)
+                    child.resumeWrite();
+            }
+        }
+
+        while (!closed) {
+            final long streamId = h3.poll(listener);
+            // DONE or a connection error, in which case quiche closes
+            // the connection on its own
+            if (streamId < 0)
+                break;
+        }
+
+        for (int i = 0; i < touched.size(); i++) {
+            touched.get(i).readComplete();
+        }
+        touched.clear();
+    }
+
+    /**
+     * Writes all packets produced by the connection into the channel
+     * without flushing it. Returns the number of packets written.
+     */
+    final int flushPackets() {
+        dirty = false;
+        if (closed)
+            return 0;
+        final int maxDatagramSize = codec.maxDatagramSize();
+        int count = 0;
+        while (true) {
+            final ByteBuf out = ctx.alloc().directBuffer(maxDatagramSize);
+            final int len = send(out, maxDatagramSize);
+            if (len <= 0) {
+                out.release();
+                break;
+            }
+            out.writerIndex(out.writerIndex() + len);
+            ctx.write(new DatagramPacket(out, remote), ctx.voidPromise());
+            count++;
+        }
+        return count;
+    }
+
+    private int send(ByteBuf out, int maxDatagramSize) {
+        final int index = out.writerIndex();
+        final int len = Math.min(out.capacity() - index, maxDatagramSize);
+        if (out.hasMemoryAddress())
+            return BACKEND.connSendAddress(conn.getPointer(), out.memoryAddress() + index, len);
+        if (1 == out.nioBufferCount())
+            return conn.send(out.nioBuffer(index, len));
+        final byte[] buf = new byte[len];
+        final int written = conn.send(buf);
+        if (0 < written)
+            out.setBytes(index, buf, 0, written);
+        return written;
+    }
+
+    /**
+     * Re-arms the connection timer and tears the connection down once quiche
+     * reports it as closed. Should be called after every {@link #flushPackets}.
+     */
+    final void afterFlush() {
+        if (closed)
+            return;
+        if (conn.isClosed()) {
+            teardown();
+            return;
+        }
+        final long nanos = conn.timeoutAsNanos();
+        // quiche reports "no timeout" as u64::MAX
+        if (nanos < 0) {
+            cancelTimer();
+            return;
+        }
+        final long deadline = System.nanoTime() + nanos;
+        // an earlier timer is harmless: onTimeout is a no-op until the actual
+        // deadline and the timer is re-armed afterwards
+        if (null != timer && deadline - timerDeadline >= 0)
+            return;
+        cancelTimer();
+        timerDeadline = deadline;
+        timer = ctx.executor().schedule(timeoutTask, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void onTimeout() {
+        timer = null;
+        if (closed)
+            return;
+        conn.onTimeout();
+        process();
+        flushPackets();
+        ctx.flush();
+        afterFlush();
+    }
+
+    private void cancelTimer() {
+        if (null != timer) {
+            timer.cancel(false);
+            timer = null;
+        }
+    }
+
+    /**
+     * Marks the connection as one with packets to send, so the codec
+     * flushes it on the next read completion.
+     */
+    final void markDirty() {
+        if (!dirty) {
+            dirty = true;
+            codec.markDirty(this);
+        }
+    }
+
+    /**
+     * Flushes packets produced outside of the read loop, e.g. by writes on
+     * stream channels.
+     */
+    final void flushNow() {
+        if (closed)
+            return;
+        flushPackets();
+        ctx.flush();
+        afterFlush();
+    }
+
+    /**
+     * Closes the connection with the given application error code.
+     */
+    final void close(long error, String reason) {
+        if (closed)
+            return;
+        conn.close(true, error, reason);
+        flushNow();
+    }
+
+    final void teardown() {
+        if (closed)
+            return;
+        closed = true;
+        cancelTimer();
+        for (Http3StreamChannel child : new ArrayList<>(streams.values())) {
+            child.unsafe().close(child.unsafe().voidPromise());
+        }
+        streams.clear();
+        // a client keeps the session for resumption, even if closed abruptly
+        conn.storeSession();
+        // don't wait for GC to release TLS state and stream buffers
+        if (null != h3)
+            h3.free();
+        conn.free();
+        codec.onConnectionClosed(this);
+    }
+
+    final Http3StreamChannel newStream(long streamId, ChannelHandler handler, boolean outputShutdown) {
+        final Http3StreamChannel child = new Http3StreamChannel(ctx.channel(), this, streamId, outputShutdown,
+                conn.isInEarlyData());
+        if (null != handler)
+            child.pipeline().addLast(handler);
+        streams.put(streamId, child);
+        ctx.channel().eventLoop().register(child);
+        return child;
+    }
+
+    final void removeStream(Http3StreamChannel child) {
+        if (child == streams.get(child.streamId()))
+            streams.remove(child.streamId());
+        if (child.isWritePending())
+            blockedWriters--;
+    }
+
+    final void writeBlocked() {
+        blockedWriters++;
+    }
+
+    final void writeResumed() {
+        blockedWriters--;
+    }
+
+    final long sendHeaders(long streamId, List<Http3Header> headers, boolean fin) {
+        if (null == h3)
+            return Http3.ErrorCode.INTERNAL_ERROR;
+        return h3.sendResponse(streamId, headers, fin);
+    }
+
+    /**
+     * Sends readable bytes of {@code body} without moving its reader index.
+     * Returns the number of bytes written or an error code,
+     * {@link Http3.ErrorCode#DONE} means the stream is blocked.
+     */
+    final long sendBody(long streamId, ByteBuf body, boolean fin) {
+        if (null == h3)
+            return Http3.ErrorCode.INTERNAL_ERROR;
+        final int len = body.readableBytes();
+        if (body.hasMemoryAddress()) {
+            return BACKEND.h3SendBodyAddress(h3.getPointer(), conn.getPointer(), streamId,
+                    body.memoryAddress() + body.readerIndex(), len, fin);
+        }
+        if (body.isDirect() && 1 == body.nioBufferCount())
+            return h3.sendBody(streamId, body.nioBuffer(body.readerIndex(), len), fin);
+        final ByteBuf copy = ctx.alloc().directBuffer(len);
+        try {
+            copy.writeBytes(body, body.readerIndex(), len);
+            if (copy.hasMemoryAddress()) {
+                return BACKEND.h3SendBodyAddress(h3.getPointer(), conn.getPointer(), streamId,
+                        copy.memoryAddress() + copy.readerIndex(), len, fin);
+            }
+            return h3.sendBody(streamId, copy.nioBuffer(copy.readerIndex(), len), fin);
+        } finally {
+            copy.release();
+        }
+    }
+
+    /**
+     * Reads body bytes into the writable part of {@code buf} without moving
+     * its writer index. Returns the number of bytes read or an error code.
+     */
+    final int recvBody(long streamId, ByteBuf buf) {
+        if (null == h3)
+            return Http3.ErrorCode.DONE;
+        final int index = buf.writerIndex();
+        final int len = buf.writableBytes();
+        if (buf.hasMemoryAddress()) {
+            return BACKEND.h3RecvBodyAddress(h3.getPointer(), conn.getPointer(), streamId,
+                    buf.memoryAddress() + index, len);
+        }
+        return h3.recvBody(streamId, buf.nioBuffer(index, len));
+    }
+
+    /**
+     * Finishes both directions of a stream that is being closed locally.
+     *
+     * <p>The output is expected to be finished already (the last frame was
+     * written with end of stream). Otherwise the stream is reset, so the peer
+     * doesn't take a truncated body for a complete one.
+     */
+    final void shutdownStream(long streamId, boolean outputShutdown, boolean inputShutdown) {
+        if (closed || null == h3)
+            return;
+        if (!outputShutdown)
+            conn.streamShutdown(streamId, Quiche.Shutdown.WRITE, H3_INTERNAL_ERROR);
+        if (!inputShutdown)
+            conn.streamShutdown(streamId, Quiche.Shutdown.READ, 0L);
+        markDirty();
+    }
+
+    /**
+     * Resets the sending side of a stream, the peer learns that the data
+     * received so far is incomplete.
+     */
+    final void resetStream(long streamId, long errorCode) {
+        if (closed || null == h3)
+            return;
+        conn.streamShutdown(streamId, Quiche.Shutdown.WRITE, errorCode);
+        markDirty();
+    }
+
+    private void touch(Http3StreamChannel child) {
+        if (!child.touched) {
+            child.touched = true;
+            touched.add(child);
+        }
+    }
+
+    private final class EventListener implements Http3EventListener {
+
+        private final byte[] discard = new byte[4096];
+
+        public void onHeaders(long streamId, List<Http3Header> headers, boolean hasBody) {
+            Http3StreamChannel child = streams.get(streamId);
+            if (null == child) {
+                if (!codec.isServer())
+                    return;
+                child = newStream(streamId, codec.streamHandler(), false);
+            }
+            touch(child);
+            child.onHeaders(new Http3HeadersFrame(headers, !hasBody));
+        }
+
+        public void onData(long streamId) {
+            final Http3StreamChannel child = streams.get(streamId);
+            if (null == child) {
+                // nobody is interested in the body, still it has to be
+                // consumed for the event to go away
+                while (0 < h3.recvBody(streamId, discard));
+                return;
+            }
+            touch(child);
+            child.onData();
+        }
+
+        public void onFinished(long streamId) {
+            final Http3StreamChannel child = streams.get(streamId);
+            if (null == child)
+                return;
+            touch(child);
+            child.onFinished();
+        }
+    }
+
+}
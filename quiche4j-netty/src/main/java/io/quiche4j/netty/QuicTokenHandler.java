@@ -0,0 +1,27 @@
+package io.quiche4j.netty;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Generates and validates address validation tokens sent in Retry packets.
+ *
+ * <p>See {@link io.quiche4j.Quiche#retry} for details.
+ */
+public interface QuicTokenHandler {
+
+    /**
+     * Creates a token for the peer at {@code address}. The token has to
+     * carry {@code originalDestinationConnId}, so it can be recovered by
+     * {@link #validate}.
+     */
+    byte[] mint(byte[] originalDestinationConnId, InetSocketAddress address);
+
+    /**
+     * Validates the token echoed back by the peer at {@code address}.
+     *
+     * <p>Returns the original destination connection ID the token was minted
+     * for, or {@code null} if the token is not valid.
+     */
+    byte[] validate(byte[] token, InetSocketAddress address);
+
+}
@@ -0,0 +1,288 @@
+package io.quiche4j.panama;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BOOLEAN;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+
+import io.quiche4j.Native;
+import io.quiche4j.NativeBackend;
+import io.quiche4j.NativeUtils;
+
+/**
+ * {@link NativeBackend} calling the C ABI surface of {@code quiche4j-jni}
+ * through {@code java.lang.foreign} downcalls, selected with
+ * {@code -Dquiche4j.backend=ffm}.
+ *
+ * <p>All downcalls are critical: there's no thread state transition and
+ * heap arrays are passed to native code in place, without pinning or copying.
+ * That's safe as none of the native functions block or call back into Java.
+ *
+ * <p>Requires JDK 22+, run with {@code --enable-native-access=ALL-UNNAMED}
+ * to avoid the warning on restricted method access.
+ */
+public final class FfmBackend extends NativeBackend {
+
+    public static final String NAME = "ffm";
+
+    private static final MethodHandle CONN_RECV;
+    private static final MethodHandle CONN_SEND;
+    private static final MethodHandle STREAM_RECV;
+    private static final MethodHandle STREAM_SEND;
+    private static final MethodHandle TIMEOUT_AS_NANOS;
+    private static final MethodHandle ON_TIMEOUT;
+    private static final MethodHandle H3_RECV_BODY;
+    private static final MethodHandle H3_SEND_BODY;
+
+    static {
+        // symbols are looked up in libraries loaded by our class loader
+        NativeUtils.loadLibrary(Native.LIBRARY_NAME);
+        final SymbolLookup lookup = SymbolLookup.loaderLookup();
+        CONN_RECV = downcall(lookup, "quiche4j_conn_recv",
+                FunctionDescriptor.of(JAVA_INT, JAVA_LONG, ADDRESS, JAVA_INT));
+        CONN_SEND = downcall(lookup, "quiche4j_conn_send",
+                FunctionDescriptor.of(JAVA_INT, JAVA_LONG, ADDRESS, JAVA_INT));
+        STREAM_RECV = downcall(lookup, "quiche4j_conn_stream_recv",
+                FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_LONG, ADDRESS, JAVA_INT));
+        STREAM_SEND = downcall(lookup, "quiche4j_conn_stream_send",
+                FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_LONG, ADDRESS, JAVA_INT, JAVA_BOOLEAN));
+        TIMEOUT_AS_NANOS = downcall(lookup, "quiche4j_conn_timeout_as_nanos",
+                FunctionDescriptor.of(JAVA_LONG, JAVA_LONG));
+        ON_TIMEOUT = downcall(lookup, "quiche4j_conn_on_timeout",
+                FunctionDescriptor.ofVoid(JAVA_LONG));
+        H3_RECV_BODY = downcall(lookup, "quiche4j_h3_recv_body",
+                FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_LONG, JAVA_LONG, ADDRESS, JAVA_INT));
+        H3_SEND_BODY = downcall(lookup, "quiche4j_h3_send_body",
+                FunctionDescriptor.of(JAVA_LONG, JAVA_LONG, JAVA_LONG, JAVA_LONG, ADDRESS, JAVA_INT, JAVA_BOOLEAN));
+    }
+
+    private static MethodHandle downcall(SymbolLookup lookup, String name, FunctionDescriptor descriptor) {
+        final MemorySegment symbol = lookup.find(name).orElseThrow(() -> new UnsatisfiedLinkError(name));
+        return Linker.nativeLinker().downcallHandle(symbol, descriptor, Linker.Option.critical(true));
+    }
+
+    @Override
+    public final String name() {
+        return NAME;
+    }
+
+    @Override
+    public final int connRecv(long connPtr, byte[] buf) {
+        return connRecv(connPtr, MemorySegment.ofArray(buf), buf.length);
+    }
+
+    @Override
+    public final int connRecvBuffer(long connPtr, ByteBuffer buf, int offset, int len) {
+        return connRecv(connPtr, segment(buf, offset, len), len);
+    }
+
+    @Override
+    public final int connRecvAddress(long connPtr, long bufAddr, int len) {
+        return connRecv(connPtr, MemorySegment.ofAddress(bufAddr), len);
+    }
+
+    private static int connRecv(long connPtr, MemorySegment buf, int len) {
+        try {
+            return (int) CONN_RECV.invokeExact(connPtr, buf, len);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public final int connSend(long connPtr, byte[] buf) {
+        return connSend(connPtr, MemorySegment.ofArray(buf), buf.length);
+    }
+
+    @Override
+    public final int connSendBuffer(long connPtr, ByteBuffer buf, int offset, int len) {
+        return connSend(connPtr, segment(buf, offset, len), len);
+    }
+
+    @Override
+    public final int connSendAddress(long connPtr, long bufAddr, int len) {
+        return connSend(connPtr, MemorySegment.ofAddress(bufAddr), len);
+    }
+
+    private static int connSend(long connPtr, MemorySegment buf, int len) {
+        try {
+            return (int) CONN_SEND.invokeExact(connPtr, buf, len);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public final int streamRecv(long connPtr, long streamId, byte[] buf) {
+        return streamRecv(connPtr, streamId, MemorySegment.ofArray(buf), buf.length);
+    }
+
+    @Override
+    public final int streamRecvBuffer(long connPtr, long streamId, ByteBuffer buf, int offset, int len) {
+        return streamRecv(connPtr, streamId, segment(buf, offset, len), len);
+    }
+
+    private static int streamRecv(long connPtr, long streamId, MemorySegment buf, int len) {
+        try {
+            return (int) STREAM_RECV.invokeExact(connPtr, streamId, buf, len);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public final int streamSend(long connPtr, long streamId, byte[] buf, boolean fin) {
+        return streamSend(connPtr, streamId, MemorySegment.ofArray(buf), buf.length, fin);
+    }
+
+    @Override
+    public final int streamSendBuffer(long connPtr, long streamId, ByteBuffer buf, int offset, int len,
+            boolean fin) {
+        return streamSend(connPtr, streamId, segment(buf, offset, len), len, fin);
+    }
+
+    private static int streamSend(long connPtr, long streamId, MemorySegment buf, int len, boolean fin) {
+        try {
+            return (int) STREAM_SEND.invokeExact(connPtr, streamId, buf, len, fin);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public final int streamSendBuffers(long connPtr, long streamId, ByteBuffer[] bufs, int[] ranges,
+            boolean fin) {
+        // downcalls are cheap enough to walk the list from Java, same rules
+        // as the native gather: stop at a partial write, fin with the last one
+        if (0 == bufs.length)
+            return fin ? streamSend(connPtr, streamId, MemorySegment.NULL, 0, true) : 0;
+        int total = 0;
+        for (int i = 0; i < bufs.length; i++) {
+            final int len = ranges[i * 2 + 1];
+            final boolean last = fin && i == bufs.length - 1;
+            if (0 == len && !last)
+                continue;
+            final int written = streamSend(connPtr, streamId, segment(bufs[i], ranges[i * 2], len), len, last);
+            if (written < 0)
+                return 0 == total ? written : total;
+            total += written;
+            if (written < len)
+                break;
+        }
+        return total;
+    }
+
+    @Override
+    public final long timeoutAsNanos(long connPtr) {
+        try {
+            return (long) TIMEOUT_AS_NANOS.invokeExact(connPtr);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public final void onTimeout(long connPtr) {
+        try {
+            ON_TIMEOUT.invokeExact(connPtr);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public final int h3RecvBody(long h3Ptr, long connPtr, long streamId, byte[] buf) {
+        return h3RecvBody(h3Ptr, connPtr, streamId, MemorySegment.ofArray(buf), buf.length);
+    }
+
+    @Override
+    public final int h3RecvBodyBuffer(long h3Ptr, long connPtr, long streamId, ByteBuffer buf, int offset,
+            int len) {
+        return h3RecvBody(h3Ptr, connPtr, streamId, segment(buf, offset, len), len);
+    }
+
+    @Override
+    public final int h3RecvBodyAddress(long h3Ptr, long connPtr, long streamId, long bufAddr, int len) {
+        return h3RecvBody(h3Ptr, connPtr, streamId, MemorySegment.ofAddress(bufAddr), len);
+    }
+
+    private static int h3RecvBody(long h3Ptr, long connPtr, long streamId, MemorySegment buf, int len) {
+        try {
+            return (int) H3_RECV_BODY.invokeExact(h3Ptr, connPtr, streamId, buf, len);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public final long h3SendBody(long h3Ptr, long connPtr, long streamId, byte[] body, boolean fin) {
+        return h3SendBody(h3Ptr, connPtr, streamId, MemorySegment.ofArray(body), body.length, fin);
+    }
+
+    @Override
+    public final long h3SendBodyBuffer(long h3Ptr, long connPtr, long streamId, ByteBuffer body, int offset,
+            int len, boolean fin) {
+        return h3SendBody(h3Ptr, connPtr, streamId, segment(body, offset, len), len, fin);
+    }
+
+    @Override
+    public final long h3SendBodyBuffers(long h3Ptr, long connPtr, long streamId, ByteBuffer[] bodies,
+            int[] ranges, boolean fin) {
+        if (0 == bodies.length)
+            return fin ? h3SendBody(h3Ptr, connPtr, streamId, MemorySegment.NULL, 0, true) : 0;
+        long total = 0;
+        for (int i = 0; i < bodies.length; i++) {
+            final int len = ranges[i * 2 + 1];
+            final boolean last = fin && i == bodies.length - 1;
+            if (0 == len && !last)
+                continue;
+            final long written = h3SendBody(h3Ptr, connPtr, streamId, segment(bodies[i], ranges[i * 2], len), len,
+                    last);
+            if (written < 0)
+                return 0 == total ? written : total;
+            total += written;
+            if (written < len)
+                break;
+        }
+        return total;
+    }
+
+    @Override
+    public final long h3SendBodyAddress(long h3Ptr, long connPtr, long streamId, long bodyAddr, int len,
+            boolean fin) {
+        return h3SendBody(h3Ptr, connPtr, streamId, MemorySegment.ofAddress(bodyAddr), len, fin);
+    }
+
+    private static long h3SendBody(long h3Ptr, long connPtr, long streamId, MemorySegment body, int len,
+            boolean fin) {
+        try {
+            return (long) H3_SEND_BODY.invokeExact(h3Ptr, connPtr, streamId, body, len, fin);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Returns a segment of {@code len} bytes at the absolute {@code offset}
+     * of the buffer, which is either direct or backed by an array.
+     */
+    private static MemorySegment segment(ByteBuffer buf, int offset, int len) {
+        return MemorySegment.ofBuffer(buf.slice(offset, len));
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        if (t instanceof Error)
+            throw (Error) t;
+        return new IllegalStateException(t);
+    }
+
+}